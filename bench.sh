@@ -0,0 +1,16 @@
+#!/bin/bash
+
+# Builds Harmonium and its benchmarks, and runs the benchmarks with JMH. Any arguments are passed to JMH, for example
+# "./bench.sh TrackBenchmark -f 1" or "./bench.sh -h" for help. See the Benchmarks section of README.
+
+if [ -e bench/bin ]
+then
+rm -rf bench/bin
+fi
+
+mkdir bench/bin
+find . -iname '*.java' -not -path './bench/*' > bench/srclist
+find bench/src -iname '*.java' >> bench/srclist
+javac @bench/srclist -d bench/bin -cp "libs/*:bench/lib/*" -processorpath "bench/lib/*" || exit 1
+rm bench/srclist
+java -Djava.awt.headless=true -cp "bench/bin:libs/*:bench/lib/*" org.openjdk.jmh.Main "$@"
@@ -0,0 +1,59 @@
+package com.tivo.hme.sdk;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.tivo.hme.sdk.io.FastOutputStream;
+
+/**
+ * Measures encoding an image to send to a receiver. Opaque images are sent as JPEG, and images that might have
+ * transparency as PNG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ApplicationBenchmark {
+
+	@Param({ "opaque", "alpha" })
+	public String			image;
+
+	@Param({ "300" })
+	public int				size;
+
+	private Application		app;
+	private BufferedImage	img;
+
+	@Setup
+	public void setUp() {
+		System.setProperty("java.awt.headless", "true");
+		this.app = new Application() {
+		};
+
+		int type = this.image.equals("opaque") ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		this.img = new BufferedImage(this.size, this.size, type);
+		Graphics2D g = this.img.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.ORANGE, this.size, this.size, new Color(0, 0, 128, 200)));
+		g.fillRect(0, 0, this.size, this.size);
+		g.setColor(Color.WHITE);
+		g.drawString("Harmonium", this.size / 4, this.size / 2);
+		g.dispose();
+	}
+
+	@Benchmark
+	public FastOutputStream encode() throws IOException {
+		return this.app.getStream(this.img);
+	}
+}
@@ -0,0 +1,88 @@
+package com.tivo.hme.sdk.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.tivo.hme.interfaces.IHmeConstants;
+import com.tivo.hme.sdk.IHmeProtocol;
+
+/**
+ * Measures writing HME commands: encoding the strings in them, and framing them into chunks on the way to the
+ * receiver. The output is thrown away, so only the encoding and buffering are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HmeOutputStreamBenchmark {
+
+	// Commands are sent in batches, with a flush at the end of each.
+	private static final int	COMMANDS_PER_FLUSH = 32;
+
+	@Param({ "ascii", "accented", "long" })
+	public String				text;
+
+	private String				value;
+	private HmeOutputStream		out;
+	private ChunkedOutputStream	chunked;
+
+	@Setup
+	public void setUp() {
+		if(this.text.equals("ascii")) {
+			this.value = "Synthetic track";
+		}
+		else if(this.text.equals("accented")) {
+			this.value = "Bj\u00f6rk - J\u00f3ga (Caf\u00e9 Del Mar Remix)";
+		}
+		else {
+			StringBuilder sb = new StringBuilder();
+			while(sb.length() < 2000) {
+				sb.append("The Fixture Album, Disc 2, Track 7 of 12. ");
+			}
+			this.value = sb.toString();
+		}
+		this.out = new HmeOutputStream(new NullOutputStream());
+		this.chunked = new ChunkedOutputStream(new NullOutputStream(), IHmeConstants.TCP_BUFFER_SIZE);
+	}
+
+	@Benchmark
+	public void writeUTF() throws IOException {
+		this.out.writeUTF(this.value);
+	}
+
+	/**
+	 * Writes a batch of commands shaped like setting the text of a view, each terminated as a message.
+	 */
+	@Benchmark
+	public void writeCommands() throws IOException {
+		for(int i = 0; i < COMMANDS_PER_FLUSH; ++i) {
+			this.chunked.writeVInt(IHmeProtocol.CMD_RSRC_ADD_TEXT);
+			this.chunked.writeVInt(2048 + i);
+			this.chunked.writeVInt(1);
+			this.chunked.writeVInt(2);
+			this.chunked.writeUTF(this.value);
+			this.chunked.writeTerminator();
+		}
+		this.chunked.flush();
+	}
+
+	private static class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
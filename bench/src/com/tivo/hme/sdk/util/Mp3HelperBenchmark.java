@@ -0,0 +1,51 @@
+package com.tivo.hme.sdk.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.dazeend.harmonium.bench.Mp3Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures finding the duration of an MP3 stream and seeking into it, from memory so the disk isn't measured.
+ *
+ * A Xing or VBRI header gives the duration straight away, while a plain variable bitrate stream has to be read to the
+ * end. Seeking reads frame headers up to the point skipped to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Mp3HelperBenchmark {
+
+	@Param({ "cbr", "xing", "vbri", "vbr" })
+	public String	fixture;
+
+	private byte[]	bytes;
+	private long	halfway;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.bytes = Mp3Fixtures.build(this.fixture);
+		this.halfway = new Mp3Helper(new ByteArrayInputStream(this.bytes), this.bytes.length).getMp3Duration() / 2;
+	}
+
+	@Benchmark
+	public long duration() {
+		return new Mp3Helper(new ByteArrayInputStream(this.bytes), this.bytes.length).getMp3Duration();
+	}
+
+	@Benchmark
+	public int seekHalfway() throws IOException {
+		InputStream in = new Mp3Helper(new ByteArrayInputStream(this.bytes), this.bytes.length).seek(this.halfway);
+		return in.read();
+	}
+}
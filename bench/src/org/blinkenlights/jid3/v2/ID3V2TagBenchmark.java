@@ -0,0 +1,55 @@
+package org.blinkenlights.jid3.v2;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.blinkenlights.jid3.ID3Exception;
+import org.blinkenlights.jid3.ID3V2TextFrameReader;
+import org.dazeend.harmonium.bench.Mp3Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reading an ID3v2 tag from memory, both in full as jid3 does when a tag is edited, and only the text frames
+ * a library scan asks for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ID3V2TagBenchmark {
+
+	private static final String[]	FRAME_IDS = { "TALB", "TIT2", "TRCK", "TPOS", "TYER", "TPE1", "TPE2" };
+
+	@Param({ "cbr", "art", "unicode" })
+	public String	fixture;
+
+	private byte[]	bytes;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.bytes = Mp3Fixtures.build(this.fixture);
+	}
+
+	@Benchmark
+	public ID3V2Tag readTag() throws ID3Exception {
+		// ID3V2Tag.read expects the "ID3" marker to have been read already.
+		InputStream in = new ByteArrayInputStream(this.bytes, 3, this.bytes.length - 3);
+		return ID3V2Tag.read(in);
+	}
+
+	@Benchmark
+	public Map<String, String> readTextFrames() throws ID3Exception {
+		ID3V2TextFrameReader reader = new ID3V2TextFrameReader(new File(this.fixture + ".mp3"));
+		return reader.read(new ByteArrayInputStream(this.bytes), FRAME_IDS);
+	}
+}
@@ -0,0 +1,331 @@
+package org.dazeend.harmonium.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes the small synthetic MP3 files the benchmarks read.
+ *
+ * The files are built from a fixed seed, so every run measures exactly the same bytes. The audio frames are silent
+ * MPEG-1 layer III frames, which is all the duration and seek code looks at. Each fixture exercises a different path:
+ * <ul>
+ * <li><b>cbr</b>: an ID3v2.3 tag of text frames, constant bitrate audio, and an ID3v1 tag.</li>
+ * <li><b>xing</b>: variable bitrate audio with a Xing header holding a frame count and table of contents.</li>
+ * <li><b>vbri</b>: variable bitrate audio with a VBRI header.</li>
+ * <li><b>vbr</b>: variable bitrate audio with no header, so the duration is found by counting frames.</li>
+ * <li><b>art</b>: a tag holding a large embedded picture before the text frames.</li>
+ * <li><b>unicode</b>: a tag of UTF-16 text frames and comments, with unsynchronisation.</li>
+ * <li><b>v1</b>: no ID3v2 tag, only an ID3v1 tag.</li>
+ * </ul>
+ *
+ * Run <code>main</code> with a folder to write the fixtures there for a look at them.
+ */
+public final class Mp3Fixtures {
+
+	/** The names of all the fixtures, in the order they are written. */
+	public static final String[]	NAMES = { "cbr", "xing", "vbri", "vbr", "art", "unicode", "v1" };
+
+	private static final long		SEED = 0x4861726DL;		// "Harm"
+	private static final int		FRAME_COUNT = 2000;		// about 52 seconds of audio
+	private static final int		PICTURE_SIZE = 256 * 1024;
+
+	// MPEG-1 layer III at 44.1kHz, joint stereo, no CRC: the bitrate index goes in the top four bits of the third byte.
+	private static final int		SAMPLE_RATE = 44100;
+	private static final int[]		BITRATES = { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 };
+	private static final int		CBR_INDEX = 9;				// 128kbps
+	private static final int[]		VBR_INDEXES = { 5, 9, 11, 14 };
+	private static final int		SIDE_INFO_SIZE = 32;		// for MPEG-1 stereo
+
+	private Mp3Fixtures() {
+	}
+
+	/**
+	 * Writes every fixture to a folder.
+	 *
+	 * @param folder	the folder, which is created if it doesn't exist
+	 * @return			the files written, by fixture name
+	 */
+	public static Map<String, File> write(File folder) throws IOException {
+		folder.mkdirs();
+		Map<String, File> files = new LinkedHashMap<String, File>();
+		for(String name : NAMES) {
+			File file = new File(folder, name + ".mp3");
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				out.write(build(name));
+			}
+			finally {
+				out.close();
+			}
+			files.put(name, file);
+		}
+		return files;
+	}
+
+	/**
+	 * Builds the bytes of one fixture.
+	 *
+	 * @param name	one of {@link #NAMES}
+	 */
+	public static byte[] build(String name) throws IOException {
+		Random random = new Random(SEED + name.hashCode());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		if(name.equals("cbr") || name.equals("xing") || name.equals("vbri") || name.equals("vbr")) {
+			out.write(tag(false, textFrames(name, "ISO-8859-1"), 512));
+		}
+		else if(name.equals("art")) {
+			ByteArrayOutputStream frames = new ByteArrayOutputStream();
+			frames.write(picture(random));
+			frames.write(textFrames(name, "ISO-8859-1"));
+			out.write(tag(false, frames.toByteArray(), 2048));
+		}
+		else if(name.equals("unicode")) {
+			out.write(tag(true, textFrames(name, "UTF-16"), 256));
+		}
+		else if(! name.equals("v1")) {
+			throw new IllegalArgumentException("No such fixture: " + name);
+		}
+
+		if(name.equals("cbr") || name.equals("art") || name.equals("unicode") || name.equals("v1")) {
+			for(int i = 0; i < FRAME_COUNT; ++i) {
+				out.write(frame(CBR_INDEX));
+			}
+		}
+		else {
+			int[] indexes = new int[FRAME_COUNT];
+			long audioSize = 0;
+			for(int i = 0; i < FRAME_COUNT; ++i) {
+				indexes[i] = VBR_INDEXES[random.nextInt(VBR_INDEXES.length)];
+				audioSize += frameSize(indexes[i]);
+			}
+			if(name.equals("xing")) {
+				out.write(xingFrame(indexes, audioSize));
+			}
+			else if(name.equals("vbri")) {
+				out.write(vbriFrame(indexes, audioSize));
+			}
+			for(int index : indexes) {
+				out.write(frame(index));
+			}
+		}
+
+		out.write(v1Tag(name));
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates an empty temporary folder.
+	 */
+	public static File createFolder(String prefix) throws IOException {
+		File folder = File.createTempFile(prefix, "");
+		if(! folder.delete() || ! folder.mkdir()) {
+			throw new IOException("Could not create " + folder);
+		}
+		return folder;
+	}
+
+	/**
+	 * Deletes a file, or a folder and everything in it.
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.out.println("Usage: Mp3Fixtures <folder>");
+			return;
+		}
+		for(Map.Entry<String, File> entry : write(new File(args[0])).entrySet()) {
+			System.out.println(entry.getValue() + " (" + entry.getValue().length() + " bytes)");
+		}
+	}
+
+	private static byte[] textFrames(String name, String encoding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(textFrame("TIT2", "Synthetic " + name + " track", encoding));
+		out.write(textFrame("TPE1", "Benchmark Artist/Guest Artist", encoding));
+		out.write(textFrame("TPE2", "Benchmark Artist", encoding));
+		out.write(textFrame("TALB", "The Fixture Album (Disc 2)", encoding));
+		out.write(textFrame("TRCK", "7/12", encoding));
+		out.write(textFrame("TPOS", "2/2", encoding));
+		out.write(textFrame("TYER", "2009", encoding));
+		out.write(textFrame("TCON", "(17)Rock", encoding));
+		if(encoding.equals("UTF-16")) {
+			out.write(textFrame("TIT3", "Synth\u00e9tique \u00e9\u00e8\u00ea " + name, encoding));
+			out.write(frame("COMM", concat(new byte[] { 1 }, "eng".getBytes("ISO-8859-1"), text("", encoding), text("Ein Kommentar \u00fc\u00f6\u00e4", encoding))));
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] textFrame(String id, String value, String encoding) throws UnsupportedEncodingException {
+		byte encodingByte = (byte)(encoding.equals("UTF-16") ? 1 : 0);
+		return frame(id, concat(new byte[] { encodingByte }, value.getBytes(encoding)));
+	}
+
+	// A string followed by the null terminator for its encoding
+	private static byte[] text(String value, String encoding) throws UnsupportedEncodingException {
+		byte[] terminator = encoding.equals("UTF-16") ? new byte[2] : new byte[1];
+		return concat(value.getBytes(encoding), terminator);
+	}
+
+	private static byte[] picture(Random random) throws UnsupportedEncodingException {
+		byte[] data = new byte[PICTURE_SIZE];
+		random.nextBytes(data);
+		return frame("APIC", concat(new byte[] { 0 }, text("image/jpeg", "ISO-8859-1"), new byte[] { 3 }, text("Cover", "ISO-8859-1"), data));
+	}
+
+	private static byte[] frame(String id, byte[] body) throws UnsupportedEncodingException {
+		byte[] header = new byte[10];
+		System.arraycopy(id.getBytes("ISO-8859-1"), 0, header, 0, 4);
+		header[4] = (byte)(body.length >>> 24);
+		header[5] = (byte)(body.length >>> 16);
+		header[6] = (byte)(body.length >>> 8);
+		header[7] = (byte)body.length;
+		return concat(header, body);
+	}
+
+	private static byte[] tag(boolean unsynchronise, byte[] frames, int padding) {
+		if(unsynchronise) {
+			frames = unsynchronise(frames);
+		}
+		int size = frames.length + padding;
+		byte[] header = { 'I', 'D', '3', 3, 0, (byte)(unsynchronise ? 0x80 : 0),
+				(byte)((size >> 21) & 0x7f), (byte)((size >> 14) & 0x7f), (byte)((size >> 7) & 0x7f), (byte)(size & 0x7f) };
+		return concat(header, frames, new byte[padding]);
+	}
+
+	// Inserts a zero after every 0xff that is followed by a byte that could be mistaken for a frame sync.
+	private static byte[] unsynchronise(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 16);
+		for(int i = 0; i < data.length; ++i) {
+			out.write(data[i]);
+			if((data[i] & 0xff) == 0xff && (i + 1 == data.length || (data[i + 1] & 0xe0) == 0xe0 || data[i + 1] == 0)) {
+				out.write(0);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static int frameSize(int bitrateIndex) {
+		return 144 * BITRATES[bitrateIndex] * 1000 / SAMPLE_RATE;
+	}
+
+	private static byte[] frame(int bitrateIndex) {
+		byte[] frame = new byte[frameSize(bitrateIndex)];
+		frame[0] = (byte)0xff;
+		frame[1] = (byte)0xfb;
+		frame[2] = (byte)(bitrateIndex << 4);
+		frame[3] = (byte)0x40;
+		return frame;
+	}
+
+	// A silent frame whose side information is followed by a Xing header with a frame count, byte count and TOC
+	private static byte[] xingFrame(int[] indexes, long audioSize) {
+		byte[] frame = frame(CBR_INDEX);
+		int pos = 4 + SIDE_INFO_SIZE;
+		pos = putBytes(frame, pos, new byte[] { 'X', 'i', 'n', 'g' });
+		pos = putInt(frame, pos, 0x7);
+		pos = putInt(frame, pos, indexes.length);
+		pos = putInt(frame, pos, (int)audioSize);
+
+		// The TOC holds the position of each percent of the track, as a 256th of the size.
+		long offset = 0;
+		int next = 0;
+		for(int i = 0; i < indexes.length && next < 100; ++i) {
+			while(next < 100 && i >= (long)next * indexes.length / 100) {
+				frame[pos + next++] = (byte)Math.min(255, offset * 256 / audioSize);
+			}
+			offset += frameSize(indexes[i]);
+		}
+		return frame;
+	}
+
+	// A silent frame whose side information is followed by a VBRI header with a table of run sizes
+	private static byte[] vbriFrame(int[] indexes, long audioSize) {
+		final int framesPerEntry = 20;
+		int entries = (indexes.length + framesPerEntry - 1) / framesPerEntry;
+		byte[] frame = frame(CBR_INDEX);
+		int pos = 4 + SIDE_INFO_SIZE;
+		pos = putBytes(frame, pos, new byte[] { 'V', 'B', 'R', 'I' });
+		pos = putShort(frame, pos, 1);				// version
+		pos = putShort(frame, pos, 0);				// delay
+		pos = putShort(frame, pos, 75);				// quality
+		pos = putInt(frame, pos, (int)audioSize);
+		pos = putInt(frame, pos, indexes.length);
+		pos = putShort(frame, pos, entries);
+		pos = putShort(frame, pos, 1);				// scale
+		pos = putShort(frame, pos, 2);				// bytes per entry
+		pos = putShort(frame, pos, framesPerEntry);
+		for(int e = 0; e < entries; ++e) {
+			int run = 0;
+			for(int i = e * framesPerEntry; i < Math.min(indexes.length, (e + 1) * framesPerEntry); ++i) {
+				run += frameSize(indexes[i]);
+			}
+			pos = putShort(frame, pos, run);
+		}
+		return frame;
+	}
+
+	private static byte[] v1Tag(String name) throws UnsupportedEncodingException {
+		byte[] tag = new byte[128];
+		putBytes(tag, 0, "TAG".getBytes("ISO-8859-1"));
+		putField(tag, 3, 30, "Synthetic " + name + " track");
+		putField(tag, 33, 30, "Benchmark Artist");
+		putField(tag, 63, 30, "The Fixture Album");
+		putField(tag, 93, 4, "2009");
+		tag[126] = 7;							// ID3v1.1 track number
+		tag[127] = 17;							// genre
+		return tag;
+	}
+
+	private static void putField(byte[] buf, int pos, int length, String value) throws UnsupportedEncodingException {
+		byte[] bytes = value.getBytes("ISO-8859-1");
+		System.arraycopy(bytes, 0, buf, pos, Math.min(length, bytes.length));
+	}
+
+	private static int putBytes(byte[] buf, int pos, byte[] bytes) {
+		System.arraycopy(bytes, 0, buf, pos, bytes.length);
+		return pos + bytes.length;
+	}
+
+	private static int putInt(byte[] buf, int pos, int value) {
+		buf[pos] = (byte)(value >>> 24);
+		buf[pos + 1] = (byte)(value >>> 16);
+		buf[pos + 2] = (byte)(value >>> 8);
+		buf[pos + 3] = (byte)value;
+		return pos + 4;
+	}
+
+	private static int putShort(byte[] buf, int pos, int value) {
+		buf[pos] = (byte)(value >>> 8);
+		buf[pos + 1] = (byte)value;
+		return pos + 2;
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		int length = 0;
+		for(byte[] part : parts) {
+			length += part.length;
+		}
+		byte[] result = new byte[length];
+		int pos = 0;
+		for(byte[] part : parts) {
+			pos = putBytes(result, pos, part);
+		}
+		return result;
+	}
+}
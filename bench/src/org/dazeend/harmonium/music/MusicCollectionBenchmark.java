@@ -0,0 +1,136 @@
+package org.dazeend.harmonium.music;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dazeend.harmonium.FactoryPreferences;
+import org.dazeend.harmonium.Harmonium.HarmoniumFactory;
+import org.dazeend.harmonium.bench.Mp3Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tivo.hme.host.util.ArgumentList;
+import com.tivo.hme.interfaces.IArgumentList;
+import com.tivo.hme.sdk.Factory;
+
+/**
+ * Measures building the music collection at startup, from the library cache and track by track as a scan does.
+ *
+ * Each measurement starts from an empty collection, so these are timed once per iteration rather than in a loop. The
+ * collection's constructor and its track methods are private, because only one collection ever exists, so they are
+ * called by reflection. The tracks don't need to exist on disk, because nothing here reads them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+public class MusicCollectionBenchmark {
+
+	private static final int	TRACKS_PER_ALBUM = 12;
+	private static final int	ALBUMS_PER_ARTIST = 4;
+
+	@Param({ "1000", "10000" })
+	public int								trackCount;
+
+	private File							musicRoot;
+	private File							cacheFile;
+	private HarmoniumFactory				factory;
+	private Constructor<MusicCollection>	newCollection;
+	private Method							loadCache;
+	private Method							addTrack;
+
+	private MusicCollection					collection;
+	private List<MP3File>					tracks;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.musicRoot = Mp3Fixtures.createFolder("harmonium-bench");
+
+		// The factory reads the preferences, and creates the collection that Harmonium itself uses.
+		this.factory = new HarmoniumFactory();
+		Method init = Factory.class.getDeclaredMethod("init", IArgumentList.class);
+		init.setAccessible(true);
+		init.invoke(this.factory, new ArgumentList(new String[] {
+				"-musicRoot", this.musicRoot.getPath(), "-playlistRoot", this.musicRoot.getPath() }));
+
+		this.newCollection = MusicCollection.class.getDeclaredConstructor(HarmoniumFactory.class);
+		this.newCollection.setAccessible(true);
+		this.loadCache = MusicCollection.class.getDeclaredMethod("loadCache", File.class);
+		this.loadCache.setAccessible(true);
+		this.addTrack = MusicCollection.class.getDeclaredMethod("addTrack", FactoryPreferences.class, PlayableLocalTrack.class);
+		this.addTrack.setAccessible(true);
+
+		Map<String, MP3File> cachedTracks = new LinkedHashMap<String, MP3File>();
+		for(MP3File track : this.createTracks()) {
+			cachedTracks.put(track.getTrackFile().getPath(), track);
+		}
+		this.cacheFile = new File(this.musicRoot, "bench.cache");
+		LibraryCache.write(this.cacheFile, System.currentTimeMillis(), cachedTracks, new HashMap<String, MusicDirectory>());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Mp3Fixtures.delete(this.musicRoot);
+	}
+
+	@Setup(Level.Invocation)
+	public void createCollection() throws Exception {
+		this.collection = this.newCollection.newInstance(this.factory);
+		this.tracks = this.createTracks();
+	}
+
+	@Benchmark
+	public MusicCollection buildFromCache() throws Exception {
+		this.loadCache.invoke(this.collection, this.cacheFile);
+		return this.collection;
+	}
+
+	@Benchmark
+	public MusicCollection addTracks() throws Exception {
+		FactoryPreferences prefs = this.factory.getPreferences();
+		for(MP3File track : this.tracks) {
+			this.addTrack.invoke(this.collection, prefs, track);
+		}
+		return this.collection;
+	}
+
+	/**
+	 * Creates tracks shaped like a real library: albums of a dozen tracks, a few albums per artist, and some tracks by
+	 * guest artists.
+	 */
+	private List<MP3File> createTracks() {
+		List<MP3File> list = new ArrayList<MP3File>(this.trackCount);
+		for(int i = 0; i < this.trackCount; ++i) {
+			int album = i / TRACKS_PER_ALBUM;
+			int artist = album / ALBUMS_PER_ARTIST;
+			String albumArtist = "Artist " + artist;
+			String albumName = "The Album " + album;
+			String trackArtist = (i % 7 == 0) ? albumArtist + " feat. Guest " + (i % 50) : albumArtist;
+			String path = albumArtist + File.separator + albumName + File.separator + i + ".mp3";
+
+			MP3File track = new MP3File(path, new File(this.musicRoot, path), albumArtist, albumName, 1990 + (album % 20),
+					0, (i % TRACKS_PER_ALBUM) + 1, "A Track Called " + i, trackArtist, 240000);
+			track.setFileFingerprint(5000000, 1234567890000L);
+			list.add(track);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,84 @@
+package org.dazeend.harmonium.music;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.dazeend.harmonium.FactoryPreferences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures getting album art ready to send to a receiver, which the album art views do each time a track starts.
+ *
+ * The first request for art at a size scales and encodes it. Later requests, from any receiver, are answered from the
+ * cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScaledArtCacheBenchmark {
+
+	private static final String	ART_HASH_KEY = "bench/The Fixture Album";
+
+	@Param({ "500" })
+	public int				artSize;
+
+	@Param({ "200" })
+	public int				viewSize;
+
+	private ScaledArtCache	cache;
+	private ArtSource		artSource;
+
+	@Setup
+	public void setUp() {
+		System.setProperty("java.awt.headless", "true");
+		final BufferedImage art = new BufferedImage(this.artSize, this.artSize, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = art.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.RED, this.artSize, this.artSize, Color.BLUE));
+		g.fillRect(0, 0, this.artSize, this.artSize);
+		g.dispose();
+
+		// Scales the art the same way the tracks do.
+		this.artSource = new ArtSource() {
+			public boolean hasAlbumArt(FactoryPreferences prefs) {
+				return true;
+			}
+
+			public Image getAlbumArt(FactoryPreferences prefs) {
+				return art;
+			}
+
+			public Image getScaledAlbumArt(FactoryPreferences prefs, int width, int height) {
+				return art.getScaledInstance(width, height, Image.SCALE_FAST);
+			}
+
+			public String getArtHashKey() {
+				return ART_HASH_KEY;
+			}
+		};
+
+		this.cache = new ScaledArtCache(16 * 1024 * 1024, null);
+		this.cache.get(this.artSource, null, this.viewSize, this.viewSize);
+	}
+
+	@Benchmark
+	public byte[] hit() {
+		return this.cache.get(this.artSource, null, this.viewSize, this.viewSize);
+	}
+
+	@Benchmark
+	public byte[] miss() {
+		this.cache.invalidate(ART_HASH_KEY);
+		return this.cache.get(this.artSource, null, this.viewSize, this.viewSize);
+	}
+}
@@ -0,0 +1,63 @@
+package org.dazeend.harmonium.music;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.blinkenlights.jid3.ID3Exception;
+import org.dazeend.harmonium.bench.Mp3Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures reading a track from disk, which is what a library scan does for every new or changed file.
+ *
+ * The files are small enough to stay in the operating system's cache, so this measures the work done in Harmonium
+ * and jid3 rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackBenchmark {
+
+	@Param({ "cbr", "xing", "vbri", "vbr", "art", "unicode", "v1" })
+	public String	fixture;
+
+	private File	folder;
+	private File	file;
+
+	@Setup
+	public void setUp() throws Exception {
+		this.folder = Mp3Fixtures.createFolder("harmonium-bench");
+		Map<String, File> files = Mp3Fixtures.write(this.folder);
+		this.file = files.get(this.fixture);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Mp3Fixtures.delete(this.folder);
+	}
+
+	/**
+	 * Reads the tags and duration of a file.
+	 */
+	@Benchmark
+	public MP3File scanTrack() throws ID3Exception {
+		return new MP3File(this.file.getName(), this.file);
+	}
+
+	/**
+	 * Reads only the tags of a file, as the album art index does.
+	 */
+	@Benchmark
+	public TrackProbe probeTags() throws ID3Exception {
+		return TrackProbe.read(this.file, new String[] { "TALB", "TPE2" }, false);
+	}
+}
@@ -11,7 +11,7 @@ rm -rf bin
 fi
 
 mkdir bin
-find . -iname *.java > srclist
+find . -iname '*.java' -not -path './bench/*' > srclist
 javac @srclist -target 1.5 -d bin @classpathlist
 cp org/dazeend/harmonium/*.png bin/org/dazeend/harmonium/
 cp org/dazeend/harmonium/*.gif bin/org/dazeend/harmonium/
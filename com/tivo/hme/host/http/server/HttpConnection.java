@@ -8,11 +8,16 @@
 
 package com.tivo.hme.host.http.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 import com.tivo.hme.host.http.share.IHttpConstants;
 import com.tivo.hme.host.io.FastInputStream;
@@ -20,6 +25,11 @@ import com.tivo.hme.host.io.FastOutputStream;
 
 /**
  * A class that represents an HTTP connection that spans multiple requests.
+ * <p>
+ * In the default mode each connection has its own thread, which blocks
+ * reading requests for as long as the connection is open. In selector mode
+ * an {@link HttpSelector} reads each request header without blocking, and
+ * the connection only borrows a worker thread while a request is handled.
  *
  * @author      Adam Doppelt
  * @author      Arthur van Hoff
@@ -34,6 +44,14 @@ public class HttpConnection implements IHttpConstants, Runnable
     InputStream in;                 // "raw" input stream
     OutputStream out;        // "raw" output stream
     HttpRequest request;                // current request we're working on
+    int requests;                       // number of requests handled so far
+
+    // selector mode only
+    HttpSelector selector;              // selector that waits for the next request
+    ByteBuffer head;                    // request header read so far
+
+    // longest request header the selector will buffer
+    final static int MAX_HEAD_SIZE = 64 * 1024;
 
     /**
      * Creates a new connection from the specified server and socket.
@@ -44,6 +62,18 @@ public class HttpConnection implements IHttpConstants, Runnable
         this.s = s;
         new Thread(this).start();
     }
+
+    /**
+     * Creates a new connection that is watched by a selector. No thread is
+     * started.
+     */
+    HttpConnection(HttpServer.PortInterface pi, SocketChannel channel, HttpSelector selector)
+    {
+        this.pi = pi;
+        this.s = channel.socket();
+        this.selector = selector;
+        this.head = ByteBuffer.allocate(TCP_BUFFER_SIZE);
+    }
     
     /**
      * The input stream with a close method that closes the current request
@@ -70,6 +100,20 @@ public class HttpConnection implements IHttpConstants, Runnable
         }
     }
 
+    /**
+     * The output stream with a close method that only flushes. Closing the
+     * socket's stream would close the socket, so a connection that is kept
+     * alive is only closed by close().
+     */
+    class OutStream extends FastOutputStream {
+        OutStream(OutputStream out, int size) {
+            super(out, size);
+        }
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     /**
      * Runs the connection.
      */
@@ -83,59 +127,17 @@ public class HttpConnection implements IHttpConstants, Runnable
         
         if (!pi.port.addConnection()) {
             // no, reply with 503 Server Busy
-            try {
-                getOutputStream();
-                out.write("HTTP/1.1 503 Server Busy\r\n\r\n".getBytes());
-                out.flush();
-            } catch (IOException e) {
-                // ignore - we're busy
-            } finally {
-                close();
-            }
+            busy();
             return;
         }
         
         try {
 //            in = new InStream(s.getInputStream(), TCP_BUFFER_SIZE);
             in = new InStream(s.getInputStream(), TCP_BUFFER_SIZE);
-            int cnt = 0;
-            while ((request = HttpRequest.read(this, cnt > 0)) != null) {
-                // check for Expect: 100-continue header
-                if ("100-continue".equalsIgnoreCase(request.get("expect"))) {
-                    if (pi.port.server.handleContinue(request)) {
-                        getOutputStream();
-                        out.write((request.get("http-version") + " 100 Continue\r\n\r\n").getBytes());
-                        out.flush();
-                    } else {
-                        if (!request.replied) {
-                            request.reply(500, "Continue not OK, and not handled");
-                        }
-                        getOutputStream().flush();
-                        break;
-                    }
-                }
-
-                //
-                // give the request back to the server for processing
-                //
-                    
-                try {
-                    pi.port.server.handle(request);
-                } catch (IOException e) {
-                    pi.port.server.handleException(this, e);
-                } catch (RuntimeException e) {
-                    pi.port.server.handleException(this, e);
-                } finally {
-                    try {
-                        request.close();
-                    } catch (IOException e) {
-                    }
-                    if (s == null) {
-                        // this was a keep alive connection, and we closed.
-                        return;
-                    }
+            while ((request = HttpRequest.read(this, requests > 0)) != null) {
+                if (!serve(request)) {
+                    break;
                 }
-                cnt += 1;
 
                 // clear the limits on the input/output streams
 //                in.setLimit(-1);
@@ -150,6 +152,155 @@ public class HttpConnection implements IHttpConstants, Runnable
         }
     }
 
+    /**
+     * Handles the requests whose header the selector has read. Runs on a
+     * worker thread. When there's nothing more to read the connection goes
+     * back to the selector to wait for the next request, unless it was
+     * closed.
+     */
+    void serveSelected()
+    {
+        Thread.currentThread().setName(pi.port.server.acceptorName);
+
+        boolean resume = false;
+        try {
+            // start with the bytes the selector read, then read the socket,
+            // which is blocking again
+            head.flip();
+            byte data[] = new byte[head.remaining()];
+            head.get(data);
+            head.clear();
+            in = new InStream(new SequenceInputStream(new ByteArrayInputStream(data), s.getInputStream()), TCP_BUFFER_SIZE);
+
+            // keep going while another request is already buffered
+            do {
+                request = HttpRequest.read(this, requests > 0);
+                if (request == null || !serve(request)) {
+                    return;
+                }
+            } while (in.available() > 0);
+            resume = true;
+        } catch (IOException e) {
+            pi.port.server.handleException(request, e);
+        } finally {
+            request = null;
+            if (resume) {
+                selector.watch(this);
+            } else {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Handles one request. Returns false if the connection must not be used
+     * for another request.
+     */
+    private boolean serve(HttpRequest request) throws IOException
+    {
+        // check for Expect: 100-continue header
+        if ("100-continue".equalsIgnoreCase(request.get("expect"))) {
+            if (pi.port.server.handleContinue(request)) {
+                getOutputStream();
+                out.write((request.get("http-version") + " 100 Continue\r\n\r\n").getBytes());
+                out.flush();
+            } else {
+                if (!request.replied) {
+                    request.reply(500, "Continue not OK, and not handled");
+                }
+                getOutputStream().flush();
+                return false;
+            }
+        }
+
+        //
+        // give the request back to the server for processing
+        //
+            
+        try {
+            pi.port.server.handle(request);
+        } catch (IOException e) {
+            pi.port.server.handleException(this, e);
+        } catch (RuntimeException e) {
+            pi.port.server.handleException(this, e);
+        } finally {
+            try {
+                request.close();
+            } catch (IOException e) {
+            }
+        }
+        requests += 1;
+        
+        // s is null if this was a keep alive connection, and we closed.
+        return s != null;
+    }
+
+    /**
+     * Reads whatever has arrived of the next request header, without
+     * blocking. Called by the selector when the channel is readable.
+     *
+     * @return true once the whole header has been read
+     */
+    boolean readHead() throws IOException
+    {
+        if (!head.hasRemaining()) {
+            if (head.capacity() >= MAX_HEAD_SIZE) {
+                throw new IOException("request header too long");
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(head.capacity() * 2);
+            head.flip();
+            bigger.put(head);
+            head = bigger;
+        }
+        if (s.getChannel().read(head) < 0) {
+            throw new EOFException();
+        }
+
+        // skip blank lines left over from a previous POST, then look for the
+        // blank line that ends the header
+        int end = head.position();
+        int i = 0;
+        while (i < end && (head.get(i) == '\r' || head.get(i) == '\n')) {
+            ++i;
+        }
+        for (; i < end; ++i) {
+            if (head.get(i) == '\n') {
+                if (i + 1 < end && head.get(i + 1) == '\n') {
+                    return true;
+                }
+                if (i + 2 < end && head.get(i + 1) == '\r' && head.get(i + 2) == '\n') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replies 503 Server Busy and closes the connection.
+     */
+    void busy()
+    {
+        try {
+            getOutputStream();
+            out.write("HTTP/1.1 503 Server Busy\r\n\r\n".getBytes());
+            out.flush();
+        } catch (IOException e) {
+            // ignore - we're busy
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Closes a connection that was counted against its port.
+     */
+    void finish()
+    {
+        pi.port.removeConnection();
+        close();
+    }
+
     /**
      * Get the local interface.
      */
@@ -190,7 +341,7 @@ public class HttpConnection implements IHttpConstants, Runnable
     {
         if (out == null) {
             //out = new HttpChunkedOutputStream(s.getOutputStream(), TCP_BUFFER_SIZE);
-            out = new FastOutputStream(s.getOutputStream(), TCP_BUFFER_SIZE);
+            out = new OutStream(s.getOutputStream(), TCP_BUFFER_SIZE);
         }
         return out;
     }
@@ -0,0 +1,192 @@
+//////////////////////////////////////////////////////////////////////
+//
+// File: HttpSelector.java
+//
+// Copyright (c) 2003-2004 TiVo Inc.
+//
+//////////////////////////////////////////////////////////////////////
+
+package com.tivo.hme.host.http.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An I/O thread for the selector server mode. It accepts connections on the
+ * ports registered with it, and waits for requests on connections that are
+ * idle between requests. Once a request header has been read the connection
+ * is switched back to blocking mode and handed to the server's worker pool,
+ * so idle keep-alive connections don't hold a thread.
+ */
+class HttpSelector implements Runnable
+{
+    HttpServer server;          // the server
+    Selector selector;          // selector for this thread
+    List<Object> pending;       // port interfaces and connections to register
+    List<HttpConnection> ready; // connections with a complete request header
+
+    HttpSelector(HttpServer server, String name) throws IOException
+    {
+        this.server = server;
+        this.selector = Selector.open();
+        this.pending = new ArrayList<Object>();
+        this.ready = new ArrayList<HttpConnection>();
+        new Thread(this, name).start();
+    }
+
+    /**
+     * Start accepting connections for a port interface.
+     */
+    void listen(HttpServer.PortInterface pi)
+    {
+        register(pi);
+    }
+
+    /**
+     * Wait for the next request on a connection.
+     */
+    void watch(HttpConnection conn)
+    {
+        register(conn);
+    }
+
+    private void register(Object o)
+    {
+        synchronized (pending) {
+            pending.add(o);
+        }
+        selector.wakeup();
+    }
+
+    public void run()
+    {
+        while (true) {
+            try {
+                registerPending();
+                selector.select();
+                for (Iterator<SelectionKey> i = selector.selectedKeys().iterator(); i.hasNext();) {
+                    SelectionKey key = i.next();
+                    i.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((HttpServer.PortInterface)key.attachment());
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+                dispatchReady();
+            } catch (IOException e) {
+                server.handleException(selector, e);
+            }
+        }
+    }
+
+    private void registerPending() throws IOException
+    {
+        Object todo[];
+        synchronized (pending) {
+            todo = pending.toArray();
+            pending.clear();
+        }
+        for (int i = 0; i < todo.length; ++i) {
+            if (todo[i] instanceof HttpServer.PortInterface) {
+                HttpServer.PortInterface pi = (HttpServer.PortInterface)todo[i];
+                ServerSocketChannel ssc = pi.ss.getChannel();
+                try {
+                    ssc.configureBlocking(false);
+                    ssc.register(selector, SelectionKey.OP_ACCEPT, pi);
+                } catch (ClosedChannelException e) {
+                    // drained before we got to it
+                }
+            } else {
+                HttpConnection conn = (HttpConnection)todo[i];
+                SocketChannel sc = conn.s.getChannel();
+                try {
+                    sc.configureBlocking(false);
+                    sc.register(selector, SelectionKey.OP_READ, conn);
+                } catch (IOException e) {
+                    conn.finish();
+                }
+            }
+        }
+    }
+
+    private void accept(HttpServer.PortInterface pi)
+    {
+        while (true) {
+            SocketChannel sc;
+            try {
+                sc = pi.ss.getChannel().accept();
+            } catch (IOException e) {
+                if (!server.isDraining()) {
+                    server.handleException(pi.ss, e);
+                }
+                return;
+            }
+            if (sc == null) {
+                return;
+            }
+
+            // spread connections over the selector threads
+            HttpConnection conn = new HttpConnection(pi, sc, server.nextSelector());
+
+            // are we allowed to add more connections?
+            if (!pi.port.addConnection()) {
+                // no, reply with 503 Server Busy. The new channel is still
+                // blocking, which is fine for a reply this short.
+                conn.busy();
+                continue;
+            }
+            conn.selector.watch(conn);
+        }
+    }
+
+    private void read(SelectionKey key)
+    {
+        HttpConnection conn = (HttpConnection)key.attachment();
+        try {
+            if (!conn.readHead()) {
+                return;
+            }
+            key.cancel();
+            ready.add(conn);
+        } catch (IOException e) {
+            // closed by the client, or a bad request
+            key.cancel();
+            conn.finish();
+        }
+    }
+
+    /**
+     * Hand connections with a complete request header to the workers. A
+     * channel can't be made blocking until its cancelled key has been removed
+     * from the selector, which the selectNow() does.
+     */
+    private void dispatchReady() throws IOException
+    {
+        if (ready.isEmpty()) {
+            return;
+        }
+        selector.selectNow();
+        for (Iterator<HttpConnection> i = ready.iterator(); i.hasNext();) {
+            HttpConnection conn = i.next();
+            i.remove();
+            try {
+                conn.s.getChannel().configureBlocking(true);
+            } catch (IOException e) {
+                conn.finish();
+                continue;
+            }
+            server.dispatch(conn);
+        }
+    }
+}
@@ -10,13 +10,24 @@ package com.tivo.hme.host.http.server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
 import java.util.*;
+import java.util.concurrent.*;
 
 import com.tivo.hme.host.util.*;
 import com.tivo.hme.host.http.share.*;
 
 /**
  * Simple http server.
+ * <p>
+ * By default every connection gets its own thread. If <code>http.selector</code>
+ * is true, connections are instead watched by <code>http.selector.threads</code>
+ * I/O threads, and requests are handled by a pool of <code>http.workers</code>
+ * worker threads. A worker is busy for as long as its request is, so HME
+ * sessions and streams hold one each for their whole life, but idle
+ * keep-alive connections hold none. Requests never wait for a worker: if
+ * none is idle the server replies 503 at once, so that a client isn't left
+ * hanging behind sessions that may never end.
  *
  * @author      Adam Doppelt
  * @author      Arthur van Hoff
@@ -38,6 +49,12 @@ public abstract class HttpServer implements IHttpConstants
     protected List pis;
     protected boolean draining;
 
+    // selector mode
+    protected boolean selectorMode;
+    protected HttpSelector selectors[];
+    protected int nextSelector;
+    protected ExecutorService workers;
+
     /**
      * Constructor.
      */
@@ -55,6 +72,23 @@ public abstract class HttpServer implements IHttpConstants
         acceptorName = config.getValue("http.acceptor.name", "Acceptor");
         backlog = config.getInt("http.backlog", 50);
 
+        selectorMode = config.getBool("http.selector", false);
+        if (selectorMode) {
+            int nworkers = config.getInt("http.workers", 32);
+            workers = new ThreadPoolExecutor(nworkers, nworkers, 0, TimeUnit.SECONDS,
+                                             new SynchronousQueue<Runnable>(),
+                                             new ThreadFactory() {
+                int n;
+                public synchronized Thread newThread(Runnable r) {
+                    return new Thread(r, httpName + " worker " + (++n));
+                }
+            });
+            selectors = new HttpSelector[config.getInt("http.selector.threads", 1)];
+            for (int i = 0; i < selectors.length; ++i) {
+                selectors[i] = new HttpSelector(this, httpName + " selector " + (i + 1));
+            }
+        }
+
         // get interface names and resolve to ip addresses
         intfs = config.getValueList("http.interfaces", InetAddress.getLocalHost().getHostAddress());
         for (int i = 0; i < intfs.length; ++i) {
@@ -95,6 +129,34 @@ public abstract class HttpServer implements IHttpConstants
         }
     }
 
+    /**
+     * Pick the selector that watches the next accepted connection.
+     */
+    synchronized HttpSelector nextSelector()
+    {
+        HttpSelector selector = selectors[nextSelector];
+        nextSelector = (nextSelector + 1) % selectors.length;
+        return selector;
+    }
+
+    /**
+     * Hand a connection whose request header has been read to a worker. If
+     * every worker is busy, reply 503 Server Busy.
+     */
+    void dispatch(final HttpConnection conn)
+    {
+        try {
+            workers.execute(new Runnable() {
+                public void run() {
+                    conn.serveSelected();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            conn.busy();
+            conn.pi.port.removeConnection();
+        }
+    }
+
     /**
      * Get the list of intfs on which the server is listening.
      */
@@ -202,13 +264,25 @@ public abstract class HttpServer implements IHttpConstants
             this.port = port;
             this.intf = intf;
             
-            this.ss = new ServerSocket(port.port, backlog, intf);
+            // only the selector needs channels. Before Java 13 a channel
+            // socket's streams share one lock, so a thread blocked reading an
+            // HME session would hold up every thread writing to it.
+            if (selectorMode) {
+                this.ss = ServerSocketChannel.open().socket();
+            } else {
+                this.ss = new ServerSocket();
+            }
+            this.ss.bind(new InetSocketAddress(intf, port.port), backlog);
             if (port.port == 0) {
                 port.port = ss.getLocalPort();
             }
             pis.add(this);
             
-            new Thread(this).start();
+            if (selectorMode) {
+                selectors[0].listen(this);
+            } else {
+                new Thread(this).start();
+            }
         }
         
         public void run()
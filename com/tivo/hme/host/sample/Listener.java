@@ -16,6 +16,9 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -33,6 +36,7 @@ import com.tivo.hme.host.util.Config;
 import com.tivo.hme.host.util.Cookies;
 import com.tivo.hme.interfaces.IApplication;
 import com.tivo.hme.interfaces.IFactory;
+import com.tivo.hme.interfaces.IFileRegion;
 import com.tivo.hme.interfaces.IHmeConstants;
 import com.tivo.hme.interfaces.IListener;
 import com.tivo.hme.interfaces.ILogger;
@@ -386,12 +390,22 @@ public class Listener extends HttpServer implements IListener
             getLogger().log(ILogger.LOG_NOTICE, http.getInetAddress().getHostAddress() + " " + relpath + " HTTP " + http.getMethod() + " - to factory " + factory.getAppName());
             try {
                 InputStream assetStr = factory.fetchAsset(http);
+                if (assetStr == null) {
+                    return;
+                }
+                boolean head = "HEAD".equalsIgnoreCase(http.getMethod());
                 try {
-                  OutputStream out = http.getOutputStream(assetStr.available());
-                  byte data[] = new byte[IHttpConstants.TCP_BUFFER_SIZE];
-                  int n;
-                  while ((n = assetStr.read(data, 0, data.length)) > 0) {
-                      out.write(data, 0, n);
+                  if (assetStr instanceof IFileRegion) {
+                      IFileRegion region = (IFileRegion)assetStr;
+                      OutputStream out = http.getOutputStream(region.getLength());
+                      if (!head) {
+                          sendFileRegion(http, out, region);
+                      }
+                  } else {
+                      OutputStream out = http.getOutputStream(assetStr.available());
+                      if (!head) {
+                          copy(assetStr, out);
+                      }
                   }
               } finally {
                   assetStr.close();
@@ -403,6 +417,46 @@ public class Listener extends HttpServer implements IListener
         }
     }
 
+    /**
+     * Send a region of a file with transferTo(). If the connection's socket
+     * has a channel, the file is transferred straight to it, which saves
+     * copying the data into the VM and back out. Otherwise it is transferred
+     * to the socket's output stream.
+     */
+    private void sendFileRegion(HttpRequest http, OutputStream out, IFileRegion region) throws IOException
+    {
+        Socket s = http.getConnection().getSocket();
+        WritableByteChannel sc = s.getChannel();
+        if (sc == null) {
+            sc = Channels.newChannel(s.getOutputStream());
+        }
+
+        // the headers are still buffered in the output stream
+        out.flush();
+
+        FileChannel fc = region.getChannel();
+        long pos = region.getPosition();
+        long remaining = region.getLength();
+        while (remaining > 0) {
+            long n = fc.transferTo(pos, remaining, sc);
+            if (n <= 0) {
+                // the file got shorter than the length we sent
+                throw new EOFException("unexpected end of file");
+            }
+            pos += n;
+            remaining -= n;
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException
+    {
+        byte data[] = new byte[IHttpConstants.TCP_BUFFER_SIZE];
+        int n;
+        while ((n = in.read(data, 0, data.length)) > 0) {
+            out.write(data, 0, n);
+        }
+    }
+
     /* (non-Javadoc)
      * @see com.tivo.hme.hosting.IListener#getLogger()
      */
@@ -73,6 +73,15 @@ public class Main implements ILogger
         int port = args.getInt("--port", DEFAULT_PORT);
         config.put("http.ports", "" + port);
 
+        // multiplex connections on a selector instead of a thread each
+        if (args.getBoolean("--selector")) {
+            config.put("http.selector", "true");
+        }
+        String workers = args.getValue("--workers", null);
+        if (workers != null) {
+            config.put("http.workers", workers);
+        }
+
         //
         // determine list of interfaces
         //
@@ -214,6 +223,8 @@ public class Main implements ILogger
         System.out.println(" --launcher <file>     start factories listed in file");
         System.out.println(" --jars <dir>          scan directory for HME app jar files");
         System.out.println(" --jar <jarfile>       start factory for the given jar");
+        System.out.println(" --selector            share a few I/O threads between all connections");
+        System.out.println(" --workers <n>         request threads in --selector mode (default 32)");
         System.exit(1);
     }
 
@@ -0,0 +1,22 @@
+//////////////////////////////////////////////////////////////////////
+//
+// File: IFileRegion.java
+//
+//////////////////////////////////////////////////////////////////////
+
+package com.tivo.hme.interfaces;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * Interface implemented by asset streams that are a region of a file. The
+ * listener can send such a stream straight from the file to the socket,
+ * instead of copying it through a buffer.
+ */
+public interface IFileRegion {
+
+    FileChannel getChannel();
+    long getPosition();
+    long getLength();
+
+}
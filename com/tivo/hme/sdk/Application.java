@@ -94,6 +94,9 @@ abstract public class Application extends StreamResource implements IApplication
     
     private boolean applicationClosing = false;
 
+    // whether redundant commands are dropped before a flush
+    private boolean batching = true;
+
     /**
      * @return the root view pane of the application.
      */
@@ -140,6 +143,20 @@ abstract public class Application extends StreamResource implements IApplication
     public boolean isApplicationClosing() {
         return applicationClosing;
     }
+
+    /**
+     * Sets whether commands are batched. Commands are always buffered until
+     * the end of an event or an explicit flush. When batching, a command
+     * that sets a view property (bounds, scale, translation, transparency,
+     * visibility or resource) also replaces an earlier unflushed command that
+     * set the same property, so the receiver only sees the final value.
+     * Animated changes are never replaced. Batching is on by default.
+     */
+    public synchronized void setBatching(boolean batching)
+    {
+        this.batching = batching;
+    }
+
     /**
      * Creates a new <code>Application</code> instance.
      */
@@ -972,7 +989,7 @@ abstract public class Application extends StreamResource implements IApplication
             out.writeVInt(width);
             out.writeVInt(height);
             out.writeVInt((animation != null) ? animation.getID() : ID_NULL);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_BOUNDS, id, animation);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -989,7 +1006,7 @@ abstract public class Application extends StreamResource implements IApplication
             out.writeFloat(sx);
             out.writeFloat(sy);
             out.writeVInt((animation != null) ? animation.getID() : ID_NULL);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_SCALE, id, animation);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -1006,7 +1023,7 @@ abstract public class Application extends StreamResource implements IApplication
             out.writeVInt(tx);
             out.writeVInt(ty);
             out.writeVInt((animation != null) ? animation.getID() : ID_NULL);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_TRANSLATION, id, animation);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -1022,7 +1039,7 @@ abstract public class Application extends StreamResource implements IApplication
             writeCommand(CMD_VIEW_SET_TRANSPARENCY, id);
             out.writeFloat(transparency);
             out.writeVInt((animation != null) ? animation.getID() : ID_NULL);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_TRANSPARENCY, id, animation);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -1038,7 +1055,7 @@ abstract public class Application extends StreamResource implements IApplication
             writeCommand(CMD_VIEW_SET_VISIBLE, id);
             out.writeBoolean(visible);
             out.writeVInt((animation != null) ? animation.getID() : ID_NULL);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_VISIBLE, id, animation);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -1069,7 +1086,7 @@ abstract public class Application extends StreamResource implements IApplication
             writeCommand(CMD_VIEW_SET_RESOURCE, id);
             out.writeVInt((resource != null) ? resource.getID() : ID_NULL);
             out.writeVInt(flags);
-            writeTerminator();
+            writeTerminator(CMD_VIEW_SET_RESOURCE, id, null);
         } catch (Throwable t) {
             fatalError(t);
         }
@@ -1412,7 +1429,7 @@ abstract public class Application extends StreamResource implements IApplication
     }
     
     //
-    // Following three helper methods are called from synchronized methods
+    // Following helper methods are called from synchronized methods
     //
     
     private void writeCommand(int opcode, int id) throws IOException
@@ -1448,7 +1465,32 @@ abstract public class Application extends StreamResource implements IApplication
         }
         
         out.writeTerminator();
+        watchFlush();
+    }
 
+    /**
+     * Ends a command that sets a property of a view or resource. When
+     * batching, a later command that sets the same property before the next
+     * flush replaces this one, unless either of them is animated.
+     */
+    private void writeTerminator(int opcode, int id, Resource animation) throws IOException
+    {
+        if (context == null) {
+            return;
+        }
+
+        long key = ((long)opcode << 32) | (id & 0xFFFFFFFFL);
+        if (batching && animation == null) {
+            out.writeTerminator(key);
+        } else {
+            out.forget(key);
+            out.writeTerminator();
+        }
+        watchFlush();
+    }
+
+    private void watchFlush()
+    {
         if (IContext.DEBUG_FLUSHES) {
             // watch for unflushed bytes if this isn't the event thread
             Thread current = Thread.currentThread();
@@ -8,6 +8,8 @@
 
 package com.tivo.hme.sdk;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +32,7 @@ import com.tivo.hme.interfaces.IListener;
 import com.tivo.hme.interfaces.ILoader;
 import com.tivo.hme.interfaces.ILogger;
 import com.tivo.hme.sdk.io.FastInputStream;
+import com.tivo.hme.sdk.io.FileRegionInputStream;
 import com.tivo.hme.sdk.io.HmeInputStream;
 import com.tivo.hme.sdk.io.HmeOutputStream;
 import com.tivo.hme.sdk.util.Mp3Helper;
@@ -241,6 +244,29 @@ public class Factory implements IFactory
     	return -1;
     }
 
+    /**
+     * Get the length of the stream getStream() would return, without opening
+     * it. This is used to answer HEAD requests. The default doesn't know the
+     * length, so HEAD requests open the stream like any other request.
+     *
+     * @return the length in bytes, or -1 if it isn't known
+     */
+    protected long getStreamLength(String uri) throws IOException
+    {
+        return -1;
+    }
+
+    /**
+     * Skip into an MP3 stream returned by getStream(). The default reads the
+     * stream's frames up to the specified time. Subclasses that know more
+     * about the stream can override this to seek faster.
+     */
+    protected InputStream seekMP3(String uri, InputStream in, long seekTime) throws IOException
+    {
+        Mp3Helper mp3Helper = new Mp3Helper(in, in.available());
+        return mp3Helper.seek(seekTime);
+    }
+
     /**
      * This is called by the HTTP server when the factory must handle an http
      * request.
@@ -253,6 +279,15 @@ public class Factory implements IFactory
         String queryStr = getQuery(uri);
         String baseUri = removeQueryFromURI(uri);
         
+        // A HEAD request only needs the length. A seek changes the length, so
+        // only answer without opening the stream if there isn't one.
+        if (queryStr == null && "HEAD".equalsIgnoreCase(http.getMethod())) {
+            long length = getStreamLength(baseUri);
+            if (length >= 0) {
+                return handleHead(http, baseUri, length);
+            }
+        }
+        
         try {
             in = getStream(baseUri);
         } catch (Exception e) {
@@ -261,25 +296,8 @@ public class Factory implements IFactory
             return null;
         }
         
-        long offset = 0;
-        String range = http.get("Range");
-        if ((range != null) && range.startsWith("bytes=") && range.endsWith("-")) {
-            try {
-                offset = Long.parseLong(range.substring(6, range.length() - 1));
-            } catch (NumberFormatException e) {
-                // ignore
-            }
-        }
-        
-        if (!http.getReplied()) {
-            if (offset == 0) {
-                http.reply(200, "Media follows");
-            } else {
-                http.reply(206, "Partial Media follows");
-            }
-        }
-        
         String ct = null;
+        long mp3duration = -1;
         if (baseUri.endsWith(".mpeg") || baseUri.endsWith(".mpg")) {
             ct = "video/mpeg";
         } else if (baseUri.endsWith(".mp3")) 
@@ -288,39 +306,179 @@ public class Factory implements IFactory
             ct = "audio/mpeg";
             
             // Get the mp3 stream's duration
-            long mp3duration = getMP3Duration(baseUri);
+            mp3duration = getMP3Duration(baseUri);
             System.out.println("MP3 stream duration: " + mp3duration);
-            if (mp3duration > 0)
-                http.addHeader(IHmeConstants.TIVO_DURATION, "" + mp3duration);
             
             // do MP3 seek if needed
             if (in != null && queryStr != null)
             {
                 int seekTime = getSeekTime(queryStr);
-                Mp3Helper mp3Helper = new Mp3Helper(in, in.available());
-                in = mp3Helper.seek(seekTime);
+                in = seekMP3(baseUri, in, seekTime);
             }
         }
+
+        // A stream that is still a file is sent as a region of the file,
+        // which gives an exact length and lets us serve any byte range.
+        if (in instanceof FileInputStream) {
+            in = new FileRegionInputStream((FileInputStream)in);
+        }
+
+        String range = http.get("Range");
+        if (in instanceof FileRegionInputStream) {
+            FileRegionInputStream region = (FileRegionInputStream)in;
+            long total = region.getLength();
+            long bytes[] = parseRange(range, total);
+            if (bytes != null && bytes.length == 0) {
+                in.close();
+                if (!http.getReplied()) {
+                    http.reply(416, "Requested Range Not Satisfiable");
+                    http.addHeader("Content-Range", "bytes */" + total);
+                }
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            if (!http.getReplied()) {
+                if (bytes == null) {
+                    http.reply(200, "Media follows");
+                } else {
+                    http.reply(206, "Partial Media follows");
+                }
+            }
+            http.addHeader("Accept-Ranges", "bytes");
+            if (bytes != null) {
+                http.addHeader("Content-Range", "bytes " + bytes[0] + "-" + bytes[1] + "/" + total);
+                in = region.subRegion(bytes[0], bytes[1] - bytes[0] + 1);
+            }
+        } else {
+            long offset = 0;
+            if ((range != null) && range.startsWith("bytes=") && range.endsWith("-")) {
+                try {
+                    offset = Long.parseLong(range.substring(6, range.length() - 1));
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+
+            if (!http.getReplied()) {
+                if (offset == 0) {
+                    http.reply(200, "Media follows");
+                } else {
+                    http.reply(206, "Partial Media follows");
+                }
+            }
+
+            if (offset > 0) {
+                long total = in.available();
+                http.addHeader("Content-Range", "bytes " + offset + "-" + (total-1) + "/" + total);
+                in.skip(offset);
+            }
+        }
+
+        if (mp3duration > 0) {
+            http.addHeader(IHmeConstants.TIVO_DURATION, "" + mp3duration);
+        }
         if (ct != null) {
             http.addHeader("Content-Type", ct);
         }
         
-        if (offset > 0) {
-            long total = in.available();
-            http.addHeader("Content-Range", "bytes " + offset + "-" + (total-1) + "/" + total);
-            in.skip(offset);
-        }
-        
         addHeaders(http, baseUri);
         
-        if (http.get("http-method").equalsIgnoreCase("HEAD")) {
-            return null;
-        }
-        
+        // The stream is returned for HEAD requests too, so that the listener
+        // can send its length. The listener doesn't send the body.
         return in;
         
     }
 
+    /**
+     * Reply to a HEAD request for a stream whose length is known. The same
+     * headers are sent as for a GET, but the stream isn't opened. The stream
+     * returned is empty, and only reports the length of the reply.
+     */
+    private InputStream handleHead(IHttpRequest http, String baseUri, long total) throws IOException
+    {
+        long bytes[] = parseRange(http.get("Range"), total);
+        if (bytes != null && bytes.length == 0) {
+            if (!http.getReplied()) {
+                http.reply(416, "Requested Range Not Satisfiable");
+                http.addHeader("Content-Range", "bytes */" + total);
+            }
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        if (!http.getReplied()) {
+            if (bytes == null) {
+                http.reply(200, "Media follows");
+            } else {
+                http.reply(206, "Partial Media follows");
+            }
+        }
+        http.addHeader("Accept-Ranges", "bytes");
+        long length = total;
+        if (bytes != null) {
+            http.addHeader("Content-Range", "bytes " + bytes[0] + "-" + bytes[1] + "/" + total);
+            length = bytes[1] - bytes[0] + 1;
+        }
+
+        if (baseUri.endsWith(".mpeg") || baseUri.endsWith(".mpg")) {
+            http.addHeader("Content-Type", "video/mpeg");
+        } else if (baseUri.endsWith(".mp3")) {
+            long mp3duration = getMP3Duration(baseUri);
+            if (mp3duration > 0) {
+                http.addHeader(IHmeConstants.TIVO_DURATION, "" + mp3duration);
+            }
+            http.addHeader("Content-Type", "audio/mpeg");
+        }
+
+        addHeaders(http, baseUri);
+        return new URLStream(new ByteArrayInputStream(new byte[0]), length);
+    }
+
+    /**
+     * Parses a Range header that asks for a single range of bytes, such as
+     * "bytes=500-999", "bytes=500-" or "bytes=-500".
+     *
+     * @param range the value of the header, or null
+     * @param total the length of the stream
+     * @return the first and last byte of the range, an empty array if the
+     * range can't be satisfied, or null if the whole stream should be sent
+     * (including when the header is missing or can't be parsed).
+     */
+    static long[] parseRange(String range, long total)
+    {
+        if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.length() == 0) {
+                // suffix range - the last n bytes
+                if (last.length() == 0) {
+                    return null;
+                }
+                long n = Long.parseLong(last);
+                if (n <= 0 || total == 0) {
+                    return new long[0];
+                }
+                return new long[] { Math.max(0, total - n), total - 1 };
+            }
+            long a = Long.parseLong(first);
+            long b = (last.length() == 0) ? Long.MAX_VALUE : Long.parseLong(last);
+            if (a < 0 || b < a) {
+                return null;
+            }
+            if (a >= total) {
+                return new long[0];
+            }
+            return new long[] { a, Math.min(b, total - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Subclasses can override this method to add more HTTP headers to a response.
      * 
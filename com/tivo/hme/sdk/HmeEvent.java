@@ -449,6 +449,14 @@ public abstract class HmeEvent implements IHmeProtocol
          */
         private Map map;
 
+        /**
+         * The "pos" and "speed" properties, parsed. A position or duration of
+         * -1 and a speed of NaN mean the property wasn't sent.
+         */
+        private long position = -1;
+        private long duration = -1;
+        private float speed = Float.NaN;
+
         public Resource getResource()
         {
             return rsrc;
@@ -464,12 +472,85 @@ public abstract class HmeEvent implements IHmeProtocol
             return map;
         }
 
+        /**
+         * @return the position of a stream in milliseconds, or -1 if unknown
+         */
+        public long getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * @return the duration of a stream in milliseconds according to the
+         * receiver, or -1 if unknown
+         */
+        public long getDuration()
+        {
+            return duration;
+        }
+
+        /**
+         * @return the speed of a stream, or NaN if unknown
+         */
+        public float getSpeed()
+        {
+            return speed;
+        }
+
         protected ResourceInfo( int opcode, int id, Resource rsrc, int status, Map map )
         {
             super(opcode, id);
             this.rsrc = rsrc;
             this.status = status;
             this.map = map;
+            parseProperties();
+        }
+
+        /**
+         * Parse the properties that are read for every event while a stream
+         * plays. "pos" is sent as "position/duration".
+         */
+        private void parseProperties()
+        {
+            if (map == null) {
+                return;
+            }
+            String pos = (String)map.get("pos");
+            if (pos != null) {
+                int slash = pos.indexOf('/');
+                int end = (slash < 0) ? pos.length() : slash;
+                position = parseMillis(pos, 0, end);
+                if (slash >= 0) {
+                    duration = parseMillis(pos, slash + 1, pos.length());
+                }
+            }
+            String str = (String)map.get("speed");
+            if (str != null) {
+                try {
+                    speed = Float.parseFloat(str);
+                } catch (NumberFormatException e) {
+                }
+            }
+        }
+
+        /**
+         * Parse a non-negative number of milliseconds from part of a string,
+         * or return -1 if it isn't one.
+         */
+        private static long parseMillis(String str, int start, int end)
+        {
+            if (start >= end) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = start; i < end; ++i) {
+                char c = str.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
         }
 
         public ResourceInfo(int id, int status, Map map)
@@ -486,6 +567,7 @@ public abstract class HmeEvent implements IHmeProtocol
         {
             this((int)in.readVInt(), null, (int)in.readVInt(), new HashMap());
             readMap(in, map);
+            parseProperties();
             rsrc = (app.getResource(getID()));
         }
         
@@ -95,9 +95,8 @@ public class StreamResource extends Resource
           case EVT_RSRC_INFO: {
               HmeEvent.ResourceInfo info = (HmeEvent.ResourceInfo)event;
               if (info.getID() == getID()) {
-                  String str = (String)info.getMap().get("speed");
-                  if (str != null) {
-                      speed = (int)Float.parseFloat(str);
+                  if (!Float.isNaN(info.getSpeed())) {
+                      speed = (int)info.getSpeed();
                   }
               }
               // let this event propagate to our parent
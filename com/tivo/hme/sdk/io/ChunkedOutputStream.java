@@ -25,9 +25,20 @@ public class ChunkedOutputStream extends HmeOutputStream
     // the number of bytes in the marker
     final static int MARKER_SIZE = 2;
 
+    // the most superseding messages tracked between flushes
+    final static int MAX_KEYED = 64;
+
     protected byte buf[];                       // out buffer
     protected int pos;                          // how far we've written
-    protected int posLimit;                     // usually buf.length
+    protected int posLimit;                     // leaves room for two markers
+    protected int chunkStart;                   // marker of the current chunk
+    protected int messageStart;                 // start of the current message, or -1 if part was flushed
+
+    // keyed messages in the buffer, see writeTerminator(long)
+    long keys[] = new long[MAX_KEYED];
+    int keyStarts[] = new int[MAX_KEYED];
+    int keyEnds[] = new int[MAX_KEYED];
+    int keyCount;
     
     /**
      * Creates a chunked output stream with the specified stream and buffer
@@ -36,10 +47,7 @@ public class ChunkedOutputStream extends HmeOutputStream
      */
     public ChunkedOutputStream(OutputStream out, int size)
     {
-        super(out); //, size);
-        buf = new byte[size];
-        pos = MARKER_SIZE;
-        posLimit = size-pos;
+        this(out, new byte[size]);
     }
 
     /**
@@ -50,39 +58,136 @@ public class ChunkedOutputStream extends HmeOutputStream
     public ChunkedOutputStream(OutputStream out, byte buf[])
     {
         super(out);
+        if (buf.length <= 2 * MARKER_SIZE) {
+            throw new IllegalArgumentException("buffer too small: " + buf.length);
+        }
         this.buf = buf;
+        posLimit = buf.length - MARKER_SIZE;
+        chunkStart = 0;
+        messageStart = 0;
         pos = MARKER_SIZE;
-        posLimit = buf.length-pos;
     }
 
     /**
      * Write a terminator. A terminator can be used to separate a stream into
      * distinct messages. See ChunkedInputStream.
+     *
+     * Messages are framed in the buffer and only written to the underlying
+     * stream when the buffer fills or is flushed, so a batch of messages
+     * goes out in one write.
      */
     public void writeTerminator() throws IOException
     {
-        // REMIND : we could save a flush here in some cases (if there is room for the
-        // terminator at the end of the buffer)
-        flushBuffer();
-        chunk(0);
+        if (pos - chunkStart > MARKER_SIZE) {
+            closeChunk();
+        }
+        // an empty chunk is the terminator
+        closeChunk();
+        messageStart = chunkStart;
+        if (chunkStart > posLimit) {
+            // no room for the next marker
+            flushBuffer();
+        }
     }
 
-    protected void flushBuffer() throws IOException
+    /**
+     * Write a terminator for a message that makes any earlier message with
+     * the same key redundant, such as a second bounds change for a view. If
+     * the earlier message hasn't been flushed yet it is removed from the
+     * buffer.
+     */
+    public void writeTerminator(long key) throws IOException
     {
-        int len = pos - MARKER_SIZE;
-        if (len != 0) {
-            chunk(len);
+        int start = messageStart;
+        writeTerminator();
+        int end = messageStart;
+        if (start < 0 || end <= start) {
+            // some of the message has been flushed
+            forget(key);
+            return;
+        }
+        for (int i = 0; i < keyCount; ++i) {
+            if (keys[i] == key) {
+                remove(keyStarts[i], keyEnds[i]);
+                int n = keyEnds[i] - keyStarts[i];
+                keyStarts[i] = start - n;
+                keyEnds[i] = end - n;
+                return;
+            }
+        }
+        if (keyCount < MAX_KEYED) {
+            keys[keyCount] = key;
+            keyStarts[keyCount] = start;
+            keyEnds[keyCount] = end;
+            ++keyCount;
         }
     }
-    
-    protected void chunk(int len) throws IOException
+
+    /**
+     * Stop a later message from removing the buffered message with this key,
+     * for example because a message in between depends on it.
+     */
+    public void forget(long key)
     {
-        buf[0] = (byte)(len >>> 8);
-        buf[1] = (byte)(len >>> 0);
-        out.write(buf, 0, pos);
-        
-//        total += pos;
+        for (int i = 0; i < keyCount; ++i) {
+            if (keys[i] == key) {
+                --keyCount;
+                keys[i] = keys[keyCount];
+                keyStarts[i] = keyStarts[keyCount];
+                keyEnds[i] = keyEnds[keyCount];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove a complete message from the buffer. Only called between
+     * messages, so nothing after chunkStart has been written.
+     */
+    private void remove(int start, int end)
+    {
+        int n = end - start;
+        System.arraycopy(buf, end, buf, start, chunkStart - end);
+        pos -= n;
+        chunkStart -= n;
+        messageStart -= n;
+        for (int i = 0; i < keyCount; ++i) {
+            if (keyStarts[i] >= end) {
+                keyStarts[i] -= n;
+                keyEnds[i] -= n;
+            }
+        }
+    }
+
+    /**
+     * Fill in the marker of the current chunk and start a new one.
+     */
+    private void closeChunk()
+    {
+        int len = pos - chunkStart - MARKER_SIZE;
+        buf[chunkStart] = (byte)(len >>> 8);
+        buf[chunkStart + 1] = (byte)(len >>> 0);
+        chunkStart = pos;
+        pos += MARKER_SIZE;
+    }
+
+    protected void flushBuffer() throws IOException
+    {
+        int len = pos - chunkStart - MARKER_SIZE;
+        int count = chunkStart;
+        if (len != 0) {
+            closeChunk();
+            count = chunkStart;
+        }
+        if (count != 0) {
+            out.write(buf, 0, count);
+        }
+
+        // a message that was cut off can't be removed any more
+        messageStart = (messageStart == chunkStart) ? 0 : -1;
+        chunkStart = 0;
         pos = MARKER_SIZE;
+        keyCount = 0;
     }
     
     public int getUnflushedCount()
@@ -100,8 +205,8 @@ public class ChunkedOutputStream extends HmeOutputStream
 
     public void write(int c) throws IOException
     {
-        if (pos == posLimit) {
-            flush();
+        if (pos >= posLimit) {
+            flushBuffer();
         }
         buf[pos++] = (byte) c;
     }
@@ -116,8 +221,8 @@ public class ChunkedOutputStream extends HmeOutputStream
         // write the data
         while (length > 0) {
             int room = posLimit - pos;
-            if (room == 0) {
-                flush();
+            if (room <= 0) {
+                flushBuffer();
                 room = posLimit - pos;          
             }
             int n = (room > length) ? length : room;
@@ -131,7 +236,7 @@ public class ChunkedOutputStream extends HmeOutputStream
     public static void main(String args[]) throws IOException
     {
         while (true) {
-            int clen = (int)(Math.random() * 7.0) + 3;
+            int clen = (int)(Math.random() * 7.0) + 5;
             
             ByteArrayOutputStream bout = new ByteArrayOutputStream(1024);
         	HmeOutputStream hout = new HmeOutputStream(bout);
@@ -0,0 +1,125 @@
+//////////////////////////////////////////////////////////////////////
+//
+// File: FileRegionInputStream.java
+//
+//////////////////////////////////////////////////////////////////////
+
+package com.tivo.hme.sdk.io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.tivo.hme.interfaces.IFileRegion;
+
+/**
+ * A stream of a region of a file. The listener sends these with
+ * FileChannel.transferTo(), so the data never has to be copied into the
+ * VM. Reading the stream works as well, for listeners that can't do that.
+ *
+ * Reads are positional, so the position of the underlying channel is never
+ * changed.
+ */
+public class FileRegionInputStream extends InputStream implements IFileRegion
+{
+    FileInputStream file;
+    FileChannel channel;
+    long position;
+    long length;
+    long pos;
+
+    /**
+     * A stream of length bytes of the file, starting at the specified
+     * position.  Closing the stream closes the file.
+     */
+    public FileRegionInputStream(FileInputStream file, long position, long length)
+    {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * A stream of the rest of the file, from the current position of the
+     * file.
+     */
+    public FileRegionInputStream(FileInputStream file) throws IOException
+    {
+        this(file, file.getChannel().position(),
+             file.getChannel().size() - file.getChannel().position());
+    }
+
+    /**
+     * Returns a stream of part of this region, sharing the same file.
+     *
+     * @param offset the offset of the part in this region
+     * @param len the length of the part
+     */
+    public FileRegionInputStream subRegion(long offset, long len)
+    {
+        if (offset < 0 || len < 0 || offset + len > length) {
+            throw new IllegalArgumentException("region out of range");
+        }
+        return new FileRegionInputStream(file, position + offset, len);
+    }
+
+    public FileChannel getChannel()
+    {
+        return channel;
+    }
+
+    public long getPosition()
+    {
+        return position;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public int read() throws IOException
+    {
+        byte b[] = new byte[1];
+        return (read(b, 0, 1) == 1) ? (b[0] & 0xff) : -1;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException
+    {
+        long left = length - pos;
+        if (left <= 0) {
+            return -1;
+        }
+        if (len > left) {
+            len = (int)left;
+        }
+        int n = channel.read(ByteBuffer.wrap(b, off, len), position + pos);
+        if (n > 0) {
+            pos += n;
+        }
+        return n;
+    }
+
+    public long skip(long n) throws IOException
+    {
+        if (n <= 0) {
+            return 0;
+        }
+        n = Math.min(n, length - pos);
+        pos += n;
+        return n;
+    }
+
+    public int available() throws IOException
+    {
+        return (int)Math.min(length - pos, Integer.MAX_VALUE);
+    }
+
+    public void close() throws IOException
+    {
+        file.close();
+    }
+}
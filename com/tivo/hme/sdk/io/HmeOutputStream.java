@@ -30,6 +30,13 @@ import com.tivo.core.ds.TeDictBinary;
  */
 public class HmeOutputStream extends FilterOutputStream
 {
+    // scratch space for encoding strings, one per thread
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
     protected boolean fUseVString;
 
     /**
@@ -135,19 +142,17 @@ public class HmeOutputStream extends FilterOutputStream
     }
     
     /**
-     * Write a UTF encoded string.
+     * Write a UTF encoded string. The string is encoded into a per-thread
+     * scratch buffer, so writing it doesn't allocate.
      */
     public final void writeUTF(String str) throws IOException
     {
         int strlen = str.length();
         int utflen = 0;
-        char[] charr = new char[strlen];
         int c, count = 0;
 
-        str.getChars(0, strlen, charr, 0);
- 
         for (int i = 0; i < strlen; i++) {
-            c = charr[i];
+            c = str.charAt(i);
             if ((c >= 0x0001) && (c <= 0x007F)) {
                 utflen++;
             } else if (c > 0x07FF) {
@@ -167,9 +172,13 @@ public class HmeOutputStream extends FilterOutputStream
         else {
             writeShort( utflen );
         }
-        byte[] bytearr = new byte[utflen];
+        byte[] bytearr = scratch.get();
+        if (bytearr.length < utflen) {
+            bytearr = new byte[Math.max(utflen, bytearr.length * 2)];
+            scratch.set(bytearr);
+        }
         for (int i = 0; i < strlen; i++) {
-            c = charr[i];
+            c = str.charAt(i);
             if ((c >= 0x0001) && (c <= 0x007F)) {
                 bytearr[count++] = (byte) c;
             } else if (c > 0x07FF) {
@@ -181,7 +190,7 @@ public class HmeOutputStream extends FilterOutputStream
                 bytearr[count++] = (byte) (0x80 | ((c >>  0) & 0x3F));
             }
         }
-        write(bytearr);
+        write(bytearr, 0, utflen);
     }
 
     /**
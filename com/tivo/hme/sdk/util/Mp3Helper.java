@@ -17,8 +17,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.net.URL;
-import java.net.URLConnection;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import com.tivo.hme.interfaces.IHmeConstants;
@@ -132,7 +134,19 @@ public class Mp3Helper {
     // this flag indicates that the Xing header contains nframes
     final static int XING_NFRAMES_FLAG = 0x0001;
 
+    // this flag indicates that the Xing header contains the stream size in bytes
+    final static int XING_BYTES_FLAG = 0x0002;
+
+    // this flag indicates that the Xing header contains a 100 entry table of contents
+    final static int XING_TOC_FLAG = 0x0004;
+
     final static String VBRI_MAGIC = "VBRI";
+
+    // number of evenly spaced points in a seek table built by walking frames
+    final static int SEEK_POINTS = 100;
+
+    // the longest possible frame (layer 2/3, 384kbps, 32kHz, padded) plus a header
+    final static int MAX_FRAME_SEARCH = 144 * 384000 / 32000 + 1 + 4;
     
     private FastInputStream fin = null;
     private HmeInputStream hmeIn = null;
@@ -148,6 +162,10 @@ public class Mp3Helper {
     private int sindex = 0;
     private boolean cbr = false;
     private boolean vbr = false;
+    private long tocBytes = -1;
+    private byte xingToc[] = null;
+    private long vbriToc[] = null;
+    private int vbriFramesPerEntry = 0;
     
 
     
@@ -308,6 +326,15 @@ public class Mp3Helper {
                 if (DEBUG) {
                     System.out.println("Xing: maxNumFrames=" + maxNumFrames);
                 }
+                
+                // keep the table of contents for building a seek table
+                if ((flags & XING_BYTES_FLAG) != 0) {
+                    tocBytes = hmeIn.readInt() & 0xffffffffL;
+                }
+                if ((flags & XING_TOC_FLAG) != 0) {
+                    xingToc = new byte[100];
+                    hmeIn.readFully(xingToc, 0, xingToc.length);
+                }
             }
         }
         
@@ -319,12 +346,30 @@ public class Mp3Helper {
         	hmeIn.skip(32);
         	hmeIn.readFully(buf, 0, 4);
         	if (new String(buf).equals(VBRI_MAGIC)) {
-        		hmeIn.skip(10);
+        		hmeIn.skip(6);
+        		tocBytes = hmeIn.readInt() & 0xffffffffL;
         		maxNumFrames = hmeIn.readInt();
         		vbr = true;
         		if (DEBUG) {
         			System.out.println("VBRI: maxNumFrames=" + maxNumFrames);
         		}
+        		
+        		// keep the table of contents for building a seek table. Each
+        		// entry is the size of the next vbriFramesPerEntry frames.
+        		int entries = (hmeIn.readShort() & 0xffff);
+        		int scale = (hmeIn.readShort() & 0xffff);
+        		int entrySize = (hmeIn.readShort() & 0xffff);
+        		vbriFramesPerEntry = (hmeIn.readShort() & 0xffff);
+        		if (entries > 0 && entrySize >= 1 && entrySize <= 4 && vbriFramesPerEntry > 0) {
+        			vbriToc = new long[entries];
+        			for (int i = 0; i < entries; ++i) {
+        				long size = 0;
+        				for (int j = 0; j < entrySize; ++j) {
+        					size = (size << 8) | hmeIn.read();
+        				}
+        				vbriToc[i] = size * scale;
+        			}
+        		}
         	}
         }
         flen -= fin.getCount() - pos;
@@ -492,6 +537,203 @@ public class Mp3Helper {
         return hmeIn;
     }
     
+    /**
+     * Reads the MP3 InputStream to build a table for seeking into it.  The
+     * Xing or VBRI table of contents is used if the stream has one, and
+     * constant bit rate streams need only the first few hundred frames.
+     * Otherwise the entire stream is read.
+     * 
+     * <p>As with getMp3Duration(), it is best to use the helper with a
+     * stream that won't be needed again.
+     * 
+     * @return the seek table, or null if the stream is not an MP3 stream.
+     */
+    public Mp3SeekTable getSeekTable()
+    {
+        try
+        {
+            availableBytes = skipID3Header(availableBytes);
+            long audioStart = fin.getCount();
+            long audioEnd = audioStart + availableBytes;
+
+            // the start of every frame, for streams with neither a table
+            // of contents nor a constant bit rate
+            long frameOffsets[] = new long[4096];
+            int frames = 0;
+            long framesEnd = audioStart;
+
+            oldFlen = 0;
+            int flen = -1;
+            while (true) 
+            {
+                try {
+                    // skip bad frames
+                    while ((flen = readFrame()) < 0)
+                        ;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long frameStart = fin.getCount() - 4;
+                if (frames == frameOffsets.length) {
+                    long grown[] = new long[frames * 2];
+                    System.arraycopy(frameOffsets, 0, grown, 0, frames);
+                    frameOffsets = grown;
+                }
+                frameOffsets[frames++] = frameStart;
+                framesEnd = frameStart + 4 + flen;
+
+                // check the frame length before checkForVBR() changes it
+                boolean constant = checkForCBR(flen);
+
+                // check for Xing or VBRI frame (types of VBR file)
+                if (nframes < XING_FRAMES) 
+                {
+                    flen = checkForVBR(flen);
+                    if (maxNumFrames > 0 && xingToc != null)
+                    {
+                        // the Xing table holds the position at each percent
+                        // of the stream, in 256ths of the stream size
+                        long bytes = (tocBytes > 0) ? tocBytes : audioEnd - frameStart;
+                        long offsets[] = new long[101];
+                        for (int i = 0; i < 100; ++i) {
+                            offsets[i] = frameStart + (xingToc[i] & 0xff) * bytes / 256;
+                        }
+                        offsets[100] = frameStart + bytes;
+                        return new Mp3SeekTable(framesToDuration(maxNumFrames), offsets);
+                    }
+                    if (maxNumFrames > 0 && vbriToc != null)
+                    {
+                        // the VBRI table holds the size of each run of frames
+                        long offsets[] = new long[vbriToc.length + 1];
+                        offsets[0] = frameStart;
+                        for (int i = 0; i < vbriToc.length; ++i) {
+                            offsets[i + 1] = offsets[i] + vbriToc[i];
+                        }
+                        return new Mp3SeekTable(framesToDuration(vbriToc.length * vbriFramesPerEntry), offsets);
+                    }
+                }
+
+                if (constant && !vbr)
+                {
+                    // every frame is the same length, so the position is
+                    // proportional to the time
+                    long duration = (availableBytes * 8L) / bitrate;
+                    long offsets[] = { audioStart, audioStart + duration * bitrate / 8L };
+                    return new Mp3SeekTable(duration, offsets);
+                }
+
+                // skip the rest of the frame
+                hmeIn.skip(flen);
+            }
+
+            if (frames == 0) {
+                return null;
+            }
+
+            // every frame holds the same number of samples, so pick frames
+            // evenly spaced in time
+            int points = Math.min(SEEK_POINTS, frames);
+            long offsets[] = new long[points + 1];
+            for (int i = 0; i < points; ++i) {
+                offsets[i] = frameOffsets[(int)((long)i * frames / points)];
+            }
+            offsets[points] = framesEnd;
+            return new Mp3SeekTable(framesToDuration(frames), offsets);
+        }
+        catch (IOException e) 
+        {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+        finally
+        {
+            try {
+                hmeIn.close();
+            } catch (IOException e1) 
+            {
+                // ignore on close
+            }
+        }
+    }
+
+    /**
+     * Skips into an MP3 InputStream to the point given by a seek table, and
+     * returns an InputStream that is ready to play from that point.  Unlike
+     * seek(timeToSkip), no frames before that point are read, and skip() is
+     * called on <code>in</code> itself, so a FileInputStream seeks
+     * directly to the offset.  A FileInputStream is returned as is, with
+     * its position set to the start of the frame.
+     * 
+     * @param in the stream, positioned at its start
+     * @param timeToSkip the number of milliseconds to skip
+     * @param table the seek table for the stream
+     * @return An InputStream for the MP3 that has been advanced to the
+     * start of the first frame at or after the specified point.
+     * @throws IOException If error occurs trying to seek into stream.
+     */
+    public static InputStream seek(InputStream in, long timeToSkip, Mp3SeekTable table) throws IOException
+    {
+        long offset = table.getOffset(timeToSkip);
+        long skipped = 0;
+        while (skipped < offset) {
+            long n = in.skip(offset - skipped);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            skipped += n;
+        }
+
+        // offsets between the points of the table may be inside a frame, so
+        // look for the next frame header and push back everything from it on
+        PushbackInputStream pin = new PushbackInputStream(in, MAX_FRAME_SEARCH);
+        byte head[] = new byte[MAX_FRAME_SEARCH];
+        int len = 0;
+        while (len < head.length) {
+            int n = pin.read(head, len, head.length - len);
+            if (n < 0) {
+                break;
+            }
+            len += n;
+        }
+
+        int start = 0;
+        while (start < len - 3 && !isFrameHeader(head, start)) {
+            ++start;
+        }
+        if (start == len - 3 || len < 4) {
+            // no frame found, so play from the offset and let the receiver sync
+            start = 0;
+        }
+        if (in instanceof FileInputStream) {
+            // leave a file positioned at the frame, so that it can still be
+            // sent straight from the file
+            FileChannel channel = ((FileInputStream)in).getChannel();
+            channel.position(channel.position() - len + start);
+            return in;
+        }
+        pin.unread(head, start, len - start);
+        return pin;
+    }
+
+    /**
+     * Check whether a valid frame header starts at an offset in a buffer.
+     */
+    private static boolean isFrameHeader(byte buf[], int off)
+    {
+        if ((buf[off] & 0xff) != 0xff || (buf[off + 1] & 0xe0) != 0xe0) {
+            return false;
+        }
+        int version = (buf[off + 1] >> 3) & 0x03;
+        int layer = (buf[off + 1] >> 1) & 0x03;
+        int bindex = (buf[off + 2] >> 4) & 0x0f;
+        int sindex = (buf[off + 2] >> 2) & 0x03;
+        return version != MP3_MPEG_RESERVED && layer != MP3_LAYER_RESERVED &&
+            bindex != 0 && bindex != 15 && sindex != 3;
+    }
+
     /**
      * Pull some bits range out of a byte buffer.
      */
@@ -0,0 +1,109 @@
+//////////////////////////////////////////////////////////////////////
+//
+//     File: Mp3SeekTable.java
+//
+//////////////////////////////////////////////////////////////////////
+
+package com.tivo.hme.sdk.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A table of byte offsets into an MP3 stream, taken at evenly spaced points
+ * in time.  With a table, Mp3Helper can seek to any time by skipping
+ * straight to an offset, instead of walking every frame from the start of
+ * the stream.
+ *
+ * Tables are built by Mp3Helper.getSeekTable(), from the Xing or VBRI table
+ * of contents if the stream has one, or otherwise by walking the stream's
+ * frames once.  A table can be written out and read back, so that the
+ * work is only done once for each file.
+ */
+public class Mp3SeekTable
+{
+    // the most offsets read() will accept; a VBRI table can hold 65536
+    private final static int MAX_OFFSETS = 1 << 20;
+
+    private final long duration;
+    private final long offsets[];
+
+    /**
+     * Create a table.
+     *
+     * @param duration the duration of the stream in milliseconds
+     * @param offsets the byte offset at the start of the audio, at each
+     * evenly spaced point in time, and at the end of the audio.  There must
+     * be at least two.
+     */
+    public Mp3SeekTable(long duration, long offsets[])
+    {
+        if (offsets.length < 2) {
+            throw new IllegalArgumentException("a seek table needs at least two offsets");
+        }
+        this.duration = duration;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the duration of the stream in milliseconds.
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Returns the byte offset to start reading from to play from the
+     * specified time.  Offsets between the points in the table are
+     * interpolated, so they may fall inside a frame.
+     */
+    public long getOffset(long time)
+    {
+        int last = offsets.length - 1;
+        if (time <= 0 || duration <= 0) {
+            return offsets[0];
+        }
+        if (time >= duration) {
+            return offsets[last];
+        }
+
+        double point = (double)time * last / duration;
+        int index = (int)point;
+        double fraction = point - index;
+        return offsets[index] + (long)((offsets[index + 1] - offsets[index]) * fraction);
+    }
+
+    /**
+     * Write the table.
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeLong(duration);
+        out.writeInt(offsets.length);
+        out.writeLong(offsets[0]);
+        for (int i = 1; i < offsets.length; ++i) {
+            // offsets only increase, and the gaps fit in an int
+            out.writeInt((int)(offsets[i] - offsets[i - 1]));
+        }
+    }
+
+    /**
+     * Read a table written by write().
+     */
+    public static Mp3SeekTable read(DataInput in) throws IOException
+    {
+        long duration = in.readLong();
+        int count = in.readInt();
+        if (count < 2 || count > MAX_OFFSETS) {
+            throw new IOException("bad seek table");
+        }
+        long offsets[] = new long[count];
+        offsets[0] = in.readLong();
+        for (int i = 1; i < count; ++i) {
+            offsets[i] = offsets[i - 1] + in.readInt();
+        }
+        return new Mp3SeekTable(duration, offsets);
+    }
+}
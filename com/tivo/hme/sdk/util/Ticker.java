@@ -8,10 +8,15 @@
 
 package com.tivo.hme.sdk.util;
 
-// REMIND: This needs to use a Heap/priority queue or at least a binary tree.
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An interval timer class.
+ * <p>
+ * Entries are kept in a binary heap ordered by time, with a map from each
+ * client/arg pair to its entry, so adding, moving and removing an entry are
+ * O(log n) however many applications have timers pending.
  *
  * @author      Adam Doppelt
  * @author      Arthur van Hoff
@@ -23,19 +28,45 @@ public class Ticker extends Thread
 {
     public static Ticker master = new Ticker("master", Thread.NORM_PRIORITY + 1);
 
-    Entry entries;                      // sorted list of entries
+    Entry heap[] = new Entry[16];       // entries, earliest first
+    int size;                           // number of entries in the heap
+    Map<Key, Entry> index = new HashMap<Key, Entry>();  // entries by client/arg
     Entry current;                      // one being executed right now
 
     static public interface Client {
         long tick(long tm, Object arg);
     }
 
-    static class Entry
+    /**
+     * A client/arg pair. Both are compared by identity.
+     */
+    static class Key
     {
-        Entry next;
         Client client;
-        long tm;
         Object arg;
+        Key(Client client, Object arg) {
+            this.client = client;
+            this.arg = arg;
+        }
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return k.client == client && k.arg == arg;
+        }
+        public int hashCode() {
+            return System.identityHashCode(client) * 31 + System.identityHashCode(arg);
+        }
+    }
+
+    static class Entry extends Key
+    {
+        long tm;
+        int pos;                        // position in the heap
+        Entry(Client client, Object arg) {
+            super(client, arg);
+        }
         public String toString() {
             return "Entry[" + client + ", " + tm + " " + (System.currentTimeMillis() - tm) + "]";
         }
@@ -55,13 +86,9 @@ public class Ticker extends Thread
     {
         Entry e = unlinkEntry(client, arg);
         if (e == null) {
-            e = new Entry();
-            e.client = client;
-            e.tm = tm;
-            e.arg = arg;
-        } else {
-            e.tm = tm;
+            e = new Entry(client, arg);
         }
+        e.tm = tm;
         insert(e);
     }
 
@@ -74,19 +101,14 @@ public class Ticker extends Thread
 
     private void insert(Entry entry)
     {
-        Entry e, prev = null;
-        for (e = entries; e != null; prev = e, e = e.next) {
-            if (e.tm > entry.tm) {
-                break;
-            }
-        }
-        if (prev == null) {
-            entry.next = entries;
-            entries = entry;
-        } else {
-            prev.next = entry;
-            entry.next = e;
+        if (size == heap.length) {
+            Entry bigger[] = new Entry[size * 2];
+            System.arraycopy(heap, 0, bigger, 0, size);
+            heap = bigger;
         }
+        index.put(entry, entry);
+        entry.pos = size++;
+        siftUp(entry);
         notify();
     }
 
@@ -97,18 +119,66 @@ public class Ticker extends Thread
             return null;
         }
 
-        Entry prev = null;
-        for (Entry e = entries; e != null; prev = e, e = e.next) {
-            if (e.client == client && e.arg == arg) {
-                if (prev == null) {
-                    entries = e.next;
-                } else {
-                    prev.next = e.next;
-                }
-                return e;
+        Entry e = index.remove(new Key(client, arg));
+        if (e != null) {
+            removeAt(e.pos);
+        }
+        return e;
+    }
+
+    /**
+     * Removes the entry at a position in the heap, and returns it.
+     */
+    private Entry removeAt(int pos)
+    {
+        Entry e = heap[pos];
+        Entry last = heap[--size];
+        heap[size] = null;
+        if (last != e) {
+            last.pos = pos;
+            heap[pos] = last;
+            siftDown(last);
+            siftUp(last);
+        }
+        return e;
+    }
+
+    private void siftUp(Entry e)
+    {
+        int pos = e.pos;
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (heap[parent].tm <= e.tm) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            heap[pos].pos = pos;
+            pos = parent;
+        }
+        heap[pos] = e;
+        e.pos = pos;
+    }
+
+    private void siftDown(Entry e)
+    {
+        int pos = e.pos;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].tm < heap[child].tm) {
+                ++child;
+            }
+            if (heap[child].tm >= e.tm) {
+                break;
             }
+            heap[pos] = heap[child];
+            heap[pos].pos = pos;
+            pos = child;
         }
-        return null;
+        heap[pos] = e;
+        e.pos = pos;
     }
 
     public void run()
@@ -121,15 +191,15 @@ public class Ticker extends Thread
                 try {
                     while (true) {
                         now = System.currentTimeMillis();
-                        if (entries == null) {
+                        if (size == 0) {
                             wait();
                             continue;
-                        } else if (entries.tm > now) {
-                            wait(entries.tm - now);
+                        } else if (heap[0].tm > now) {
+                            wait(heap[0].tm - now);
                             continue;
                         } else {
-                            current = entry = entries;
-                            entries = entries.next;
+                            current = entry = removeAt(0);
+                            index.remove(entry);
                             break;
                         }
                     }
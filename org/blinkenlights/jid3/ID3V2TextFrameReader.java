@@ -0,0 +1,365 @@
+/*
+ * ID3V2TextFrameReader.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.blinkenlights.jid3;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.blinkenlights.jid3.io.*;
+import org.blinkenlights.jid3.util.*;
+
+/**
+ * Reads selected text information frames from the ID3 V2.3.0 tag of a file, without reading the rest of the tag.
+ *
+ * Unlike MP3File.getID3V2Tag(), no frame objects are created.  Only the frame headers are read, and frames which
+ * were not asked for (such as large APIC pictures) are skipped over using their sizes.  Encrypted frames are
+ * skipped, and the CRC of the tag, if any, is not checked.  The MIME types of APIC pictures are noted on the way
+ * past, without reading the pictures, as are the ratings in POPM frames.
+ */
+public class ID3V2TextFrameReader
+{
+    // size of a tag or frame header
+    private static final int HEADER_SIZE = 10;
+
+    // small buffer, since most of what we read is headers
+    private static final int BUFFER_SIZE = 2048;
+
+    // the most of an APIC frame read to find its MIME type
+    private static final int MAX_PICTURE_HEADER_SIZE = 256;
+
+    // the largest POPM frame read (an email address, a rating and a play count)
+    private static final int MAX_POPULARIMETER_SIZE = 256;
+
+    private IFileSource m_oFileSource = null;
+    private List<String> m_oPictureMimeTypeList = new ArrayList<String>();
+    private Map<String,Integer> m_oPopularityMap = new HashMap<String,Integer>();
+
+    /** Construct a reader for the file specified.
+     *
+     * @param oSourceFile a File pointing to the source MP3 file
+     */
+    public ID3V2TextFrameReader(File oSourceFile)
+    {
+        m_oFileSource = new FileSource(oSourceFile);
+    }
+
+    public ID3V2TextFrameReader(IFileSource oFileSource)
+    {
+        m_oFileSource = oFileSource;
+    }
+
+    /** Read text information frames from the V2 tag of the file.
+     *
+     * @param asFrameId the ids of the text information frames to be read (ie. "TALB", "TIT2")
+     * @return a map from frame id to the text of the frame, for those of the requested frames which are in the tag,
+     *         or null if the file has no V2.3.0 tag
+     * @throws ID3Exception if an error occurs while reading the file, or the tag header is invalid
+     */
+    public Map<String,String> read(String[] asFrameId)
+        throws ID3Exception
+    {
+        try
+        {
+            InputStream oSourceIS = m_oFileSource.getInputStream();
+            try
+            {
+                return read(oSourceIS, asFrameId);
+            }
+            finally
+            {
+                oSourceIS.close();
+            }
+        }
+        catch (ID3Exception e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new ID3Exception("Error reading tags from file.", e);
+        }
+    }
+
+    /** Read text information frames from the V2 tag at the start of a stream.  The stream is not closed.
+     *
+     * @param oSourceIS the stream to read, positioned at the start of the file
+     * @param asFrameId the ids of the text information frames to be read (ie. "TALB", "TIT2")
+     * @return a map from frame id to the text of the frame, for those of the requested frames which are in the tag,
+     *         or null if the stream has no V2.3.0 tag
+     * @throws ID3Exception if an error occurs while reading the stream, or the tag header is invalid
+     */
+    public Map<String,String> read(InputStream oSourceIS, String[] asFrameId)
+        throws ID3Exception
+    {
+        Set<String> oWantedSet = new HashSet<String>(Arrays.asList(asFrameId));
+        m_oPictureMimeTypeList.clear();
+        m_oPopularityMap.clear();
+
+        try
+        {
+            ID3DataInputStream oSourceID3DIS = new ID3DataInputStream(new BufferedInputStream(oSourceIS, BUFFER_SIZE));
+
+            // check if v2.3.0 tag is present
+            byte[] abyHeader = new byte[HEADER_SIZE];
+            oSourceID3DIS.readFully(abyHeader);
+            if ( ! ((abyHeader[0] == 'I') && (abyHeader[1] == 'D') && (abyHeader[2] == '3')) || (abyHeader[3] != 3))
+            {
+                return null;
+            }
+
+            int iFlags = abyHeader[5] & 0xff;
+            boolean bUnsynchronizationUsedFlag = ((iFlags & 0x80) != 0);
+            boolean bExtendedHeaderFlag = ((iFlags & 0x40) != 0);
+            if ((iFlags & 0x1f) > 0)
+            {
+                // we are supposed to fail if any unknown flags are encountered
+                throw new ID3Exception("Encountered unknown header flags.");
+            }
+
+            // tag size is stored as four seven-bit bytes
+            int iTagSize = ((abyHeader[6] & 0x7f) << 21) | ((abyHeader[7] & 0x7f) << 14) |
+                           ((abyHeader[8] & 0x7f) << 7) | (abyHeader[9] & 0x7f);
+
+            // skip extended header, if present
+            if (bExtendedHeaderFlag)
+            {
+                int iExtendedHeaderSize = oSourceID3DIS.readBE32();
+                if ((iExtendedHeaderSize != 6) && (iExtendedHeaderSize != 10))
+                {
+                    throw new ID3Exception("Extended header size must be either 6 or 10 bytes.  Read " + iExtendedHeaderSize + ".");
+                }
+                skipFully(oSourceID3DIS, iExtendedHeaderSize);
+                iTagSize -= (iExtendedHeaderSize + 4);
+            }
+
+            ID3DataInputStream oFrameID3DIS = oSourceID3DIS;
+            if (bUnsynchronizationUsedFlag)
+            {
+                // frame sizes refer to the de-unsynchronized data, so we have to read all the frames to find them
+                byte[] abyFrameData = new byte[iTagSize];
+                oSourceID3DIS.readFully(abyFrameData);
+                abyFrameData = ID3Util.deunsynchronize(abyFrameData);
+                iTagSize = abyFrameData.length;
+                oFrameID3DIS = new ID3DataInputStream(new ByteArrayInputStream(abyFrameData));
+            }
+
+            return readFrames(oFrameID3DIS, iTagSize, oWantedSet, m_oPictureMimeTypeList, m_oPopularityMap);
+        }
+        catch (ID3Exception e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new ID3Exception("Error reading tags from file.", e);
+        }
+    }
+
+    /** Get the MIME types of the APIC pictures in the tag which was last read, in the order they appear.
+     *
+     * @return the MIME types
+     */
+    public List<String> getPictureMimeTypes()
+    {
+        return Collections.unmodifiableList(m_oPictureMimeTypeList);
+    }
+
+    /** Get the rating given to the file by a user in a POPM frame of the tag which was last read.
+     *
+     * @param sEmailToUser the email address identifying the user
+     * @return the popularity rating (1=worst, 255=best, 0=unknown), or -1 if the tag has no POPM frame for the user
+     */
+    public int getPopularity(String sEmailToUser)
+    {
+        Integer oPopularity = m_oPopularityMap.get(sEmailToUser);
+        return (oPopularity != null) ? oPopularity.intValue() : -1;
+    }
+
+    /** Walk the frame headers of a tag, decoding the wanted text frames and skipping all others.
+     *
+     * @param oID3DIS input stream positioned at the first frame
+     * @param iTagSize the number of bytes of frames and padding in the tag
+     * @param oWantedSet the ids of the frames to be decoded
+     * @param oPictureMimeTypeList the list to add the MIME types of APIC pictures to
+     * @param oPopularityMap the map to add the ratings in POPM frames to, by email address
+     * @return a map from frame id to text, for the wanted frames which were found
+     */
+    private static Map<String,String> readFrames(ID3DataInputStream oID3DIS, int iTagSize, Set<String> oWantedSet,
+                                                 List<String> oPictureMimeTypeList, Map<String,Integer> oPopularityMap)
+        throws Exception
+    {
+        Map<String,String> oTextMap = new HashMap<String,String>();
+        byte[] abyFrameHeader = new byte[HEADER_SIZE];
+        int iRemaining = iTagSize;
+
+        while (iRemaining > HEADER_SIZE)
+        {
+            oID3DIS.readFully(abyFrameHeader);
+            iRemaining -= HEADER_SIZE;
+
+            // we're reading into the padding past the frames
+            if (abyFrameHeader[0] == 0)
+            {
+                break;
+            }
+
+            String sFrameId = new String(abyFrameHeader, 0, 4, "ISO-8859-1");
+
+            // stop at anything which isn't a frame (including the "MP3ext" junk that ID3V2Frame.read() works around)
+            if ( ! sFrameId.matches("[A-Z0-9]+"))
+            {
+                if (ID3Tag.usingStrict())
+                {
+                    throw new InvalidFrameID3Exception("Invalid frame id [" + sFrameId + "].");
+                }
+                break;
+            }
+
+            int iFrameSize = ((abyFrameHeader[4] & 0xff) << 24) | ((abyFrameHeader[5] & 0xff) << 16) |
+                             ((abyFrameHeader[6] & 0xff) << 8) | (abyFrameHeader[7] & 0xff);
+            if ((iFrameSize < 0) || (iFrameSize > iRemaining))
+            {
+                // corrupt frame size.. nothing after this point can be trusted
+                break;
+            }
+            iRemaining -= iFrameSize;
+
+            int iSecondFlags = abyFrameHeader[9] & 0xff;
+            boolean bCompressionFlag = ((iSecondFlags & 0x80) != 0);
+            boolean bEncryptionFlag = ((iSecondFlags & 0x40) != 0);
+
+            if (sFrameId.equals("APIC") && ( ! bCompressionFlag) && ( ! bEncryptionFlag))
+            {
+                // the MIME type follows the text encoding byte, and is terminated by a null
+                byte[] abyPictureHeader = new byte[Math.min(iFrameSize, MAX_PICTURE_HEADER_SIZE)];
+                oID3DIS.readFully(abyPictureHeader);
+                skipFully(oID3DIS, iFrameSize - abyPictureHeader.length);
+                for (int i=1; i < abyPictureHeader.length; i++)
+                {
+                    if (abyPictureHeader[i] == 0)
+                    {
+                        oPictureMimeTypeList.add(new String(abyPictureHeader, 1, i - 1, "ISO-8859-1"));
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            if (sFrameId.equals("POPM") && ( ! bCompressionFlag) && ( ! bEncryptionFlag) && (iFrameSize <= MAX_POPULARIMETER_SIZE))
+            {
+                // the email address is terminated by a null, and followed by the rating
+                byte[] abyPopularimeter = new byte[iFrameSize];
+                oID3DIS.readFully(abyPopularimeter);
+                for (int i=0; i < abyPopularimeter.length - 1; i++)
+                {
+                    if (abyPopularimeter[i] == 0)
+                    {
+                        oPopularityMap.put(new String(abyPopularimeter, 0, i, "ISO-8859-1"), Integer.valueOf(abyPopularimeter[i + 1] & 0xff));
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            if (( ! oWantedSet.contains(sFrameId)) || bEncryptionFlag)
+            {
+                skipFully(oID3DIS, iFrameSize);
+                continue;
+            }
+
+            byte[] abyFrameData;
+            if (bCompressionFlag)
+            {
+                // four bytes of uncompressed size precede the compressed data
+                int iUncompressedSize = oID3DIS.readBE32();
+                byte[] abyCompressedFrameData = new byte[iFrameSize - 4];
+                oID3DIS.readFully(abyCompressedFrameData);
+
+                ID3DataInputStream oInflaterID3DIS = new ID3DataInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(abyCompressedFrameData)));
+                abyFrameData = new byte[iUncompressedSize];
+                oInflaterID3DIS.readFully(abyFrameData);
+            }
+            else
+            {
+                abyFrameData = new byte[iFrameSize];
+                oID3DIS.readFully(abyFrameData);
+            }
+
+            String sText = decodeText(sFrameId, abyFrameData);
+            if (sText != null)
+            {
+                // as with a full read, a later frame replaces an earlier one with the same id
+                oTextMap.put(sFrameId, sText);
+            }
+        }
+
+        return oTextMap;
+    }
+
+    /** Decode the body of a text information frame, the same way TextInformationID3V2Frame does.
+     *
+     * @param sFrameId the id of the frame being decoded
+     * @param abyFrameData the body of the frame
+     * @return the text in the frame, or null if the frame is invalid (and strict mode is not set)
+     */
+    private static String decodeText(String sFrameId, byte[] abyFrameData)
+        throws ID3Exception
+    {
+        try
+        {
+            if (abyFrameData.length == 0)
+            {
+                throw new ID3Exception("Empty " + sFrameId + " frame.");
+            }
+            TextEncoding oTextEncoding = TextEncoding.getTextEncoding(abyFrameData[0]);
+
+            return new String(abyFrameData, 1, abyFrameData.length - 1, oTextEncoding.getEncodingString());
+        }
+        catch (Exception e)
+        {
+            if (ID3Tag.usingStrict())
+            {
+                throw new InvalidFrameID3Exception(e);
+            }
+            return null;
+        }
+    }
+
+    /** Skip a number of bytes in a stream, without reading them where the underlying stream supports seeking.
+     *
+     * @param oID3DIS the stream to skip bytes in
+     * @param iLength the number of bytes to skip
+     * @throws IOException if the end of the stream is reached first
+     */
+    private static void skipFully(ID3DataInputStream oID3DIS, int iLength)
+        throws IOException
+    {
+        while (iLength > 0)
+        {
+            int iSkipped = oID3DIS.skipBytes(iLength);
+            if (iSkipped <= 0)
+            {
+                throw new EOFException();
+            }
+            iLength -= iSkipped;
+        }
+    }
+}
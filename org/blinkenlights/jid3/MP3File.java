@@ -25,6 +25,8 @@
 package org.blinkenlights.jid3;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import org.blinkenlights.jid3.io.*;
@@ -39,6 +41,10 @@ import org.blinkenlights.jid3.v2.*;
 @SuppressWarnings("unchecked")
 public class MP3File extends MediaFile
 {
+    /** Padding left after a V2 tag when the whole file has to be rewritten, so that the tag can grow by this much
+     *  before the file has to be rewritten again. */
+    private static final int REWRITE_PADDING_LENGTH = 2048;
+    
     /** Construct an object representing the MP3 file specified.
      *
      * @param oSourceFile a File pointing to the source MP3 file
@@ -91,6 +97,12 @@ public class MP3File extends MediaFile
 
         try
         {
+            // the V1 tag is always the same size, so it can be written in place if the file source allows it
+            if (v1SyncInPlace())
+            {
+                return;
+            }
+
             // open source file for reading
             try
             {
@@ -224,6 +236,18 @@ public class MP3File extends MediaFile
         
         try
         {
+            // write over the existing tag if the new one fits in its space
+            if (v2SyncInPlace())
+            {
+                return;
+            }
+            
+            // the whole file has to be rewritten, so leave room for the tag to grow next time
+            if (m_oID3V2Tag.getPaddingLength() < REWRITE_PADDING_LENGTH)
+            {
+                m_oID3V2Tag.setPaddingLength(REWRITE_PADDING_LENGTH);
+            }
+
             // open source file for reading
             try
             {
@@ -363,6 +387,162 @@ public class MP3File extends MediaFile
         }
     }
 
+    /** Write the ID3 V1 tag over the last 128 bytes of the file if they hold a V1 tag, or append it to the file
+     *  otherwise.  No other part of the file is read or written.
+     *
+     * @return true if the tag was written, or false if the file source cannot be written in place
+     * @throws Exception if an error occurs writing the file
+     */
+    private boolean v1SyncInPlace()
+        throws Exception
+    {
+        if ( ! (m_oFileSource instanceof FileSource))
+        {
+            return false;
+        }
+        
+        ByteArrayOutputStream oTagBAOS = new ByteArrayOutputStream(128);
+        m_oID3V1Tag.write(oTagBAOS);
+        
+        RandomAccessFile oRAF = ((FileSource)m_oFileSource).getRandomAccessFile();
+        try
+        {
+            FileChannel oChannel = oRAF.getChannel();
+            long lFileLength = oChannel.size();
+            
+            // check whether this file already has a V1 tag on it or not
+            long lTagPosition = lFileLength;
+            if (lFileLength >= 128)
+            {
+                ByteBuffer oCheckTag = ByteBuffer.allocate(3);
+                readFully(oChannel, oCheckTag, lFileLength - 128);
+                if ((oCheckTag.get(0) == 'T') && (oCheckTag.get(1) == 'A') && (oCheckTag.get(2) == 'G'))
+                {
+                    lTagPosition = lFileLength - 128;
+                }
+            }
+            
+            writeFully(oChannel, ByteBuffer.wrap(oTagBAOS.toByteArray()), lTagPosition);
+        }
+        finally
+        {
+            oRAF.close();
+        }
+        
+        return true;
+    }
+    
+    /** Write the ID3 V2 tag over the existing V2 tag at the start of the file, if it fits in the space taken by the
+     *  existing tag and its padding.  The new tag is padded to fill that space exactly, so the audio data which
+     *  follows it does not move.
+     *
+     * @return true if the tag was written, or false if the file has to be rewritten to make room for it
+     * @throws Exception if an error occurs writing the file
+     */
+    private boolean v2SyncInPlace()
+        throws Exception
+    {
+        if ( ! (m_oFileSource instanceof FileSource))
+        {
+            return false;
+        }
+        
+        RandomAccessFile oRAF = ((FileSource)m_oFileSource).getRandomAccessFile();
+        try
+        {
+            FileChannel oChannel = oRAF.getChannel();
+            
+            // find the space taken by the existing tag, if there is one
+            ByteBuffer oHeader = ByteBuffer.allocate(10);
+            readFully(oChannel, oHeader, 0);
+            if (oHeader.hasRemaining() || ! ((oHeader.get(0) == 'I') && (oHeader.get(1) == 'D') && (oHeader.get(2) == '3')))
+            {
+                return false;
+            }
+            int iVersion = oHeader.get(3);
+            if (iVersion > 4)
+            {
+                throw new ID3Exception("Will not overwrite tag of version greater than 2.4.0.");
+            }
+            ID3DataInputStream oID3DIS = new ID3DataInputStream(new ByteArrayInputStream(oHeader.array(), 6, 4));
+            long lSpace = 10 + oID3DIS.readID3Four();
+            oID3DIS.close();
+            if ((iVersion == 4) && ((oHeader.get(5) & 0x10) != 0))
+            {
+                // v2.4 tags can have a footer
+                lSpace += 10;
+            }
+            if (lSpace > oChannel.size())
+            {
+                return false;
+            }
+            
+            // find the size of the new tag without padding, and then pad it to fill the space
+            int iPaddingLength = m_oID3V2Tag.getPaddingLength();
+            m_oID3V2Tag.setPaddingLength(0);
+            ByteArrayOutputStream oTagBAOS = new ByteArrayOutputStream();
+            m_oID3V2Tag.write(oTagBAOS);
+            if (oTagBAOS.size() > lSpace)
+            {
+                m_oID3V2Tag.setPaddingLength(iPaddingLength);
+                return false;
+            }
+            m_oID3V2Tag.setPaddingLength((int)(lSpace - oTagBAOS.size()));
+            oTagBAOS.reset();
+            m_oID3V2Tag.write(oTagBAOS);
+            if (oTagBAOS.size() != lSpace)
+            {
+                m_oID3V2Tag.setPaddingLength(iPaddingLength);
+                return false;
+            }
+            
+            writeFully(oChannel, ByteBuffer.wrap(oTagBAOS.toByteArray()), 0);
+        }
+        finally
+        {
+            oRAF.close();
+        }
+        
+        return true;
+    }
+    
+    /** Read from a channel at a given position until the buffer is full or the end of the channel is reached.
+     *
+     * @param oChannel the channel to read from
+     * @param oBuffer the buffer to fill
+     * @param lPosition the position in the channel to start reading from
+     * @throws IOException if an error occurs reading the channel
+     */
+    private static void readFully(FileChannel oChannel, ByteBuffer oBuffer, long lPosition)
+        throws IOException
+    {
+        while (oBuffer.hasRemaining())
+        {
+            int iNumRead = oChannel.read(oBuffer, lPosition);
+            if (iNumRead <= 0)
+            {
+                break;
+            }
+            lPosition += iNumRead;
+        }
+    }
+    
+    /** Write all of a buffer to a channel at a given position.
+     *
+     * @param oChannel the channel to write to
+     * @param oBuffer the buffer to write
+     * @param lPosition the position in the channel to start writing at
+     * @throws IOException if an error occurs writing the channel
+     */
+    private static void writeFully(FileChannel oChannel, ByteBuffer oBuffer, long lPosition)
+        throws IOException
+    {
+        while (oBuffer.hasRemaining())
+        {
+            lPosition += oChannel.write(oBuffer, lPosition);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.blinkenlights.id3.MediaFile#getTags()
      */
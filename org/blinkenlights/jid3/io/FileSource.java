@@ -75,6 +75,17 @@ public class FileSource implements IFileSource
         return m_oFile.length();
     }
     
+    /** Open the file for reading and writing, so that part of it can be changed without copying the rest.
+     *
+     * @return the open file
+     * @throws FileNotFoundException if the file cannot be opened for writing
+     */
+    public RandomAccessFile getRandomAccessFile()
+        throws FileNotFoundException
+    {
+        return new RandomAccessFile(m_oFile, "rw");
+    }
+    
     public boolean renameTo(String sFilename)
     {
         return m_oFile.renameTo(new File(sFilename));
@@ -23,7 +23,6 @@
 package org.blinkenlights.jid3.v2;
 
 import java.io.*;
-import java.lang.reflect.*;
 import java.util.*;
 import java.util.zip.*;
 
@@ -217,7 +216,21 @@ abstract public class ID3V2Frame implements ID3Subject, ID3Visitable
     static ID3V2Frame read(ID3DataInputStream oID3DIS)
         throws ID3Exception
     {
-        return read(oID3DIS, new ENCRID3V2Frame[0]);
+        return read(oID3DIS, new ENCRID3V2Frame[0], null);
+    }
+
+    /** Read an ID3 v2 frame from a tag which has been read into memory.  Unless the frame is compressed or
+     *  encrypted, it is decoded from the tag buffer without copying its data.
+     * 
+     * @param oID3DIS input stream from which a frame can directly be read, reading from the tag buffer
+     * @param oTagBuffer the tag buffer
+     * @return an ID3V2Frame which was read from the input stream
+     * @throws ID3Exception if an error while reading occurs
+     */
+    static ID3V2Frame read(ID3DataInputStream oID3DIS, ID3V2TagBuffer oTagBuffer)
+        throws ID3Exception
+    {
+        return read(oID3DIS, new ENCRID3V2Frame[0], oTagBuffer);
     }
 
     /** Read an ID3 v2 frame from an ID3DataInputStream, providing the possibility for decryption.
@@ -229,6 +242,12 @@ abstract public class ID3V2Frame implements ID3Subject, ID3Visitable
      */
     static ID3V2Frame read(ID3DataInputStream oID3DIS, ENCRID3V2Frame[] aoENCRID3V2Frame)
         throws ID3Exception
+    {
+        return read(oID3DIS, aoENCRID3V2Frame, null);
+    }
+
+    private static ID3V2Frame read(ID3DataInputStream oID3DIS, ENCRID3V2Frame[] aoENCRID3V2Frame, ID3V2TagBuffer oTagBuffer)
+        throws ID3Exception
     {
         String sFrameId = null;
         try
@@ -343,6 +362,7 @@ abstract public class ID3V2Frame implements ID3Subject, ID3Visitable
 	            
 	            // read frame data
 	            byte[] abyFrameData = null;
+	            int iFrameDataOffset = 0;
 	            if (bCompressionFlag)
 	            {
 	                // read compressed data
@@ -362,6 +382,12 @@ abstract public class ID3V2Frame implements ID3Subject, ID3Visitable
 	                abyFrameData = new byte[iUncompressedSize];
 	                oInflaterID3DIS.readFully(abyFrameData);
 	            }
+	            else if ( ( ! bEncryptionFlag) && (oTagBuffer != null) && oTagBuffer.hasRemaining(iFrameSize))
+	            {
+	                // the frame will be decoded from the tag buffer
+	                iFrameDataOffset = oTagBuffer.getPosition();
+	                oTagBuffer.skip(iFrameSize);
+	            }
 	            else
 	            {
 	                abyFrameData = new byte[iFrameSize];
@@ -373,107 +399,58 @@ abstract public class ID3V2Frame implements ID3Subject, ID3Visitable
 	                    abyFrameData = oCryptoAgent.decrypt(abyFrameData, abyEncryptionData);
 	                }
 	            }
+	            InputStream oFrameDataIS;
+	            if (abyFrameData != null)
+	            {
+	                oFrameDataIS = new ByteArrayInputStream(abyFrameData);
+	            }
+	            else
+	            {
+	                oFrameDataIS = new ByteArrayInputStream(oTagBuffer.getBuffer(), iFrameDataOffset, iFrameSize);
+	            }
 	            
 	            // create a frame object here based on what we've read
 	            ID3V2Frame oID3V2Frame;
-	            if (sFrameId.startsWith("T"))
+	            ID3V2FrameRegistry.Factory oFactory = ID3V2FrameRegistry.lookup(sFrameId);
+	            if (oFactory != null)
 	            {
-	                // text information frame
-	                String sClassName = "org.blinkenlights.jid3.v2." + sFrameId + "TextInformationID3V2Frame";
-	                
-	                // if this class exists, then create such an object
 	                try
 	                {
-	                    Class oID3V2FrameClass = Class.forName(sClassName);
-	                    Class[] aoArgClassTypes = { InputStream.class };
-	                    Constructor oConstructor = oID3V2FrameClass.getConstructor(aoArgClassTypes);
-	                    Object[] aoConstructorArgs = { new ByteArrayInputStream(abyFrameData) };
-	                    oID3V2Frame = (ID3V2Frame)oConstructor.newInstance(aoConstructorArgs);
+	                    oID3V2Frame = oFactory.create(oFrameDataIS);
 	                }
-	                catch (ClassNotFoundException e)
+	                catch (ID3Exception e)
 	                {
-	                    // unknown frame type
-	                    oID3V2Frame = new UnknownTextInformationID3V2Frame(sFrameId, new ByteArrayInputStream(abyFrameData));
-	                }
-	                catch (NoSuchMethodException e)
-	                {
-	                    // unknown frame type
-	                    oID3V2Frame = new UnknownTextInformationID3V2Frame(sFrameId, new ByteArrayInputStream(abyFrameData));
-	                }
-	                catch (InvocationTargetException e)
-	                {
-	                    // constructor threw an exception
-	                    if (e.getCause() instanceof Exception)
+	                    if (sFrameId.startsWith("T") || sFrameId.startsWith("W"))
 	                    {
-	                        throw (Exception)e.getCause();
+	                        throw e;
 	                    }
 	                    else
 	                    {
-	                        throw e;
+	                        // errors in unique frames have always been reported as a failure to read the frame, even
+	                        // when the frame was merely invalid
+	                        throw new ID3Exception("Error reading " + sFrameId + " v2 frame.", e);
 	                    }
 	                }
 	            }
+	            else if (sFrameId.startsWith("T"))
+	            {
+	                // unknown text information frame
+	                oID3V2Frame = new UnknownTextInformationID3V2Frame(sFrameId, oFrameDataIS);
+	            }
 	            else if (sFrameId.startsWith("W"))
 	            {
-	                // URL link frame
-	                String sClassName = "org.blinkenlights.jid3.v2." + sFrameId + "UrlLinkID3V2Frame";
-	                
-	                // if this class exists, then create such an object
-	                try
-	                {
-	                    Class oID3V2FrameClass = Class.forName(sClassName);
-	                    Class[] aoArgClassTypes = { InputStream.class };
-	                    Constructor oConstructor = oID3V2FrameClass.getConstructor(aoArgClassTypes);
-	                    Object[] aoConstructorArgs = { new ByteArrayInputStream(abyFrameData) };
-	                    oID3V2Frame = (ID3V2Frame)oConstructor.newInstance(aoConstructorArgs);
-	                }
-	                catch (ClassNotFoundException e)
-	                {
-	                    // unknown frame type
-	                    oID3V2Frame = new UnknownUrlLinkID3V2Frame(sFrameId, new ByteArrayInputStream(abyFrameData));
-	                }
-	                catch (NoSuchMethodException e)
-	                {
-	                    // unknown frame type
-	                    oID3V2Frame = new UnknownUrlLinkID3V2Frame(sFrameId, new ByteArrayInputStream(abyFrameData));
-	                }
-	                catch (InvocationTargetException e)
-	                {
-	                    // constructor threw an exception
-	                    if (e.getCause() instanceof Exception)
-	                    {
-	                        throw (Exception)e.getCause();
-	                    }
-	                    else
-	                    {
-	                        throw e;
-	                    }
-	                }
+	                // unknown URL link frame
+	                oID3V2Frame = new UnknownUrlLinkID3V2Frame(sFrameId, oFrameDataIS);
+	            }
+	            else if (abyFrameData != null)
+	            {
+	                // unknown frame
+	                oID3V2Frame = new UnknownID3V2Frame(sFrameId, abyFrameData);
 	            }
 	            else
 	            {
-	                // unique frame
-	                String sClassName = "org.blinkenlights.jid3.v2." + sFrameId + "ID3V2Frame";
-	                
-	                // if this class exists, then create such an object
-	                try
-	                {
-	                    Class oID3V2FrameClass = Class.forName(sClassName);
-	                    Class[] aoArgClassTypes = { InputStream.class };
-	                    Constructor oConstructor = oID3V2FrameClass.getConstructor(aoArgClassTypes);
-	                    Object[] aoConstructorArgs = { new ByteArrayInputStream(abyFrameData) };
-	                    oID3V2Frame = (ID3V2Frame)oConstructor.newInstance(aoConstructorArgs);
-	                }
-	                catch (ClassNotFoundException e)
-	                {
-	                    // unknown frame
-	                    oID3V2Frame = new UnknownID3V2Frame(sFrameId, abyFrameData);
-	                }
-	                catch (NoSuchMethodException e)
-	                {
-	                    // unknown frame type
-	                    oID3V2Frame = new UnknownID3V2Frame(sFrameId, abyFrameData);
-	                }
+	                // unknown frame, kept as a slice of the tag buffer
+	                oID3V2Frame = new UnknownID3V2Frame(sFrameId, oTagBuffer.getBuffer(), iFrameDataOffset, iFrameSize);
 	            }
 	
 	            // set flags applicable to all v2 frames
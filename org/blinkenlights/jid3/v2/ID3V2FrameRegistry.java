@@ -0,0 +1,158 @@
+/*
+ * ID3V2FrameRegistry.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.blinkenlights.jid3.v2;
+
+import java.io.*;
+import java.util.*;
+
+import org.blinkenlights.jid3.*;
+
+/**
+ * The frames that can be read from a v2 tag, by frame id.
+ *
+ * Frames used to be created by building a class name from the frame id and looking the class up by reflection,
+ * which meant a failed class lookup for every frame this library doesn't know.  The table is built once instead.
+ * Every frame class with a public constructor taking an input stream is listed.
+ */
+final class ID3V2FrameRegistry
+{
+    /** Creates one kind of frame from its body. */
+    static abstract class Factory
+    {
+        private final String m_sFrameId;
+        
+        Factory(String sFrameId)
+        {
+            m_sFrameId = sFrameId;
+        }
+        
+        /** Create a frame.
+         *
+         * @param oIS input stream from which the body of the frame can be read
+         * @return the frame
+         * @throws ID3Exception if the body of the frame is invalid
+         */
+        abstract ID3V2Frame create(InputStream oIS)
+            throws ID3Exception;
+    }
+    
+    private static final Map<String, Factory> s_oFrameIdToFactoryMap = new HashMap<String, Factory>();
+    
+    static
+    {
+        // text information frames
+        register(new Factory("TALB") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TALBTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TBPM") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TBPMTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TCOM") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TCOMTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TCON") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TCONTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TCOP") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TCOPTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TDAT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TDATTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TDLY") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TDLYTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TENC") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TENCTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TEXT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TEXTTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TFLT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TFLTTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TIME") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TIMETextInformationID3V2Frame(oIS); } });
+        register(new Factory("TIT1") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TIT1TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TIT2") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TIT2TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TIT3") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TIT3TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TKEY") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TKEYTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TLAN") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TLANTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TLEN") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TLENTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TMED") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TMEDTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TOAL") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TOALTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TOFN") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TOFNTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TOLY") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TOLYTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TOPE") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TOPETextInformationID3V2Frame(oIS); } });
+        register(new Factory("TORY") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TORYTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TOWN") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TOWNTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPE1") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPE1TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPE2") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPE2TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPE3") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPE3TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPE4") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPE4TextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPOS") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPOSTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TPUB") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TPUBTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TRCK") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TRCKTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TRDA") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TRDATextInformationID3V2Frame(oIS); } });
+        register(new Factory("TRSN") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TRSNTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TRSO") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TRSOTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TSIZ") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TSIZTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TSRC") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TSRCTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TSSE") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TSSETextInformationID3V2Frame(oIS); } });
+        register(new Factory("TXXX") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TXXXTextInformationID3V2Frame(oIS); } });
+        register(new Factory("TYER") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new TYERTextInformationID3V2Frame(oIS); } });
+        
+        // URL link frames
+        register(new Factory("WCOM") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WCOMUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WCOP") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WCOPUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WOAF") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WOAFUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WOAR") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WOARUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WOAS") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WOASUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WORS") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WORSUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WPAY") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WPAYUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WPUB") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WPUBUrlLinkID3V2Frame(oIS); } });
+        register(new Factory("WXXX") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new WXXXUrlLinkID3V2Frame(oIS); } });
+        
+        // unique frames
+        register(new Factory("AENC") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new AENCID3V2Frame(oIS); } });
+        register(new Factory("APIC") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new APICID3V2Frame(oIS); } });
+        register(new Factory("COMM") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new COMMID3V2Frame(oIS); } });
+        register(new Factory("COMR") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new COMRID3V2Frame(oIS); } });
+        register(new Factory("ENCR") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new ENCRID3V2Frame(oIS); } });
+        register(new Factory("EQUA") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new EQUAID3V2Frame(oIS); } });
+        register(new Factory("ETCO") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new ETCOID3V2Frame(oIS); } });
+        register(new Factory("GEOB") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new GEOBID3V2Frame(oIS); } });
+        register(new Factory("GRID") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new GRIDID3V2Frame(oIS); } });
+        register(new Factory("IPLS") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new IPLSID3V2Frame(oIS); } });
+        register(new Factory("LINK") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new LINKID3V2Frame(oIS); } });
+        register(new Factory("MCDI") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new MCDIID3V2Frame(oIS); } });
+        register(new Factory("MLLT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new MLLTID3V2Frame(oIS); } });
+        register(new Factory("OWNE") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new OWNEID3V2Frame(oIS); } });
+        register(new Factory("PCNT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new PCNTID3V2Frame(oIS); } });
+        register(new Factory("POPM") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new POPMID3V2Frame(oIS); } });
+        register(new Factory("POSS") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new POSSID3V2Frame(oIS); } });
+        register(new Factory("PRIV") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new PRIVID3V2Frame(oIS); } });
+        register(new Factory("RBUF") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new RBUFID3V2Frame(oIS); } });
+        register(new Factory("RVAD") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new RVADID3V2Frame(oIS); } });
+        register(new Factory("RVRB") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new RVRBID3V2Frame(oIS); } });
+        register(new Factory("SYLT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new SYLTID3V2Frame(oIS); } });
+        register(new Factory("SYTC") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new SYTCID3V2Frame(oIS); } });
+        register(new Factory("UFID") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new UFIDID3V2Frame(oIS); } });
+        register(new Factory("USER") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new USERID3V2Frame(oIS); } });
+        register(new Factory("USLT") { ID3V2Frame create(InputStream oIS) throws ID3Exception { return new USLTID3V2Frame(oIS); } });
+    }
+    
+    private ID3V2FrameRegistry()
+    {
+    }
+    
+    private static void register(Factory oFactory)
+    {
+        s_oFrameIdToFactoryMap.put(oFactory.m_sFrameId, oFactory);
+    }
+    
+    /** Look up the factory for a frame id.
+     *
+     * @param sFrameId the id of the frame
+     * @return the factory for the frame, or null if the frame is unknown
+     */
+    static Factory lookup(String sFrameId)
+    {
+        return s_oFrameIdToFactoryMap.get(sFrameId);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * ID3V2TagBuffer.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.blinkenlights.jid3.v2;
+
+import java.io.*;
+
+/**
+ * The frames of a v2 tag, read into memory.  Frames are decoded from slices of this buffer, rather than from copies
+ * of their data.
+ */
+final class ID3V2TagBuffer extends ByteArrayInputStream
+{
+    ID3V2TagBuffer(byte[] abyTagData)
+    {
+        super(abyTagData);
+    }
+    
+    /** Check whether a number of bytes remain to be read.
+     *
+     * @param iLength the number of bytes
+     * @return true if they remain
+     */
+    boolean hasRemaining(int iLength)
+    {
+        return (iLength >= 0) && (iLength <= (count - pos));
+    }
+    
+    /** Get the buffer holding the tag.
+     *
+     * @return the buffer
+     */
+    byte[] getBuffer()
+    {
+        return buf;
+    }
+    
+    /** Get the offset in the buffer of the next byte to be read.
+     *
+     * @return the offset
+     */
+    int getPosition()
+    {
+        return pos;
+    }
+}
@@ -224,14 +224,14 @@ public class ID3V2_3_0Tag extends ID3V2Tag implements ID3Observer, ID3Visitable
             }
             
             // read individual frames and store them
-            ByteArrayInputStream oFrameBAIS = new ByteArrayInputStream(abyFrameData);
-            ID3DataInputStream oFrameID3DIS = new ID3DataInputStream(oFrameBAIS);
+            ID3V2TagBuffer oTagBuffer = new ID3V2TagBuffer(abyFrameData);
+            ID3DataInputStream oFrameID3DIS = new ID3DataInputStream(oTagBuffer);
             int iPaddingLength = 0;
             while (oFrameID3DIS.available() > 4)
             {
                 try
                 {
-                    ID3V2Frame oID3V2Frame = ID3V2Frame.read(oFrameID3DIS);
+                    ID3V2Frame oID3V2Frame = ID3V2Frame.read(oFrameID3DIS, oTagBuffer);
                     if (oID3V2Frame != null)
                     {
                         if (oID3V2Frame instanceof EncryptedID3V2Frame)
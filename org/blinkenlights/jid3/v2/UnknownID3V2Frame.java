@@ -42,11 +42,30 @@ public class UnknownID3V2Frame extends ID3V2Frame
 {
     private String m_sFrameId = null;
     private byte[] m_abyFrameData = null;
+    private int m_iOffset = 0;
+    private int m_iLength = 0;
     
     public UnknownID3V2Frame(String sFrameId, byte[] abyFrameData)
     {
         m_sFrameId = sFrameId;
         m_abyFrameData = abyFrameData;
+        m_iLength = (abyFrameData != null) ? abyFrameData.length : 0;
+    }
+    
+    /** Create an unknown frame whose data is a slice of a larger buffer, such as the tag it was read from.  The
+     *  data is never copied, since unknown frames are only written back out as they were read.
+     *
+     * @param sFrameId the id of the frame
+     * @param abyBuffer the buffer holding the data of the frame
+     * @param iOffset the offset of the data in the buffer
+     * @param iLength the length of the data
+     */
+    UnknownID3V2Frame(String sFrameId, byte[] abyBuffer, int iOffset, int iLength)
+    {
+        m_sFrameId = sFrameId;
+        m_abyFrameData = abyBuffer;
+        m_iOffset = iOffset;
+        m_iLength = iLength;
     }
     
     public void accept(ID3Visitor oID3Visitor)
@@ -67,7 +86,7 @@ public class UnknownID3V2Frame extends ID3V2Frame
     protected void writeBody(ID3DataOutputStream oID3DOS)
         throws IOException
     {
-        oID3DOS.write(m_abyFrameData);
+        oID3DOS.write(m_abyFrameData, m_iOffset, m_iLength);
     }
 
     public boolean equals(Object oOther)
@@ -79,7 +98,19 @@ public class UnknownID3V2Frame extends ID3V2Frame
         
         UnknownID3V2Frame oOtherUnknown = (UnknownID3V2Frame)oOther;
         
-        return (m_sFrameId.equals(oOtherUnknown.m_sFrameId) &&
-                Arrays.equals(m_abyFrameData, oOtherUnknown.m_abyFrameData));
+        if ( ( ! m_sFrameId.equals(oOtherUnknown.m_sFrameId)) ||
+             ((m_abyFrameData == null) != (oOtherUnknown.m_abyFrameData == null)) ||
+             (m_iLength != oOtherUnknown.m_iLength) )
+        {
+            return false;
+        }
+        for (int i=0; i < m_iLength; i++)
+        {
+            if (m_abyFrameData[m_iOffset + i] != oOtherUnknown.m_abyFrameData[oOtherUnknown.m_iOffset + i])
+            {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,98 @@
+package org.dazeend.harmonium;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dazeend.harmonium.music.ArtSource;
+import org.dazeend.harmonium.music.MusicCollection;
+import org.dazeend.harmonium.music.ScaledArtCache;
+
+/**
+ * Scales and encodes album art before it is shown, so that showing it only means sending it to the receiver.
+ *
+ * A screen tells its prefetcher which art it is likely to need next, such as the next track to play or the albums
+ * around the focused row of a list. Each request replaces the one before it. Work starts after a short delay and
+ * loads one piece of art at a time on the application's scheduler, so while the user scrolls quickly nothing is
+ * loaded until they stop, and a prefetcher never holds more than one worker thread.
+ */
+public class ArtPrefetcher {
+
+	private final Harmonium	app;
+	private final long		delay;
+	private Request			request = null;		// the request being worked on
+
+	/**
+	 * @param app	the application the art is for
+	 * @param delay	how long to wait for another request before starting, in milliseconds
+	 */
+	public ArtPrefetcher(Harmonium app, long delay) {
+		this.app = app;
+		this.delay = delay;
+	}
+
+	/**
+	 * Replaces any art that hasn't been loaded yet with new art.
+	 *
+	 * @param artSources	the art to load, in the order it should be loaded
+	 * @param width			the width the art will be shown at
+	 * @param height		the height the art will be shown at
+	 */
+	public synchronized void prefetch(List<? extends ArtSource> artSources, int width, int height) {
+		this.cancel();
+		if(artSources.isEmpty() || width < 1 || height < 1) {
+			return;
+		}
+		this.request = new Request(new ArrayList<ArtSource>(artSources), width, height);
+		this.request.task = this.app.getTasks().schedule(this.request, this.delay);
+	}
+
+	/**
+	 * Stops loading art. Art that is already being scaled is finished, because another screen may be waiting for it.
+	 */
+	public synchronized void cancel() {
+		if(this.request != null) {
+			this.request.task.cancel();
+			this.request = null;
+		}
+	}
+
+	/**
+	 * Loads the art of the current request, one piece at a time.
+	 */
+	private class Request implements Runnable {
+
+		private final List<ArtSource>	artSources;
+		private final int				width;
+		private final int				height;
+		private int						next = 0;
+		private Scheduler.Task			task;
+
+		Request(List<ArtSource> artSources, int width, int height) {
+			this.artSources = artSources;
+			this.width = width;
+			this.height = height;
+		}
+
+		public void run() {
+			try {
+				ArtSource artSource = this.artSources.get(this.next++);
+				FactoryPreferences prefs = app.getFactoryPreferences();
+				if(artSource != null && artSource.hasAlbumArt(prefs)) {
+					ScaledArtCache scaledArtCache = MusicCollection.getMusicCollection(app.getHFactory()).getScaledArtCache();
+					scaledArtCache.get(artSource, prefs, this.width, this.height);
+				}
+			}
+			finally {
+				// Give other tasks a turn before the next piece of art
+				synchronized(ArtPrefetcher.this) {
+					if(request == this && this.next < this.artSources.size()) {
+						this.task = app.getTasks().execute(this);
+					}
+					else if(request == this) {
+						request = null;
+					}
+				}
+			}
+		}
+	}
+}
@@ -112,10 +112,28 @@ public class DiscJockey extends View implements TagParseListener
 	    this.app.setLastRequestedStream(p.getURI());
 	    this.nowPlayingResource = this.createStream(url, p.getContentType(), true);
 	    this.setResource(this.nowPlayingResource); 
+	    this.stageNext();
 	    
 	    return true;
 	}
 
+	/**
+	 * Gets the next track ready to stream in the background, so there's less of a gap when it starts.
+	 */
+	private void stageNext()
+	{
+		Playable next = this.getNextPlayable();
+		if (!(next instanceof PlayableLocalTrack))
+			return;
+
+		final PlayableLocalTrack track = (PlayableLocalTrack)next;
+		this.app.getTasks().execute(new Runnable() {
+			public void run() {
+				app.getHFactory().stageStream(track);
+			}
+		});
+	}
+
 	private void nowPlayingChanged(Playable p)
 	{
 		PlayableTrack pt = null;
@@ -256,6 +274,7 @@ public class DiscJockey extends View implements TagParseListener
 		//We need to updateNext here just incase the playlist only had one song in it
 		for (DiscJockeyListener listener : _listeners)
 			listener.nextTrackChanged(this.getNextPlayable());
+		this.stageNext();
 
 		app.pushNowPlayingScreen();
 	}
@@ -275,6 +294,7 @@ public class DiscJockey extends View implements TagParseListener
 		//We need to updateNext here just incase the playlist only had one song in it
 		for (DiscJockeyListener listener : _listeners)
 			listener.nextTrackChanged(this.getNextPlayable());
+		this.stageNext();
 
 		app.pushNowPlayingScreen();
 	}
@@ -500,8 +520,8 @@ public class DiscJockey extends View implements TagParseListener
 		
 		long duration = this.nowPlaying.getDuration();  // TODO save duration as field?
 		
-		String[] positionInfo = resourceInfo.getMap().get("pos").toString().split("/");
-		msElapsed = Long.parseLong(positionInfo[0]);
+		if (resourceInfo.getPosition() >= 0)
+			msElapsed = resourceInfo.getPosition();
 	
 		double fractionComplete = (double)msElapsed / duration;
 		
@@ -688,7 +708,8 @@ public class DiscJockey extends View implements TagParseListener
 			        		// or rewinding. Implement it.
 			        		double lowerLimit = 0;
 			        		double upperLimit = .95;
-			        		if(Float.parseFloat( resourceInfo.getMap().get("speed").toString() ) < 0  && fractionComplete <= lowerLimit) 
+			        		float speed = resourceInfo.getSpeed();
+			        		if(speed < 0  && fractionComplete <= lowerLimit) 
 			        		{
 			        			// We are rewinding and are about to hit the beginning of the track. 
 			        			// Position the track at our lower limit and drop back to NORMAL speed.
@@ -696,7 +717,7 @@ public class DiscJockey extends View implements TagParseListener
 			        			this.nowPlayingResource.setPosition(position);
 			        			this.playNormalSpeed();
 			        		}
-			        		if( Float.parseFloat( resourceInfo.getMap().get("speed").toString() ) > 1 && fractionComplete >= upperLimit ) 
+			        		if( speed > 1 && fractionComplete >= upperLimit ) 
 			        		{
 			        			// We are fast forwarding and are about to hit the end of the track. 
 			        			// Position the track at our upper limit and drop back to NORMAL speed.
@@ -825,6 +846,7 @@ public class DiscJockey extends View implements TagParseListener
 			
 			for (DiscJockeyListener listener : _listeners)
 				listener.nextTrackChanged(getNextPlayable());
+			stageNext();
 		}
 	}
 
@@ -13,6 +13,13 @@ public class FactoryPreferences {
 	private boolean			ignoreJpgFileArt = false;
 	private boolean			preferJpgFileArt = false;
 	private boolean			includeHTTP = false;
+	private int				scanThreads;
+	private int				scanQueueSize;
+	private boolean			checkAllFiles = false;
+	private int				watchInterval;
+	private int				scaledArtCacheSize;
+	private boolean			saveScaledArt = false;
+	private int				progressUpdateRate;
 
 	public FactoryPreferences(IArgumentList args) {
 		
@@ -72,6 +79,44 @@ public class FactoryPreferences {
 		this.ignoreJpgFileArt = args.getBoolean("-ignoreJpgFileArt");
 		this.preferJpgFileArt = args.getBoolean("-preferJpgFileArt");
 		this.includeHTTP = args.getBoolean("-includeHTTPAlbumArt");
+		
+		// Tuning for the library scanner. Tag reading is mostly waiting on disk, so by default use a 
+		// couple of threads per processor.
+		this.scanThreads = args.getInt("-scanThreads", Runtime.getRuntime().availableProcessors() * 2);
+		if(this.scanThreads < 1) {
+			throw new RuntimeException("scanThreads: must be at least 1");
+		}
+		this.scanQueueSize = args.getInt("-scanQueueSize", 256);
+		if(this.scanQueueSize < 1) {
+			throw new RuntimeException("scanQueueSize: must be at least 1");
+		}
+		
+		// Refreshes normally skip directories that haven't changed. Files that are edited in place don't
+		// change their directory, so this makes a refresh check every file.
+		this.checkAllFiles = args.getBoolean("-checkAllFiles");
+		
+		// How often to look for changes to the music and playlist roots while running. 0 turns the watcher off, 
+		// in which case the collection is refreshed whenever a receiver connects. Like a refresh, the watcher only
+		// notices files edited in place when -checkAllFiles is given, and then has to look at every file each time.
+		this.watchInterval = args.getInt("-watchInterval", 30);
+		if(this.watchInterval < 0) {
+			throw new RuntimeException("watchInterval: must not be negative");
+		}
+		
+		// Album art scaled and encoded for receivers is shared by all of them. This is how much of it to keep in 
+		// memory, in kilobytes, and whether to also keep it on disk between runs.
+		this.scaledArtCacheSize = args.getInt("-scaledArtCacheSize", 8192);
+		if(this.scaledArtCacheSize < 0) {
+			throw new RuntimeException("scaledArtCacheSize: must not be negative");
+		}
+		this.saveScaledArt = args.getBoolean("-saveScaledArt");
+		
+		// The most times per second the Now Playing progress bar is redrawn while seeking. 0 means every time the 
+		// receiver reports the position.
+		this.progressUpdateRate = args.getInt("-progressUpdateRate", 4);
+		if(this.progressUpdateRate < 0) {
+			throw new RuntimeException("progressUpdateRate: must not be negative");
+		}
 	}
 		
 	/**
@@ -119,6 +164,62 @@ public class FactoryPreferences {
 	{
 		includeHTTP = newValue;
 	}
+
+	/**
+	 * @return the number of threads used to read tags when searching for music
+	 */
+	public final int getScanThreads()
+	{
+		return scanThreads;
+	}
+
+	/**
+	 * @return the maximum number of files queued between stages when searching for music
+	 */
+	public final int getScanQueueSize()
+	{
+		return scanQueueSize;
+	}
+
+	/**
+	 * @return <code>true</code> if a refresh should check every music file for changes, even in directories that haven't changed
+	 */
+	public final boolean checkAllFiles()
+	{
+		return checkAllFiles;
+	}
+
+	/**
+	 * @return the number of seconds between checks for changes to the music and playlist roots, or 0 if they aren't watched
+	 */
+	public final int getWatchInterval()
+	{
+		return watchInterval;
+	}
+
+	/**
+	 * @return the number of kilobytes of scaled album art to keep in memory
+	 */
+	public final int getScaledArtCacheSize()
+	{
+		return scaledArtCacheSize;
+	}
+
+	/**
+	 * @return <code>true</code> if scaled album art should be saved in the album art cache folder
+	 */
+	public final boolean saveScaledArt()
+	{
+		return saveScaledArt;
+	}
+
+	/**
+	 * @return the most times per second to update the progress bar, or 0 for no limit
+	 */
+	public final int getProgressUpdateRate()
+	{
+		return progressUpdateRate;
+	}
 	
 	
 	
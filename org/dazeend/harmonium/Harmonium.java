@@ -1,24 +1,22 @@
 package org.dazeend.harmonium;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.Hashtable;
 import java.util.LinkedList;
 
-import javazoom.spi.mpeg.sampled.file.tag.IcyInputStream;
-
 import org.blinkenlights.jid3.ID3Exception;
 import org.dazeend.harmonium.music.ArtSource;
-import org.dazeend.harmonium.music.MP3File;
 import org.dazeend.harmonium.music.MusicCollection;
+import org.dazeend.harmonium.music.PlayableLocalTrack;
+import org.dazeend.harmonium.music.ScaledArtCache;
+import org.dazeend.harmonium.music.TrackProbe;
 import org.dazeend.harmonium.screens.ExitScreen;
 import org.dazeend.harmonium.screens.HManagedResourceScreen;
 import org.dazeend.harmonium.screens.MainMenuScreen;
@@ -32,6 +30,8 @@ import com.tivo.hme.sdk.Factory;
 import com.tivo.hme.sdk.HmeEvent;
 import com.tivo.hme.sdk.ImageResource;
 import com.tivo.hme.sdk.Resource;
+import com.tivo.hme.sdk.util.Mp3Helper;
+import com.tivo.hme.sdk.util.Mp3SeekTable;
 
 public class Harmonium extends HDApplication {
 	
@@ -61,6 +61,9 @@ public class Harmonium extends HDApplication {
 
 	private String _requestedStream;
 	
+	// Background work and timers for this receiver, cancelled when the application closes
+	private Scheduler.Group tasks;
+	
 	
 	/* (non-Javadoc)
 	 * @see com.tivo.hme.bananas.BApplicationPlus#init(com.tivo.hme.interfaces.IContext)
@@ -88,12 +91,14 @@ public class Harmonium extends HDApplication {
 		// Initialize skin
 		this.hSkin = new HSkin(this);
 		
-		// Refresh the music list
-		new Thread() {
-			public void run() {
-				MusicCollection.getMusicCollection(getHFactory()).refresh(app);
-			}
-		}.start();
+		// Refresh the music list, unless it is already being kept up to date in the background
+		if(! MusicCollection.getMusicCollection(getHFactory()).isWatching()) {
+			new Thread() {
+				public void run() {
+					MusicCollection.getMusicCollection(getHFactory()).refresh(app);
+				}
+			}.start();
+		}
 		
 		// Load the main menu and background
 		MainMenuScreen mainMenuScreen = new MainMenuScreen( this, MusicCollection.getMusicCollection(this.getHFactory()) );
@@ -248,6 +253,26 @@ public class Harmonium extends HDApplication {
 		return nowPlayingScreen;
 	}
 
+	/**
+	 * Gets this application's group of tasks on the factory's shared scheduler.
+	 */
+	public synchronized Scheduler.Group getTasks() {
+		if(this.tasks == null) {
+			this.tasks = this.getHFactory().getScheduler().createGroup();
+		}
+		return this.tasks;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.tivo.hme.sdk.Application#destroy()
+	 */
+	@Override
+	public void destroy() {
+		// Nothing scheduled for this receiver should run once it's gone.
+		this.getTasks().close();
+		super.destroy();
+	}
+
 	/* (non-Javadoc)
 	 * Handles key presses from TiVo remote control.
 	 */
@@ -372,8 +397,14 @@ public class Harmonium extends HDApplication {
 		
 		private final static String VERSION = "0.8 ({REV})";
 
+		// Threads that run background work and timers for all receivers
+		private final static int SCHEDULER_THREADS = 4;
+
 		private FactoryPreferences preferences;
 		private final Hashtable<String, Long> _durationTable = new Hashtable<String, Long>();
+		private final Scheduler scheduler = new Scheduler(SCHEDULER_THREADS);
+		private final StreamStager streamStager = new StreamStager();
+		private StreamRelay streamRelay;
 
 		/**
 		 *  Create the factory. Reads preferences and initialized data structures.
@@ -394,6 +425,9 @@ public class Harmonium extends HDApplication {
 				// Read factory preferences from disk.
 				this.preferences = new FactoryPreferences(args);
 				
+				// Internet radio is shared between receivers playing the same station
+				this.streamRelay = new StreamRelay(this.preferences.inDebugMode());
+				
 				// Create the music collection
 				MusicCollection.getMusicCollection(this);
 			}
@@ -417,6 +451,31 @@ public class Harmonium extends HDApplication {
 			return this.preferences;
 		}
 		
+		/**
+		 * @return the scheduler shared by all receivers
+		 */
+		public Scheduler getScheduler() {
+			return this.scheduler;
+		}
+		
+		/**
+		 * Gets a track ready to stream, so that it starts quickly when a receiver asks for it. This reads from disk,
+		 * so it should be run as a background task.
+		 */
+		public void stageStream(PlayableLocalTrack track) {
+			this.streamStager.stage(track);
+		}
+		
+		/**
+		 * Forgets a track staged by <code>stageStream()</code>, because its file has changed or it is no longer in
+		 * the music collection.
+		 * 
+		 * @param uri	the URI of the track's stream
+		 */
+		public void unstageStream(String uri) {
+			this.streamStager.remove(uri);
+		}
+		
 		/**
 		 * @return the VERSION
 		 */
@@ -432,9 +491,63 @@ public class Harmonium extends HDApplication {
         @Override
 		protected long getMP3Duration(String uri)
 		{
-        	return _durationTable.remove(uri);
+        	Long duration = _durationTable.remove(uri);
+        	return (duration != null) ? duration : -1;
 		}
 
+        /* (non-Javadoc)
+         * @see com.tivo.hme.sdk.Factory#seekMP3(java.lang.String, java.io.InputStream, long)
+         */
+        @Override
+        protected InputStream seekMP3(String uri, InputStream in, long seekTime) throws IOException
+        {
+        	// Tracks in the collection have a seek table once they've been played, so we can skip straight to the
+        	// right place instead of reading every frame before it.
+        	MusicCollection collection = MusicCollection.getMusicCollection(this);
+        	PlayableLocalTrack track = lookupStreamTrack(collection, uri);
+        	if (track != null)
+        	{
+        		Mp3SeekTable table = collection.getSeekTable(track);
+        		if (table != null)
+        			return Mp3Helper.seek(in, seekTime, table);
+        	}
+        	return super.seekMP3(uri, in, seekTime);
+        }
+
+        /* (non-Javadoc)
+         * @see com.tivo.hme.sdk.Factory#getStreamLength(java.lang.String)
+         */
+        @Override
+        protected long getStreamLength(String uri) throws IOException
+        {
+        	if (! uri.toLowerCase().endsWith(".mp3"))
+        		return -1;
+        	
+        	// The collection knows the duration of its tracks, so a HEAD request doesn't need the file opened.
+        	MusicCollection collection = MusicCollection.getMusicCollection(this);
+        	PlayableLocalTrack track = lookupStreamTrack(collection, uri);
+        	if (track == null)
+        		return -1;
+        	long length = track.getTrackFile().length();
+        	if (length <= 0)
+        		return -1;
+        	addTrackDuration(uri, track.getDuration());
+        	return length;
+        }
+
+        /**
+         * Finds the track in the collection that a stream request is for. The factory has already decoded the request
+         * path, undoing the encoding DiscJockey adds. Decoding it again would mangle names containing '%' or '+', so
+         * that is only tried if the path isn't found as is.
+         */
+        private PlayableLocalTrack lookupStreamTrack(MusicCollection collection, String uri) throws IOException
+        {
+        	PlayableLocalTrack track = collection.lookupTrackByURI(uri);
+        	if (track == null)
+        		track = collection.lookupTrackByURI(URLDecoder.decode(uri, "UTF-8"));
+        	return track;
+        }
+
         private Harmonium getAppThatRequestedStream(String requestedUri)
         {
 			for (int i = 0; i < active.size(); i++) 
@@ -458,57 +571,54 @@ public class Harmonium extends HDApplication {
 				System.out.println("Fetching MP3 stream for playback: " + uri);
 				
 				Harmonium app = getAppThatRequestedStream(uri);
-				
-                try
-                {
-    	            URL url = new URL(uri);
-    	            HttpURLConnection conn = (HttpURLConnection)url.openConnection();
-    	            conn.setInstanceFollowRedirects(true);
-
-                    conn.setRequestProperty("Icy-Metadata", "1");
-                    conn.setRequestProperty("User-Agent", "WinampMPEG/5.0");
-                    conn.setRequestProperty("Accept", "audio/mpeg");
-
-                    InputStream inputStream = conn.getInputStream();
-
-                    IcyInputStream icyInputStream = new IcyInputStream(inputStream);
-                    if (app != null)
-                    	icyInputStream.addTagParseListener(app.getDiscJockey());
-
-    	            return new BufferedInputStream(icyInputStream, 102400);
-                }
-                catch (Throwable t)
-                {
-                	if (preferences.inDebugMode())
-                		t.printStackTrace();
-                	System.out.println("Not an Icy stream.  Re-opening without icy listener...");
-                }
-
-	            URL url = new URL(uri);
-	            HttpURLConnection conn = (HttpURLConnection)url.openConnection();
-	            conn.setInstanceFollowRedirects(true);
-
-                conn.setRequestProperty("Accept", "audio/mpeg");
-
-                InputStream inputStream = conn.getInputStream();
-
-	            return new BufferedInputStream(inputStream, 102400);
-}
+				return this.streamRelay.open(uri, (app != null) ? app.getDiscJockey() : null);
+			}
 			else if (lowerUri.endsWith(".mp3"))
 			{
-	            File file = new File(MusicCollection.getMusicCollection(this).getMusicRoot(), URLDecoder.decode(uri, "UTF-8"));
+				MusicCollection collection = MusicCollection.getMusicCollection(this);
+
+				// A staged track was checked and read into the disk cache when the track before it started.
+				StreamStager.StagedStream staged = this.streamStager.get(uri);
+				if (staged != null)
+				{
+					try
+					{
+						InputStream in = new FileInputStream(staged.file);
+						System.out.println("Fetching staged MP3 file for playback: " + uri);
+						addTrackDuration(uri, staged.duration);
+						collection.prefetchSeekTable(staged.track);
+						return in;
+					}
+					catch (FileNotFoundException e)
+					{
+						// Removed since it was staged. Look for it the usual way.
+					}
+				}
+
+				PlayableLocalTrack track = lookupStreamTrack(collection, uri);
+	            File file = (track != null) ? track.getTrackFile() : new File(collection.getMusicRoot(), URLDecoder.decode(uri, "UTF-8"));
 	            if (file.exists()) 
 	            {
 					System.out.println("Fetching MP3 file for playback: " + uri);
 
-					try
+					if (track != null)
 					{
-		            	MP3File mp3file = new MP3File(file.getPath(), file);
-		            	addTrackDuration(uri, mp3file.getDuration());
-					} 
-					catch (ID3Exception e)
+						// The collection already knows the duration. Get the seek table ready in case the track is skipped into.
+						addTrackDuration(uri, track.getDuration());
+						collection.prefetchSeekTable(track);
+					}
+					else
 					{
-						e.printStackTrace();
+						// Not in the collection (yet), so read the file. Only the duration is needed.
+						try
+						{
+			            	TrackProbe probe = TrackProbe.read(file, new String[0], true);
+			            	addTrackDuration(uri, probe.getDuration());
+						} 
+						catch (ID3Exception e)
+						{
+							e.printStackTrace();
+						}
 					}
 
 		            InputStream in = new FileInputStream(file);
@@ -583,13 +693,21 @@ public class Harmonium extends HDApplication {
 					}
 				}
 
+				// Scaled, encoded art is shared by every receiver, so usually it's only sent from here.
+				byte[] art = null;
 				if (hash != 0)
+				{
+					ScaledArtCache scaledArtCache = MusicCollection.getMusicCollection(_app.getHFactory()).getScaledArtCache();
+					art = scaledArtCache.get(artSource, _app.getFactoryPreferences(), width, height);
+				}
+
+				if (art != null)
 				{
 					// When the receiver chokes on album art for some reason, this is where we die.  But no exception is thrown,
 					// Application closes itself.  And changing this doesn't seem to be an improvement.  The failure leaves
 					// things in a weird state such that subsequent songs fail to play, etc.  I think it's better to let it 
 					// fail in a deterministic way, so at least it's relatively easy to identify the offending music.
-					aci = new ArtCacheItem(hash, screen.createImage(artSource.getScaledAlbumArt(_app.getFactoryPreferences(), width, height)));
+					aci = new ArtCacheItem(hash, screen.createImage(art));
 				}
 				else
 					aci = new ArtCacheItem(hash, screen.createImage("default_album_art2.png"));
@@ -1,8 +1,6 @@
 package org.dazeend.harmonium;
 
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.dazeend.harmonium.screens.NowPlayingScreen;
 import org.dazeend.harmonium.screens.ScreenSaverScreen;
@@ -16,7 +14,7 @@ public final class InactivityHandler {
 	private static int inactivityMilliseconds;
 	
 	private Harmonium app;
-	private Timer idleTimer = new Timer();
+	private Scheduler.Task idleCheckTask;
 	private Date lastActivityDate;
 	private boolean inactive = false;
 	private ScreenSaverScreen screenSaverScreen;
@@ -30,7 +28,7 @@ public final class InactivityHandler {
 
 		updateScreenSaverDelay();
 		lastActivityDate = new Date();
-		idleTimer.schedule(new InactiveCheckTimerTask(this), 10000, 10000);
+		idleCheckTask = app.getTasks().scheduleWithFixedDelay(new InactiveCheckTimerTask(this), 10000, 10000);
 	}
 	
 	/**
@@ -120,7 +118,7 @@ public final class InactivityHandler {
 		}
 	}
 	
-	private class InactiveCheckTimerTask extends TimerTask {
+	private class InactiveCheckTimerTask implements Runnable {
 
 		private InactivityHandler handler;
 		
@@ -128,7 +126,6 @@ public final class InactivityHandler {
 			this.handler = handler;
 		}
 		
-		@Override
 		public void run() {
 			handler.checkIfInactive();
 		}
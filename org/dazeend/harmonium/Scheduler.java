@@ -0,0 +1,193 @@
+package org.dazeend.harmonium;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs background work and timed tasks for every receiver, on a fixed number of threads.
+ *
+ * One timer thread keeps delayed tasks in a heap and hands each one to a small pool of worker threads when it is
+ * due, so the number of threads doesn't grow as receivers connect. Each application gets its own group of tasks,
+ * which are all cancelled when the application closes.
+ */
+public class Scheduler {
+
+	private final ScheduledThreadPoolExecutor	timer;
+	private final ThreadPoolExecutor			workers;
+
+	/**
+	 * Creates a scheduler and starts its threads.
+	 *
+	 * @param workerCount	the number of threads that run tasks
+	 */
+	public Scheduler(int workerCount) {
+		this.timer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Harmonium timer"));
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Harmonium worker"));
+	}
+
+	/**
+	 * Creates an empty group of tasks.
+	 */
+	public Group createGroup() {
+		return new Group();
+	}
+
+	/**
+	 * The tasks belonging to one application.
+	 */
+	public final class Group {
+
+		private final Set<Task>	tasks = new HashSet<Task>();
+		private boolean			closed = false;
+
+		private Group() {
+		}
+
+		/**
+		 * Runs a task on a worker thread as soon as one is free.
+		 */
+		public Task execute(Runnable runnable) {
+			return this.start(new Task(this, runnable, 0), 0);
+		}
+
+		/**
+		 * Runs a task once, after a delay.
+		 *
+		 * @param delay	the delay in milliseconds
+		 */
+		public Task schedule(Runnable runnable, long delay) {
+			return this.start(new Task(this, runnable, 0), delay);
+		}
+
+		/**
+		 * Runs a task repeatedly until it is cancelled. Each run starts a fixed time after the previous one ends.
+		 *
+		 * @param initialDelay	the delay before the first run in milliseconds
+		 * @param delay			the delay between runs in milliseconds
+		 */
+		public Task scheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay) {
+			return this.start(new Task(this, runnable, delay), initialDelay);
+		}
+
+		/**
+		 * Cancels every task in the group. Tasks added later are cancelled straight away.
+		 */
+		public void close() {
+			Task[] toCancel;
+			synchronized(this) {
+				this.closed = true;
+				toCancel = this.tasks.toArray(new Task[this.tasks.size()]);
+			}
+			for(Task task : toCancel) {
+				task.cancel();
+			}
+		}
+
+		private Task start(Task task, long delay) {
+			synchronized(this) {
+				if(this.closed) {
+					return task;
+				}
+				this.tasks.add(task);
+			}
+			task.start(delay);
+			return task;
+		}
+
+		private synchronized void remove(Task task) {
+			this.tasks.remove(task);
+		}
+	}
+
+	/**
+	 * A task that has been handed to the scheduler.
+	 */
+	public final class Task implements Runnable {
+
+		private final Group		group;
+		private final Runnable	runnable;
+		private final long		period;				// delay between runs, or 0 to run once
+		private volatile boolean	cancelled = false;
+		private Future<?>		pending = null;		// the timer or worker job that will run the task next
+
+		private Task(Group group, Runnable runnable, long period) {
+			this.group = group;
+			this.runnable = runnable;
+			this.period = period;
+		}
+
+		/**
+		 * Stops the task from running again. A run that has already started is allowed to finish.
+		 */
+		public void cancel() {
+			this.cancelled = true;
+			synchronized(this) {
+				if(this.pending != null) {
+					this.pending.cancel(false);
+				}
+			}
+			this.group.remove(this);
+		}
+
+		private synchronized void start(long delay) {
+			if(this.cancelled) {
+				return;
+			}
+			if(delay <= 0) {
+				this.pending = workers.submit(this);
+			}
+			else {
+				// The timer only hands the task to a worker, so a slow task can't hold up other timers.
+				this.pending = timer.schedule(new Runnable() {
+					public void run() {
+						start(0);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		public void run() {
+			if(this.cancelled) {
+				return;
+			}
+			try {
+				this.runnable.run();
+			}
+			catch(Throwable t) {
+				t.printStackTrace();
+			}
+			finally {
+				if(this.period > 0 && ! this.cancelled) {
+					this.start(this.period);
+				}
+				else {
+					this.group.remove(this);
+				}
+			}
+		}
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final String		name;
+		private final AtomicInteger	count = new AtomicInteger();
+
+		NamedThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, this.name + " " + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,478 @@
+package org.dazeend.harmonium;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javazoom.spi.mpeg.sampled.file.tag.IcyInputStream;
+import javazoom.spi.mpeg.sampled.file.tag.MP3Tag;
+import javazoom.spi.mpeg.sampled.file.tag.TagParseEvent;
+import javazoom.spi.mpeg.sampled.file.tag.TagParseListener;
+
+/**
+ * Shares one connection to each internet radio station between every receiver playing it.
+ *
+ * Each station has a thread that reads the station's stream into a ring buffer. Receivers read from the buffer at
+ * their own pace, each keeping its own position, so a receiver that reconnects or starts playing a station that is
+ * already playing doesn't dial the station again. The thread is the only writer and readers never take a lock to
+ * copy data; they only wait on the station when they have caught up with it. ICY metadata such as the title of the
+ * song playing is parsed once and passed on to every receiver's listener.
+ *
+ * A station that nobody has listened to for a while is disconnected. A station that drops its connection is
+ * reconnected, waiting longer after each failure.
+ */
+class StreamRelay {
+
+	// About a minute of audio at 128kbps
+	private static final int	BUFFER_SIZE = 1024 * 1024;
+
+	// The most read from the station at once. Readers stay this far away from the writer, so that what they copy
+	// can't be overwritten while they copy it.
+	private static final int	CHUNK_SIZE = 8 * 1024;
+
+	// How much audio that has already been received a new reader starts with, so that playback starts quickly
+	private static final int	JOIN_BACKLOG = 64 * 1024;
+
+	private static final int	CONNECT_TIMEOUT = 15000;
+	private static final int	READ_TIMEOUT = 30000;
+	private static final long	IDLE_TIMEOUT = 30000;
+	private static final long	MIN_BACKOFF = 1000;
+	private static final long	MAX_BACKOFF = 30000;
+	private static final int	MAX_RETRIES = 6;
+
+	private final Map<String, Station>	stations = new HashMap<String, Station>();
+	private final boolean				debug;
+
+	/**
+	 * @param debug	whether to print the details of connection failures
+	 */
+	StreamRelay(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * Opens a station's stream, connecting to the station if nobody is listening to it yet.
+	 *
+	 * @param uri		the URL of the station
+	 * @param listener	told about the station's metadata, or <code>null</code>
+	 * @return			the station's audio, starting with a little that has already been received
+	 * @throws IOException	if the station can't be reached
+	 */
+	InputStream open(String uri, TagParseListener listener) throws IOException {
+		Station station;
+		Reader reader;
+		synchronized(this) {
+			station = this.stations.get(uri);
+			if(station == null) {
+				station = new Station(uri);
+				this.stations.put(uri, station);
+				station.start();
+			}
+			else {
+				System.out.println("Sharing MP3 stream: " + uri);
+			}
+			// Attaching while the station is in the map means it can't be torn down for being idle.
+			reader = station.attach(listener);
+		}
+
+		try {
+			station.awaitConnected();
+		}
+		catch(IOException e) {
+			reader.close();
+			throw e;
+		}
+		station.sendTags(listener);
+		return reader;
+	}
+
+	/**
+	 * Removes a station that is closing, unless a reader has just attached to it.
+	 *
+	 * @return	<code>true</code> if the station was removed
+	 */
+	private synchronized boolean remove(Station station, boolean onlyIfIdle) {
+		if(onlyIfIdle && ! station.readers.isEmpty()) {
+			return false;
+		}
+		if(this.stations.get(station.uri) == station) {
+			this.stations.remove(station.uri);
+		}
+		station.closed = true;
+		return true;
+	}
+
+	/**
+	 * One station and the receivers listening to it.
+	 */
+	private class Station implements Runnable, TagParseListener {
+
+		private final String					uri;
+		private final byte[]					buffer = new byte[BUFFER_SIZE];
+		private volatile long					written = 0;		// bytes written to the buffer since connecting
+		private volatile int					waiters = 0;		// readers waiting for data
+		private volatile boolean				closed = false;
+		private final List<Reader>				readers = new CopyOnWriteArrayList<Reader>();
+		private final Map<String, MP3Tag>		tags = new LinkedHashMap<String, MP3Tag>();
+		private long							idleSince = 0;
+		private boolean							icy = true;			// whether the station sends metadata
+		private boolean							connected = false;
+		private volatile IOException			failure = null;
+
+		Station(String uri) {
+			this.uri = uri;
+		}
+
+		void start() {
+			Thread thread = new Thread(this, "Harmonium relay " + this.uri);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		Reader attach(TagParseListener listener) {
+			Reader reader = new Reader(this, listener, Math.max(0, this.written - JOIN_BACKLOG));
+			this.readers.add(reader);
+			return reader;
+		}
+
+		void detach(Reader reader) {
+			this.readers.remove(reader);
+		}
+
+		/**
+		 * Waits for the first connection to the station.
+		 */
+		synchronized void awaitConnected() throws IOException {
+			while(! this.connected && this.failure == null) {
+				try {
+					this.wait();
+				}
+				catch(InterruptedException e) {
+					throw new IOException("Interrupted while connecting to " + this.uri);
+				}
+			}
+			if(! this.connected) {
+				throw this.failure;
+			}
+		}
+
+		/**
+		 * Tells a new listener what the station last said it is playing.
+		 */
+		void sendTags(TagParseListener listener) {
+			if(listener == null) {
+				return;
+			}
+			List<MP3Tag> current;
+			synchronized(this.tags) {
+				current = new ArrayList<MP3Tag>(this.tags.values());
+			}
+			for(MP3Tag tag : current) {
+				listener.tagParsed(new TagParseEvent(this, tag));
+			}
+		}
+
+		public void tagParsed(TagParseEvent tpe) {
+			MP3Tag tag = tpe.getTag();
+			synchronized(this.tags) {
+				this.tags.put(tag.getName(), tag);
+			}
+			for(Reader reader : this.readers) {
+				if(reader.listener != null) {
+					try {
+						reader.listener.tagParsed(tpe);
+					}
+					catch(Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+
+		public void run() {
+			long backoff = MIN_BACKOFF;
+			int failures = 0;
+			while(true) {
+				IOException error;
+				InputStream in = null;
+				try {
+					in = this.connect();
+					synchronized(this) {
+						this.connected = true;
+						this.notifyAll();
+					}
+					backoff = MIN_BACKOFF;
+					failures = 0;
+					this.pump(in);
+					if(this.closed) {
+						System.out.println("Closed idle MP3 stream: " + this.uri);
+						return;
+					}
+					error = new EOFException("MP3 stream ended: " + this.uri);
+				}
+				catch(IOException e) {
+					error = e;
+				}
+				finally {
+					if(in != null) {
+						try {
+							in.close();
+						}
+						catch(IOException e) {
+						}
+					}
+				}
+
+				if(debug) {
+					error.printStackTrace();
+				}
+
+				// A station that can't be reached at all is reported to the receiver that asked for it. One that
+				// drops out is retried for a while, since receivers keep playing what is buffered.
+				if(! this.connected || ++failures > MAX_RETRIES) {
+					this.fail(error);
+					return;
+				}
+				System.out.println("Lost MP3 stream, reconnecting in " + backoff + "ms: " + this.uri);
+				if(! this.sleep(backoff)) {
+					return;
+				}
+				backoff = Math.min(backoff * 2, MAX_BACKOFF);
+			}
+		}
+
+		/**
+		 * Connects to the station, asking for metadata if the station sends it.
+		 */
+		private InputStream connect() throws IOException {
+			if(this.icy) {
+				InputStream in = null;
+				try {
+					HttpURLConnection conn = this.openConnection();
+					conn.setRequestProperty("Icy-Metadata", "1");
+					conn.setRequestProperty("User-Agent", "WinampMPEG/5.0");
+					in = conn.getInputStream();
+
+					// Servers that answer like a web server send the metadata interval as a header. The stream reads
+					// the headers of older servers, which the connection leaves in the body.
+					String metaint = conn.getHeaderField("icy-metaint");
+					IcyInputStream icyInputStream = (metaint != null) ? new IcyInputStream(in, metaint) : new IcyInputStream(in);
+					icyInputStream.addTagParseListener(this);
+					return icyInputStream;
+				}
+				catch(Throwable t) {
+					if(debug) {
+						t.printStackTrace();
+					}
+					if(in != null) {
+						try {
+							in.close();
+						}
+						catch(IOException e) {
+						}
+					}
+				}
+
+				// Only stop asking for metadata if the station can be reached without it.
+				InputStream plain = this.openConnection().getInputStream();
+				System.out.println("Not an Icy stream.  Re-opening without icy listener...");
+				this.icy = false;
+				return plain;
+			}
+			return this.openConnection().getInputStream();
+		}
+
+		private HttpURLConnection openConnection() throws IOException {
+			HttpURLConnection conn = (HttpURLConnection)new URL(this.uri).openConnection();
+			conn.setInstanceFollowRedirects(true);
+			conn.setConnectTimeout(CONNECT_TIMEOUT);
+			conn.setReadTimeout(READ_TIMEOUT);
+			conn.setRequestProperty("Accept", "audio/mpeg");
+			return conn;
+		}
+
+		/**
+		 * Copies the station's stream into the buffer until the station ends it, or nobody has listened for a while.
+		 */
+		private void pump(InputStream in) throws IOException {
+			byte[] chunk = new byte[CHUNK_SIZE];
+			while(! this.closeIfIdle()) {
+				int n = in.read(chunk, 0, chunk.length);
+				if(n < 0) {
+					return;
+				}
+
+				int offset = (int)(this.written % this.buffer.length);
+				int first = Math.min(n, this.buffer.length - offset);
+				System.arraycopy(chunk, 0, this.buffer, offset, first);
+				System.arraycopy(chunk, first, this.buffer, 0, n - first);
+				this.written += n;
+
+				if(this.waiters > 0) {
+					synchronized(this) {
+						this.notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Waits before reconnecting.
+		 *
+		 * @return	<code>false</code> if the station was closed for being idle while waiting
+		 */
+		private boolean sleep(long millis) {
+			long end = System.currentTimeMillis() + millis;
+			for(long now = System.currentTimeMillis(); now < end; now = System.currentTimeMillis()) {
+				if(this.closeIfIdle()) {
+					return false;
+				}
+				try {
+					Thread.sleep(Math.min(end - now, 1000));
+				}
+				catch(InterruptedException e) {
+					return ! this.closeIfIdle();
+				}
+			}
+			return true;
+		}
+
+		private boolean closeIfIdle() {
+			if(! this.readers.isEmpty()) {
+				this.idleSince = 0;
+				return false;
+			}
+			long now = System.currentTimeMillis();
+			if(this.idleSince == 0) {
+				this.idleSince = now;
+				return false;
+			}
+			return now - this.idleSince >= IDLE_TIMEOUT && remove(this, true);
+		}
+
+		private void fail(IOException error) {
+			remove(this, false);
+			System.out.println("Failed to play MP3 stream: " + this.uri);
+			synchronized(this) {
+				this.failure = error;
+				this.notifyAll();
+			}
+		}
+
+		/**
+		 * Waits up to a second for more data.
+		 */
+		synchronized void awaitData(long position) throws InterruptedException {
+			++this.waiters;
+			try {
+				if(this.written <= position && this.failure == null) {
+					this.wait(1000);
+				}
+			}
+			finally {
+				--this.waiters;
+			}
+		}
+	}
+
+	/**
+	 * One receiver's view of a station.
+	 */
+	private static class Reader extends InputStream {
+
+		private final Station			station;
+		private final TagParseListener	listener;
+		private long					position;		// the next byte to read, counted like Station.written
+		private boolean					closed = false;
+
+		Reader(Station station, TagParseListener listener, long position) {
+			this.station = station;
+			this.listener = listener;
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (this.read(b, 0, 1) < 0) ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(this.closed) {
+				throw new IOException("Stream closed");
+			}
+			if(len == 0) {
+				return 0;
+			}
+
+			byte[] buffer = this.station.buffer;
+			int limit = buffer.length - CHUNK_SIZE;
+			long waitStart = 0;
+			while(true) {
+				long written = this.station.written;
+				if(written <= this.position) {
+					if(this.station.failure != null) {
+						return -1;
+					}
+					long now = System.currentTimeMillis();
+					if(waitStart == 0) {
+						waitStart = now;
+					}
+					else if(now - waitStart > READ_TIMEOUT) {
+						throw new SocketTimeoutException("Timed out waiting for " + this.station.uri);
+					}
+					try {
+						this.station.awaitData(this.position);
+					}
+					catch(InterruptedException e) {
+						throw new IOException("Interrupted while reading " + this.station.uri);
+					}
+					continue;
+				}
+
+				// A reader that has fallen too far behind skips ahead, since the audio it missed is gone.
+				if(written - this.position > limit) {
+					this.position = Math.max(0, written - JOIN_BACKLOG);
+					continue;
+				}
+
+				int n = (int)Math.min(len, written - this.position);
+				int offset = (int)(this.position % buffer.length);
+				int first = Math.min(n, buffer.length - offset);
+				System.arraycopy(buffer, offset, b, off, first);
+				System.arraycopy(buffer, 0, b, off + first, n - first);
+
+				// Make sure the writer didn't lap us while we copied.
+				if(this.station.written - this.position > limit) {
+					continue;
+				}
+				this.position += n;
+				return n;
+			}
+		}
+
+		@Override
+		public int available() {
+			long available = this.station.written - this.position;
+			return (int)Math.max(0, Math.min(available, this.station.buffer.length - CHUNK_SIZE));
+		}
+
+		@Override
+		public void close() {
+			if(! this.closed) {
+				this.closed = true;
+				this.station.detach(this);
+			}
+		}
+	}
+}
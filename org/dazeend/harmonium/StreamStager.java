@@ -0,0 +1,140 @@
+package org.dazeend.harmonium;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dazeend.harmonium.music.PlayableLocalTrack;
+
+/**
+ * Gets tracks ready to stream before a receiver asks for them, to shorten the gap between tracks.
+ *
+ * When a track starts, the track after it is staged: its file is checked, its duration is noted, and the start of the
+ * file is read so that it is in the operating system's cache. Reading covers the ID3 tag, which can hold large album
+ * art, and the first audio after it, which is what the receiver needs before it can start playing. When the receiver
+ * then asks for the track, the factory answers from the staged details without looking anything up.
+ */
+class StreamStager {
+
+	// The most tracks to keep staged. Receivers usually ask for a track more than once, for example to skip into it.
+	private static final int	MAX_STAGED = 16;
+
+	// How much audio to read after the ID3 tag, and the most to read in all
+	private static final int	READ_AHEAD = 256 * 1024;
+	private static final int	MAX_READ = 8 * 1024 * 1024;
+
+	private static final int	ID3_HEADER_SIZE = 10;
+
+	/**
+	 * A track that is ready to stream.
+	 */
+	static class StagedStream {
+		final PlayableLocalTrack	track;
+		final File					file;
+		final long					duration;		// in milliseconds
+
+		private StagedStream(PlayableLocalTrack track, File file, long duration) {
+			this.track = track;
+			this.file = file;
+			this.duration = duration;
+		}
+	}
+
+	private final Map<String, StagedStream> staged = new LinkedHashMap<String, StagedStream>(MAX_STAGED, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, StagedStream> eldest) {
+			return size() > MAX_STAGED;
+		}
+	};
+
+	/**
+	 * Stages a track, unless it already is. This reads from disk, so it shouldn't be called on an event thread.
+	 */
+	void stage(PlayableLocalTrack track) {
+		String uri = track.getURI();
+		File file = track.getTrackFile();
+		synchronized(this) {
+			StagedStream stream = this.staged.get(uri);
+			if(stream != null && stream.file.equals(file)) {
+				return;
+			}
+		}
+		if(file == null || ! file.isFile()) {
+			return;
+		}
+
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				readAhead(in.getChannel());
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			// The request will be handled the usual way.
+			return;
+		}
+
+		synchronized(this) {
+			this.staged.put(uri, new StagedStream(track, file, track.getDuration()));
+		}
+	}
+
+	/**
+	 * Gets a staged track.
+	 *
+	 * @param uri	the URI of the track's stream
+	 * @return		the staged track, or <code>null</code> if it hasn't been staged
+	 */
+	synchronized StagedStream get(String uri) {
+		return this.staged.get(uri);
+	}
+
+	/**
+	 * Forgets a staged track, because its file has changed or it has left the collection.
+	 *
+	 * @param uri	the URI of the track's stream
+	 */
+	synchronized void remove(String uri) {
+		this.staged.remove(uri);
+	}
+
+	/**
+	 * Reads the ID3 tag at the start of a file and the audio after it.
+	 */
+	private static void readAhead(FileChannel channel) throws IOException {
+		long size = channel.size();
+		ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+
+		long audioStart = 0;
+		buf.limit(ID3_HEADER_SIZE);
+		channel.read(buf, 0);
+		if(buf.position() == ID3_HEADER_SIZE && buf.get(0) == 'I' && buf.get(1) == 'D' && buf.get(2) == '3') {
+			// The tag size is stored in four bytes of seven bits each, and doesn't include the header or footer.
+			audioStart = ID3_HEADER_SIZE + ((buf.get(6) & 0x7f) << 21) + ((buf.get(7) & 0x7f) << 14) + ((buf.get(8) & 0x7f) << 7) + (buf.get(9) & 0x7f);
+			if((buf.get(5) & 0x10) != 0) {
+				audioStart += ID3_HEADER_SIZE;
+			}
+			audioStart = Math.min(audioStart, size);
+		}
+
+		long end = Math.min(Math.min(audioStart + READ_AHEAD, MAX_READ), size);
+		for(long pos = ID3_HEADER_SIZE; pos < end; ) {
+			buf.clear();
+			buf.limit((int)Math.min(buf.capacity(), end - pos));
+			int n = channel.read(buf, pos);
+			if(n <= 0) {
+				break;
+			}
+			pos += n;
+		}
+	}
+}
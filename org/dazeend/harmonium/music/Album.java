@@ -4,8 +4,9 @@ import java.awt.Image;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 
 import org.dazeend.harmonium.FactoryPreferences;
@@ -18,7 +19,8 @@ import org.dazeend.harmonium.Harmonium;
 public class Album extends HMusic implements PlayableCollection, AlbumArtListItem {
 
 	private List<Disc>					discList = Collections.synchronizedList( new ArrayList<Disc>() );
-	private List<PlayableLocalTrack>	trackList = Collections.synchronizedList( new ArrayList<PlayableLocalTrack>() );
+	private List<PlayableLocalTrack>	trackList = Collections.synchronizedList( new TrackList() );
+	private Map<Integer, Disc>			discIndex = new HashMap<Integer, Disc>();	// Maps disc numbers to members of discList.
 	private String						albumArtistName = "";	// Set only through constructor. Setting later could break data structure.
 	private String						albumArtistNameTitleSortForm;
 	private String 						albumName = "";			// Set only through constructor. Setting later could break data structure.
@@ -74,18 +76,21 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 			return false;
 		}
 		// Check to ensure that the newDisc is not already a member of the disc.
-		if(discList.contains(newDisc)) {
+		if(discIndex.containsKey(newDisc.getDiscNumber())) {
 			return false;
 		}
 		
 		// If we got this far, then the disc is not yet in the disc, so add it.
 		if(discList.add(newDisc)) {
 			// The disc was successfully added. Copy metadata (if needed) and return TRUE.
+			discIndex.put(newDisc.getDiscNumber(), newDisc);
+			
 			if(this.releaseYear == 0) {
 				this.releaseYear = newDisc.getReleaseYear();
 			}
 			
-			if(this.artSource == null && newDisc.hasAlbumArt(prefs)) {
+			// Art is found later by the album art index, so just remember which disc to ask.
+			if(this.artSource == null) {
 				artSource = newDisc;
 			}
 			
@@ -108,20 +113,16 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 		if(trackDisc != 0) {
 			
 			// track belongs to a disc. See if the disc is a member of this album.
-			Iterator<Disc> discIterator = this.discList.iterator();
-			while( discIterator.hasNext() ) {
-				Disc disc = discIterator.next();
-			
-				if( disc.getDiscNumber() == trackDisc ) {
-					// The disc is a member of this album, so delete the track from the disc.
-					disc.removeTrack(track);
-					
-					// Check if the album is empty
-					if( disc.getTrackList().isEmpty() ) {
-						// It's empty, so delete the disc via its iterator.
-						discIterator.remove();
-					}
-						
+			Disc disc = this.discIndex.get(trackDisc);
+			if(disc != null) {
+				// The disc is a member of this album, so delete the track from the disc.
+				disc.removeTrack(track);
+				
+				// Check if the album is empty
+				if( disc.getTrackList().isEmpty() ) {
+					// It's empty, so delete the disc.
+					this.discIndex.remove(trackDisc);
+					this.discList.remove(disc);
 				}
 			}
 		}
@@ -129,6 +130,19 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 			// The track is not part of an album, so just delete it from the list
 			this.trackList.remove(track);
 		}
+		
+		// Don't keep asking a removed member for album art.
+		if(this.artSource == track || (this.artSource instanceof Disc && ! this.discList.contains(this.artSource))) {
+			if(! this.discList.isEmpty()) {
+				this.artSource = this.discList.get(0);
+			}
+			else if(! this.trackList.isEmpty()) {
+				this.artSource = this.trackList.get(0);
+			}
+			else {
+				this.artSource = null;
+			}
+		}
 	}
 	/**
 	 * Adds a track as a member of the <code>Album</code>. Checks to ensure that the track is not already
@@ -148,19 +162,17 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 		if(newTrackDiscNumber != 0) {
 			
 			// newTrack belongs to a disc. See if the disc is already a member of this album.
-			for( Disc disc : this.discList) {
-				
-				if( disc.getDiscNumber() == newTrackDiscNumber ) {
-					// The disc is already a member of this album, so add newTrack to the disc.
-					if(disc.addTrack(prefs, newTrack)) {
-						// The track was successfully added. Return TRUE.
-						return true;
-					}
-					else {
-						// There was an error in adding the track.
-						return false;
-					}	
+			Disc disc = this.discIndex.get(newTrackDiscNumber);
+			if(disc != null) {
+				// The disc is already a member of this album, so add newTrack to the disc.
+				if(disc.addTrack(prefs, newTrack)) {
+					// The track was successfully added. Return TRUE.
+					return true;
 				}
+				else {
+					// There was an error in adding the track.
+					return false;
+				}	
 			}
 			
 			// The disc is not yet a member of this album.
@@ -202,7 +214,8 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 					this.releaseYear = newTrack.getReleaseYear();
 				}
 				
-				if(this.artSource == null && newTrack.hasAlbumArt(prefs)) {
+				// The first track stands in for the album when asking for art.
+				if(this.artSource == null) {
 					artSource = newTrack;
 				}
 				
@@ -347,7 +360,8 @@ public class Album extends HMusic implements PlayableCollection, AlbumArtListIte
 		List<PlayableLocalTrack> outputList = new ArrayList<PlayableLocalTrack>();
  		
  		// Get tracks from each member disc and add them to the output list
-		List<Disc> sortedDiscList = discList;
+		// Sort a copy. Other threads may be reading or adding to the disc list.
+		List<Disc> sortedDiscList = new ArrayList<Disc>(discList);
 		Collections.sort(sortedDiscList, new CompareDiscs());
 		for(Disc disc : sortedDiscList) {
  			outputList.addAll(disc.getMembers(app));
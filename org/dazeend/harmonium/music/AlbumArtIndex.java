@@ -0,0 +1,429 @@
+package org.dazeend.harmonium.music;
+
+import java.awt.Image;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import org.dazeend.harmonium.FactoryPreferences;
+
+/**
+ * Remembers where the album art for each album comes from, so that finding it doesn't slow down building the
+ * music collection.
+ *
+ * Each album is looked up once, either by a small pool of background threads after the collection is built, or by
+ * the first screen that asks for its art. Looking an album up reads tags and lists directories, but never decodes an
+ * image. The results are saved in the cache folder and reused the next time Harmonium starts. An album is looked up
+ * again when the directory holding its tracks changes, when one of its tracks is re-read, or when its art can no
+ * longer be loaded from where the index says it is.
+ */
+class AlbumArtIndex {
+
+	/**
+	 * Where an album's art comes from.
+	 */
+	enum Kind {
+		EMBEDDED,	// an APIC frame in one of the album's tracks
+		FOLDER,		// an image file in the album's directory
+		DOWNLOADED,	// an image downloaded from last.fm into the album art cache
+		NONE		// no album art could be found
+	}
+
+	/**
+	 * The source of an album's art.
+	 */
+	static final class Entry {
+		final Kind		kind;
+		final String	path;	// The file holding the art. Empty for NONE.
+
+		Entry(Kind kind, String path) {
+			this.kind = kind;
+			this.path = path;
+		}
+	}
+
+	// "HRMA"
+	private static final int	MAGIC = 0x48524D41;
+	private static final int	VERSION = 1;
+
+	// Looking up art is mostly waiting on disk or the network, and shouldn't compete with the library scanner.
+	private static final int	THREAD_COUNT = 2;
+
+	private static final Entry	NO_ART = new Entry(Kind.NONE, "");
+
+	private final MusicCollection						collection;
+	private final File									indexFile;
+	private final ConcurrentMap<String, Entry>				entries = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentMap<String, FutureTask<Entry>>	pending = new ConcurrentHashMap<String, FutureTask<Entry>>();
+	private final ExecutorService						executor;
+	private volatile String								prefsKey = "";
+	private volatile boolean							dirty = false;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param collection	the collection whose albums are indexed
+	 * @param indexFile		the file the index is saved to
+	 */
+	AlbumArtIndex(MusicCollection collection, File indexFile) {
+		this.collection = collection;
+		this.indexFile = indexFile;
+		this.executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Harmonium album art " + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Gets the key under which the art for a track is indexed. Tracks from the same album share a key, while tracks
+	 * that don't belong to an album each have their own.
+	 */
+	static String albumKey(PlayableLocalTrack track) {
+		if(track.getAlbumArtistName().equals("") || track.getAlbumName().equals("")) {
+			return "\u0000" + track.getURI();
+		}
+		return HMusic.caseFoldKey(track.getAlbumArtistName()) + "\u0000" + HMusic.caseFoldKey(track.getAlbumName());
+	}
+
+	/**
+	 * Describes the preferences that affect where art is looked for. Entries found under other preferences are discarded.
+	 */
+	private static String prefsKey(FactoryPreferences prefs) {
+		return "" + prefs.preferJpgFileArt() + prefs.ignoreJpgFileArt() + prefs.ignoreEmbeddedArt() + prefs.includeHTTP();
+	}
+
+	/**
+	 * Reads the index saved by a previous run, if there is one.
+	 */
+	void load(FactoryPreferences prefs) {
+		this.prefsKey = prefsKey(prefs);
+		if(! this.indexFile.exists()) {
+			return;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile)));
+			try {
+				if(in.readInt() != MAGIC || in.readInt() != VERSION || ! in.readUTF().equals(this.prefsKey)) {
+					// Written by another version, or under different preferences. Start over.
+					return;
+				}
+				int count = in.readInt();
+				for(int i = 0; i < count; ++i) {
+					String key = in.readUTF();
+					Kind kind = Kind.values()[in.readByte()];
+					String path = in.readUTF();
+					this.entries.put(key, (kind == Kind.NONE) ? NO_ART : new Entry(kind, path));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			System.out.println("Could not read album art index: " + e.getMessage());
+			System.out.flush();
+			this.entries.clear();
+		}
+		catch(ArrayIndexOutOfBoundsException e) {
+			// Unknown kind. The file is damaged.
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Saves the index if it has changed since it was last saved.
+	 */
+	synchronized void save() {
+		if(! this.dirty) {
+			return;
+		}
+		this.dirty = false;
+
+		File tempFile = new File(this.indexFile.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				// Copy the entries first, so that the count matches what is written.
+				Map<String, Entry> snapshot = new HashMap<String, Entry>(this.entries);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(this.prefsKey);
+				out.writeInt(snapshot.size());
+				for(Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeByte(entry.getValue().kind.ordinal());
+					out.writeUTF(entry.getValue().path);
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			if(! tempFile.renameTo(this.indexFile)) {
+				// Some platforms won't rename over an existing file.
+				this.indexFile.delete();
+				tempFile.renameTo(this.indexFile);
+			}
+		}
+		catch(IOException e) {
+			tempFile.delete();
+			System.out.println("Could not write album art index: " + e.getMessage());
+			System.out.flush();
+		}
+	}
+
+	/**
+	 * Queues a track's album to be looked up in the background, unless it is already known.
+	 */
+	void prefetch(MP3File track) {
+		String key = albumKey(track);
+		if(this.entries.containsKey(key) || this.pending.containsKey(key)) {
+			return;
+		}
+
+		FutureTask<Entry> task = this.newTask(key, track);
+		if(this.pending.putIfAbsent(key, task) == null) {
+			this.executor.execute(task);
+		}
+	}
+
+	/**
+	 * Gets the source of a track's album art, looking it up on the calling thread if it isn't known yet.
+	 *
+	 * @param track	the track
+	 * @param prefs	the preferences that say where to look for art
+	 * @return		where the art is, never <code>null</code>
+	 */
+	Entry resolve(MP3File track, FactoryPreferences prefs) {
+		String newPrefsKey = prefsKey(prefs);
+		if(! newPrefsKey.equals(this.prefsKey)) {
+			// The preferences changed, so everything we know may be wrong.
+			this.prefsKey = newPrefsKey;
+			this.entries.clear();
+			this.dirty = true;
+		}
+
+		String key = albumKey(track);
+		Entry entry = this.entries.get(key);
+		if(entry != null) {
+			return entry;
+		}
+
+		FutureTask<Entry> task = this.pending.get(key);
+		if(task == null) {
+			FutureTask<Entry> newTask = this.newTask(key, track);
+			task = this.pending.putIfAbsent(key, newTask);
+			if(task == null) {
+				task = newTask;
+			}
+		}
+
+		// If the task is still waiting for a background thread, run it here. A task runs only once, so if a
+		// background thread has already started it, this just waits for the result.
+		task.run();
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e) {
+			e.getCause().printStackTrace();
+		}
+		return NO_ART;
+	}
+
+	/**
+	 * Forgets where a track's album art comes from, so that it is looked up again.
+	 */
+	void invalidate(PlayableLocalTrack track) {
+		if(this.entries.remove(albumKey(track)) != null) {
+			this.dirty = true;
+			
+			// Art that was scaled from the old source may be out of date too.
+			this.collection.getScaledArtCache().invalidate(track.getArtHashKey());
+		}
+	}
+
+	/**
+	 * Loads the art for a track from wherever the index says it is.
+	 *
+	 * @return	the art, or <code>null</code> if there is none
+	 */
+	Image loadImage(MP3File track, FactoryPreferences prefs) {
+		Entry entry = this.resolve(track, prefs);
+		Image img = null;
+
+		try {
+			switch(entry.kind) {
+			case EMBEDDED:
+				img = MP3File.readEmbeddedArt(new File(entry.path), prefs);
+				if(img == null) {
+					// Don't pick the same file again when the art is looked up next time.
+					for(MP3File candidate : this.collection.getArtCandidates(track)) {
+						if(candidate.getTrackFile().getPath().equals(entry.path)) {
+							candidate.clearEmbeddedArt();
+						}
+					}
+				}
+				break;
+			case FOLDER:
+				if(new File(entry.path).exists()) {
+					img = new ImageIcon(entry.path).getImage();
+					if(img.getWidth(null) < 1 || img.getHeight(null) < 1) {
+						img = null;
+					}
+				}
+				break;
+			case DOWNLOADED:
+				File file = new File(entry.path);
+				if(file.exists()) {
+					img = ImageIO.read(file);
+				}
+				break;
+			default:
+				return null;
+			}
+		}
+		catch(Throwable t) {
+			t.printStackTrace();
+		}
+
+		if(img == null) {
+			// The art has moved or can't be read any more. Look for it again next time.
+			this.invalidate(track);
+		}
+		return img;
+	}
+
+	private FutureTask<Entry> newTask(final String key, final MP3File track) {
+		return new FutureTask<Entry>(new Callable<Entry>() {
+			public Entry call() {
+				try {
+					Entry entry = find(collection.getArtCandidates(track), collection.getPreferences());
+					entries.put(key, entry);
+					dirty = true;
+					return entry;
+				}
+				finally {
+					pending.remove(key);
+					if(pending.isEmpty()) {
+						// Everything queued has been looked up, so save what we found.
+						executor.execute(new Runnable() {
+							public void run() {
+								save();
+							}
+						});
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Looks for album art in the same places, and in the same order, as Harmonium always has.
+	 *
+	 * @param candidates	the tracks of the album
+	 * @param prefs			the preferences that say where to look
+	 */
+	private static Entry find(List<MP3File> candidates, FactoryPreferences prefs) {
+		if(candidates.isEmpty()) {
+			return NO_ART;
+		}
+		MP3File first = candidates.get(0);
+
+		// If set to prefer file-based art, and not ignoring file-based art, look for that first.
+		if(prefs.preferJpgFileArt() && ! prefs.ignoreJpgFileArt()) {
+			Entry entry = findFolderArt(candidates);
+			if(entry != null) {
+				return entry;
+			}
+		}
+
+		// If we don't yet have an image and we're not ignoring embedded art, look there.
+		if(! prefs.ignoreEmbeddedArt()) {
+			for(MP3File track : candidates) {
+				// Tracks that were scanned already know. Tracks loaded from the cache have to be read.
+				Boolean embeddedArt = track.getEmbeddedArt();
+				if((embeddedArt != null) ? embeddedArt.booleanValue() : MP3File.hasEmbeddedArt(track.getTrackFile())) {
+					return new Entry(Kind.EMBEDDED, track.getTrackFile().getPath());
+				}
+			}
+		}
+
+		// If we still don't have an image, and we didn't already look at file-based art,
+		// and we're not ignoring file-based art, look for it now.
+		if(! prefs.preferJpgFileArt() && ! prefs.ignoreJpgFileArt()) {
+			Entry entry = findFolderArt(candidates);
+			if(entry != null) {
+				return entry;
+			}
+		}
+
+		// See if we have cached downloaded art
+		File cached = first.getCachedArtFile();
+		if(cached.exists()) {
+			return new Entry(Kind.DOWNLOADED, cached.getPath());
+		}
+
+		// If we still dont have it, give the online service a shot.
+		if(prefs.includeHTTP()) {
+			try {
+				if(first.downloadAlbumArt(prefs) && cached.exists()) {
+					return new Entry(Kind.DOWNLOADED, cached.getPath());
+				}
+			}
+			catch(Exception e) {
+				if(prefs.inDebugMode()) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		return NO_ART;
+	}
+
+	private static Entry findFolderArt(List<MP3File> candidates) {
+		File lastFolder = null;
+		for(MP3File track : candidates) {
+			File folder = track.getTrackFile().getParentFile();
+			if(folder == null || folder.equals(lastFolder)) {
+				continue;
+			}
+			lastFolder = folder;
+
+			File image = MP3File.findFolderArt(folder);
+			if(image != null) {
+				return new Entry(Kind.FOLDER, image.getPath());
+			}
+		}
+		return null;
+	}
+}
@@ -3,8 +3,9 @@ package org.dazeend.harmonium.music;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dazeend.harmonium.FactoryPreferences;
 import org.dazeend.harmonium.Harmonium;
@@ -12,6 +13,7 @@ import org.dazeend.harmonium.Harmonium;
 public class AlbumArtist extends BaseArtist {
 
 	private List<Album>		albumList = Collections.synchronizedList( new ArrayList<Album>() );
+	private Map<String, Album>	albumIndex = new HashMap<String, Album>();	// Maps case-folded album names to members of albumList.
 	
 	/**
 	 * Creates album artist and initialized key metadata.
@@ -37,13 +39,15 @@ public class AlbumArtist extends BaseArtist {
 			return false;
 		}
 		// Check to ensure that the newAlbum is not already a member of the album artist.
-		if(this.albumList.contains(newAlbum)) {
+		String albumKey = caseFoldKey(newAlbum.getAlbumName());
+		if(this.albumIndex.containsKey(albumKey)) {
 			return false;
 		}
 		
 		// If we got this far, then the newAlbum is not yet a member of the album artist, so add it.
 		if(this.albumList.add(newAlbum)) {
 			// The album was successfully added. Return TRUE.
+			this.albumIndex.put(albumKey, newAlbum);
 			return true;
 		}
 		else {
@@ -63,25 +67,23 @@ public class AlbumArtist extends BaseArtist {
 		if(! trackAlbum.equals("") ) {
 			
 			// track belongs to an album. See if the album is a member of this album artist.
-			Iterator<Album> albumIterator = this.albumList.iterator();
-			while( albumIterator.hasNext() ) {
-				Album album = albumIterator.next();
+			String albumKey = caseFoldKey(trackAlbum);
+			Album album = this.albumIndex.get(albumKey);
+			if(album != null) {
+				// The album is a member of this album artist, so delete the track from the album .
+				album.removeTrack(track);
 				
-				if( album.getAlbumName().compareToIgnoreCase(trackAlbum) == 0 ) {
-					// The album is a member of this album artist, so delete the track from the album .
-					album.removeTrack(track);
-					
-					// Check if the album is empty
-					if( album.getDiscList().isEmpty() && album.getTrackList().isEmpty() ) {
-						// It's empty, so delete the album via its iterator.
-						albumIterator.remove();
-					}				
+				// Check if the album is empty
+				if( album.getDiscList().isEmpty() && album.getTrackList().isEmpty() ) {
+					// It's empty, so delete the album.
+					this.albumIndex.remove(albumKey);
+					this.albumList.remove(album);
 				}
 			}
 		}
 		else {
 			// The track is not part of an album, so just delete it from the list
-			_trackList.remove(track);
+			this.removeDirectTrack(track);
 		}
 	}
 
@@ -103,19 +105,17 @@ public class AlbumArtist extends BaseArtist {
 		if(! newTrackAlbumName.equals("") ) {
 			
 			// newTrack belongs to an album. See if the album is already a member of this album artist.
-			for( Album album : this.albumList) {
-
-				if( album.getAlbumName().compareToIgnoreCase(newTrackAlbumName) == 0 ) {
-					// The album is already a member of this album artist, so add newTrack to the album.
-					if(album.addTrack(prefs, newTrack)) {
-						// The track was successfully added. Return TRUE.
-						return true;
-					}
-					else {
-						// There was an error in adding the track.
-						return false;
-					}	
+			Album album = this.albumIndex.get(caseFoldKey(newTrackAlbumName));
+			if(album != null) {
+				// The album is already a member of this album artist, so add newTrack to the album.
+				if(album.addTrack(prefs, newTrack)) {
+					// The track was successfully added. Return TRUE.
+					return true;
 				}
+				else {
+					// There was an error in adding the track.
+					return false;
+				}	
 			}
 			
 			// The album is not yet a member of this music collection.
@@ -144,13 +144,8 @@ public class AlbumArtist extends BaseArtist {
 		}
 		else {
 			// newTrack does not belong to an album.
-			// Check to ensure that the newTrack is not already a direct member of this album artist.
-			if(this._trackList.contains(newTrack)) {
-				return false;
-			}
-	
-			// If we got this far, then the track is not yet in this album artist as a direct member, so add it.
-			if(this._trackList.add(newTrack)) {
+			// Add the track as a direct member of this album artist, unless it is already one.
+			if(this.addDirectTrack(newTrack)) {
 				// The track was successfully added. Return TRUE.
 				return true;
 			}
@@ -169,7 +164,8 @@ public class AlbumArtist extends BaseArtist {
 		List<PlayableLocalTrack> outputList = new ArrayList<PlayableLocalTrack>();
  		
  		// Get tracks from each member album and add them to the output list
-		List<Album> sortedAlbumList = this.albumList;
+		// Sort a copy. Other threads may be reading or adding to the album list.
+		List<Album> sortedAlbumList = new ArrayList<Album>(this.albumList);
 		
 		if(app != null) {
 			Collections.sort(sortedAlbumList, app.getPreferences().getAlbumComparator());
@@ -193,6 +189,16 @@ public class AlbumArtist extends BaseArtist {
  		
 	}
 
+	/**
+	 * Finds an album by this artist.
+	 * 
+	 * @param albumName	the name of the album, in any case
+	 * @return			the album, or <code>null</code> if this artist has no album by that name
+	 */
+	synchronized Album getAlbum(String albumName) {
+		return this.albumIndex.get(caseFoldKey(albumName));
+	}
+
 	/**
 	 * Gets the list of albums by this artist.
 	 * 
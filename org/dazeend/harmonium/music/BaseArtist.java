@@ -1,6 +1,5 @@
 package org.dazeend.harmonium.music;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -10,9 +9,10 @@ import org.dazeend.harmonium.Harmonium;
 
 public abstract class BaseArtist extends HMusic implements PlayableCollection {
 
-	protected List<PlayableLocalTrack>	_trackList = Collections.synchronizedList( new ArrayList<PlayableLocalTrack>() );
+	protected List<PlayableLocalTrack>	_trackList = Collections.synchronizedList( new TrackList() );
 	protected String			_artistName = "";	// Set only through constructor. Setting later could break data structure.
 	protected String			_albumArtistNameTitleSortForm = "";
+	protected String			_artistNameSortKey = "";	// Title sort form, case-folded once so sorting doesn't have to.
 
 	protected BaseArtist(String artistName) {
 
@@ -28,6 +28,7 @@ public abstract class BaseArtist extends HMusic implements PlayableCollection {
 		else {
 			this._albumArtistNameTitleSortForm = this._artistName;
 		}
+		this._artistNameSortKey = caseFoldKey(this._albumArtistNameTitleSortForm);
 	}
 
 	/**
@@ -48,6 +49,25 @@ public abstract class BaseArtist extends HMusic implements PlayableCollection {
 		return _trackList;
 	}
 
+	/**
+	 * Adds a track directly to this artist's track list, if it is not already there.
+	 * 
+	 * @param track		the track to add
+	 * @return			<code>true</code> if the track was added, otherwise <code>false</code>
+	 */
+	protected synchronized boolean addDirectTrack(PlayableLocalTrack track) {
+		return this._trackList.add(track);
+	}
+
+	/**
+	 * Removes a track from this artist's direct track list.
+	 * 
+	 * @param track		the track to remove
+	 */
+	protected synchronized void removeDirectTrack(PlayableLocalTrack track) {
+		this._trackList.remove(track);
+	}
+
 	public abstract void removeTrack(PlayableLocalTrack track);
 	public abstract boolean addTrack(FactoryPreferences prefs, PlayableLocalTrack newTrack);
 	public abstract List<PlayableLocalTrack> getMembers(Harmonium app);
@@ -76,4 +96,15 @@ public abstract class BaseArtist extends HMusic implements PlayableCollection {
 		}
 		return this._albumArtistNameTitleSortForm;
 	}
+
+	/**
+	 * Gets the key this artist is sorted by. Comparing keys with <code>compareTo()</code> gives the same order as
+	 * comparing title sort forms with <code>compareToIgnoreCase()</code>.
+	 * 
+	 * @return the sort key
+	 */
+	public String getArtistNameSortKey()
+	{
+		return this._artistNameSortKey;
+	}
 }
@@ -18,14 +18,17 @@ public class CompareArtists implements Comparator<BaseArtist> {
 		}
 		
 		// Sort by name. If only one album has a name set, it should come before.
-		if( (! artist1.getAlbumArtistNameTitleSortForm().equals("") ) && artist2.getAlbumArtistNameTitleSortForm().equals("")) {
+		// The sort keys are already case-folded, so this is the same as compareToIgnoreCase() on the title sort forms.
+		String key1 = artist1.getArtistNameSortKey();
+		String key2 = artist2.getArtistNameSortKey();
+		if( (! key1.equals("") ) && key2.equals("")) {
 			return -1;
 		}
-		else if(artist1.getAlbumArtistNameTitleSortForm().equals("") && (! artist2.getAlbumArtistNameTitleSortForm().equals("") ) ) {
+		else if(key1.equals("") && (! key2.equals("") ) ) {
 			return 1;
 		}
 		else {
-			return artist1.getAlbumArtistNameTitleSortForm().compareToIgnoreCase(artist2.getAlbumArtistNameTitleSortForm());
+			return key1.compareTo(key2);
 		}
 		
 		
@@ -18,7 +18,7 @@ public class CompareDiscs implements Comparator<Disc> {
 		}
 		
 		// Sort by disc number
-		if(disc1.getReleaseYear() < disc2.getDiscNumber()) {
+		if(disc1.getDiscNumber() < disc2.getDiscNumber()) {
 			return -1;
 		}
 		else if(disc1.getDiscNumber() > disc2.getDiscNumber()) {
@@ -16,15 +16,18 @@ public class CompareTracksByName implements Comparator<PlayableTrack> {
 	public int compare(PlayableTrack track1, PlayableTrack track2) {
 		
 		// Sort first by track name. If only one track has a name set, it should come before.
-		if( (! track1.getTrackNameTitleSortForm().equals("") ) && track2.getTrackNameTitleSortForm().equals("") ) {
+		// The sort keys are already case-folded, so this is the same as compareToIgnoreCase() on the title sort forms.
+		String key1 = track1.getTrackNameSortKey();
+		String key2 = track2.getTrackNameSortKey();
+		if( (! key1.equals("") ) && key2.equals("") ) {
 			return -1;
 		}
-		else if(track1.getTrackNameTitleSortForm().equals("") && (! track2.getTrackNameTitleSortForm().equals("") ) ) {
+		else if(key1.equals("") && (! key2.equals("") ) ) {
 			return 1;
 		}
-		else if( (! track1.getTrackNameTitleSortForm().equals("") ) && (! track2.getTrackNameTitleSortForm().equals("") ) ) {
+		else if( (! key1.equals("") ) && (! key2.equals("") ) ) {
 			// both tracks have names/titles set, so compare them
-			return track1.getTrackNameTitleSortForm().compareToIgnoreCase(track2.getTrackNameTitleSortForm());
+			return key1.compareTo(key2);
 		}
 		
 		return 0;
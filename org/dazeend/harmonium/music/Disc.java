@@ -15,7 +15,7 @@ import org.dazeend.harmonium.Harmonium;
  */
 public class Disc implements PlayableCollection, AlbumArtListItem {
 
-	private List<PlayableLocalTrack>	trackList = Collections.synchronizedList( new ArrayList<PlayableLocalTrack>() );
+	private List<PlayableLocalTrack>	trackList = Collections.synchronizedList( new TrackList() );
 	private int 			discNumber;					// Set only through constructor. Setting later could break data structure.
 	private String			albumArtistName = "";		// Set only through constructor. Setting later could break data structure.
 	private String 			albumName = "";				// Set only through constructor. Setting later could break data structure.
@@ -46,6 +46,11 @@ public class Disc implements PlayableCollection, AlbumArtListItem {
 	public synchronized void removeTrack(PlayableLocalTrack track) {
 		// Remove the track from this disc.
 		this.trackList.remove(track);
+		
+		// Don't keep asking a removed track for album art.
+		if(this.artSource == track) {
+			this.artSource = this.trackList.isEmpty() ? null : this.trackList.get(0);
+		}
 	}
 	
 	/**
@@ -70,7 +75,8 @@ public class Disc implements PlayableCollection, AlbumArtListItem {
 		// If we got this far, then the track is not yet in the disc and it is eligible, so add it.
 		if(trackList.add(newTrack)) {
 			// The track was successfully added. Copy metadata (if needed) and return TRUE.
-			if(this.artSource == null && newTrack.hasAlbumArt(prefs)) {
+			// The first track stands in for the disc when asking for art.
+			if(this.artSource == null) {
 				artSource = newTrack;
 			}
 
@@ -5,4 +5,19 @@ import java.util.regex.Pattern;
 public abstract class HMusic
 {
 	protected static final Pattern titlePattern = Pattern.compile("(?i)^(the|a|an)\\s");
+
+	/**
+	 * Folds a name into the key used to index it. Two names get the same key exactly when
+	 * <code>compareToIgnoreCase()</code> says they are equal.
+	 * 
+	 * @param name	the name to fold
+	 * @return		the index key for the name
+	 */
+	static String caseFoldKey(String name) {
+		char[] chars = name.toCharArray();
+		for(int i = 0; i < chars.length; ++i) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
 }
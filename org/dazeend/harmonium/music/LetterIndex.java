@@ -0,0 +1,80 @@
+package org.dazeend.harmonium.music;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where each letter starts in a list of music sorted by name, so that a browse screen can skip through the list a
+ * letter at a time without looking at the items in between.
+ */
+public final class LetterIndex {
+
+	private final int	starts[];	// The position of the first item of each run of items with the same leading letter
+	private final int	size;		// The number of items in the list
+
+	/**
+	 * @param items	<code>PlayableCollection</code>s sorted by their title sort form
+	 */
+	public LetterIndex(List<?> items) {
+		int runs[] = new int[16];
+		int count = 0;
+		String letter = null;
+		for(int i = 0; i < items.size(); ++i) {
+			String itemLetter = leadingLetter(items.get(i));
+			if(! itemLetter.equals(letter)) {
+				if(count == runs.length) {
+					runs = Arrays.copyOf(runs, count * 2);
+				}
+				runs[count++] = i;
+				letter = itemLetter;
+			}
+		}
+		this.starts = Arrays.copyOf(runs, count);
+		this.size = items.size();
+	}
+
+	/**
+	 * Gets the position of the first item whose leading letter comes after the one at a position.
+	 *
+	 * @param index	a position in the list
+	 * @return		the position, or the size of the list if the item at <code>index</code> has the last letter
+	 */
+	public int nextLetter(int index) {
+		int run = this.run(index);
+		return (run + 1 < this.starts.length) ? this.starts[run + 1] : this.size;
+	}
+
+	/**
+	 * Gets the position of the first item whose leading letter comes just before the one at a position.
+	 *
+	 * @param index	a position in the list
+	 * @return		the position, or 0 if the item at <code>index</code> has the first letter
+	 */
+	public int previousLetter(int index) {
+		int run = this.run(index);
+		return (run > 0) ? this.starts[run - 1] : 0;
+	}
+
+	/**
+	 * Finds the run of items with the same leading letter that holds a position.
+	 */
+	private int run(int index) {
+		int run = Arrays.binarySearch(this.starts, index);
+		if(run < 0) {
+			// Not the start of a run, so it's in the run before the insertion point.
+			run = -run - 2;
+		}
+		return Math.max(run, 0);
+	}
+
+	/**
+	 * Gets the lower case first letter of an item's title sort form.
+	 */
+	private static String leadingLetter(Object item) {
+		String title = ((PlayableCollection)item).toStringTitleSortForm();
+		if(title.length() == 0) {
+			return "";
+		}
+		return title.substring(0, 1).toLowerCase();
+	}
+}
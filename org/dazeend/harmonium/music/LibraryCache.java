@@ -0,0 +1,500 @@
+package org.dazeend.harmonium.music;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary music collection cache.
+ *
+ * The file is laid out in five sections, all big-endian:
+ * <ul>
+ * <li>A fixed-size header holding the format version, the time the cache was written, and the offset of each section.</li>
+ * <li>A string table. Every distinct artist, album, track name and path is stored once as UTF-8, and is
+ * referred to everywhere else by its index.</li>
+ * <li>One fixed-width record per track, made up of string indexes and numbers. Each record includes the size
+ * and modification time of the file when it was read, so that a refresh can tell whether it has changed.</li>
+ * <li>The path and modification time of each directory under the music root, so that a refresh can skip
+ * directories that haven't changed.</li>
+ * <li>The paths of the M3U playlists found under the music root.</li>
+ * </ul>
+ *
+ * The reader reads the whole file into memory at once. It doesn't map the file, because Windows won't let a mapped
+ * file be replaced, and the cache is rewritten while Harmonium runs. Every offset and string index in the file is
+ * checked when it is opened, so a damaged cache is rejected then rather than failing part way through loading. Each
+ * string is decoded at most once, so tracks that share an artist or album also share the same <code>String</code>.
+ * Loading still creates every track at startup, because the browse screens and the search index need them all. What
+ * the cache saves is finding and parsing the files.
+ */
+class LibraryCache {
+
+	// "HRMC"
+	private static final int	MAGIC = 0x48524D43;
+
+	// Version 1.0 was the CSV format. Version 2 had no file or directory modification times. Version 3 had no ratings.
+	// Version 4 ended with a path index that nothing read.
+	static final int			VERSION = 5;
+
+	private static final int	HEADER_SIZE = 48;
+
+	// Offsets of the fields in a track record
+	private static final int	ALBUM_ARTIST = 0;
+	private static final int	ALBUM = 4;
+	private static final int	YEAR = 8;
+	private static final int	DISC = 12;
+	private static final int	TRACK = 16;
+	private static final int	TRACK_NAME = 20;
+	private static final int	ARTIST = 24;
+	private static final int	DURATION = 28;
+	private static final int	PATH = 36;
+	private static final int	CANONICAL_PATH = 40;
+	private static final int	FILE_SIZE = 44;
+	private static final int	LAST_MODIFIED = 52;
+	private static final int	RATING = 60;
+	private static final int	RECORD_SIZE = 64;
+
+	// The fields of a track record that are string indexes
+	private static final int[]	STRING_FIELDS = { ALBUM_ARTIST, ALBUM, TRACK_NAME, ARTIST, PATH, CANONICAL_PATH };
+
+	// Size of a directory entry: a string index and a modification time
+	private static final int	DIRECTORY_SIZE = 12;
+
+	private final ByteBuffer	buffer;
+	private final long			cacheDate;
+	private final int			trackCount;
+	private final int			stringCount;
+	private final int			stringOffsetsStart;
+	private final int			stringDataStart;
+	private final int			recordsStart;
+	private final int			directoryCount;
+	private final int			directoriesStart;
+	private final int			playlistCount;
+	private final int			playlistsStart;
+	private final String[]		strings;
+
+	/**
+	 * Checks the contents of a cache file.
+	 *
+	 * @param buffer	the contents of the cache file
+	 * @throws IOException	if the file is not a cache file of the current version, or is damaged
+	 */
+	private LibraryCache(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a Harmonium cache file");
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported Harmonium cache version: " + buffer.getInt(4));
+		}
+
+		this.cacheDate = buffer.getLong(8);
+		this.trackCount = buffer.getInt(16);
+		this.stringCount = buffer.getInt(20);
+		this.stringDataStart = buffer.getInt(24);
+		this.recordsStart = buffer.getInt(28);
+		this.directoryCount = buffer.getInt(32);
+		this.directoriesStart = buffer.getInt(36);
+		this.playlistCount = buffer.getInt(40);
+		this.playlistsStart = buffer.getInt(44);
+		this.stringOffsetsStart = HEADER_SIZE;
+
+		// Make sure the sections are where the header says they are before trusting any of it. The sums are done in
+		// longs so that huge counts in a damaged header can't wrap around to plausible offsets.
+		if( this.trackCount < 0 || this.stringCount < 0 || this.directoryCount < 0 || this.playlistCount < 0
+				|| this.stringDataStart != this.stringOffsetsStart + (this.stringCount + 1L) * 4
+				|| this.recordsStart < this.stringDataStart
+				|| this.directoriesStart != this.recordsStart + (long)this.trackCount * RECORD_SIZE
+				|| this.playlistsStart != this.directoriesStart + (long)this.directoryCount * DIRECTORY_SIZE
+				|| buffer.capacity() != this.playlistsStart + (long)this.playlistCount * 4 ) {
+			throw new IOException("Harmonium cache file is damaged");
+		}
+
+		// Check every string offset and every string index, so that reading a field can't fail later.
+		int dataLength = this.recordsStart - this.stringDataStart;
+		int previous = 0;
+		for(int id = 0; id <= this.stringCount; ++id) {
+			int offset = buffer.getInt(this.stringOffsetsStart + id * 4);
+			if(offset < previous || offset > dataLength || (id == 0 && offset != 0) || (id == this.stringCount && offset != dataLength)) {
+				throw new IOException("Harmonium cache file is damaged");
+			}
+			previous = offset;
+		}
+		for(int record = 0; record < this.trackCount; ++record) {
+			for(int field : STRING_FIELDS) {
+				this.checkString(buffer.getInt(this.recordsStart + record * RECORD_SIZE + field));
+			}
+		}
+		for(int directory = 0; directory < this.directoryCount; ++directory) {
+			this.checkString(buffer.getInt(this.directoriesStart + directory * DIRECTORY_SIZE));
+		}
+		for(int playlist = 0; playlist < this.playlistCount; ++playlist) {
+			this.checkString(buffer.getInt(this.playlistsStart + playlist * 4));
+		}
+
+		this.strings = new String[this.stringCount];
+	}
+
+	private void checkString(int id) throws IOException {
+		if(id < 0 || id >= this.stringCount) {
+			throw new IOException("Harmonium cache file is damaged");
+		}
+	}
+
+	/**
+	 * Opens a cache file for reading.
+	 *
+	 * @param file	the cache file
+	 * @return		the opened cache
+	 * @throws IOException	if the file cannot be read, or is not a cache file of the current version
+	 */
+	static LibraryCache open(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("Harmonium cache file is damaged");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer) < 0) {
+					throw new IOException("Harmonium cache file is truncated");
+				}
+			}
+			return new LibraryCache(buffer);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the time the cache was written
+	 */
+	long getCacheDate() {
+		return this.cacheDate;
+	}
+
+	/**
+	 * @return the number of tracks in the cache
+	 */
+	int getTrackCount() {
+		return this.trackCount;
+	}
+
+	String getAlbumArtistName(int record) {
+		return getString(record, ALBUM_ARTIST);
+	}
+
+	String getAlbumName(int record) {
+		return getString(record, ALBUM);
+	}
+
+	int getReleaseYear(int record) {
+		return this.buffer.getInt(recordStart(record) + YEAR);
+	}
+
+	int getDiscNumber(int record) {
+		return this.buffer.getInt(recordStart(record) + DISC);
+	}
+
+	int getTrackNumber(int record) {
+		return this.buffer.getInt(recordStart(record) + TRACK);
+	}
+
+	String getTrackName(int record) {
+		return getString(record, TRACK_NAME);
+	}
+
+	String getArtistName(int record) {
+		return getString(record, ARTIST);
+	}
+
+	long getDuration(int record) {
+		return this.buffer.getLong(recordStart(record) + DURATION);
+	}
+
+	/**
+	 * @return the path of the track relative to the music root
+	 */
+	String getPath(int record) {
+		return getString(record, PATH);
+	}
+
+	/**
+	 * @return the canonical path of the track at the time the cache was written
+	 */
+	String getCanonicalPath(int record) {
+		return getString(record, CANONICAL_PATH);
+	}
+
+	/**
+	 * @return the size of the file when the track was read
+	 */
+	long getFileSize(int record) {
+		return this.buffer.getLong(recordStart(record) + FILE_SIZE);
+	}
+
+	/**
+	 * @return the modification time of the file when the track was read, or 0 if unknown
+	 */
+	long getFileLastModified(int record) {
+		return this.buffer.getLong(recordStart(record) + LAST_MODIFIED);
+	}
+
+	/**
+	 * @return the rating of the track
+	 */
+	RatingLevel getRating(int record) {
+		int rating = this.buffer.getInt(recordStart(record) + RATING);
+		if(rating < 0 || rating >= RatingLevel.values().length) {
+			return RatingLevel.UNRATED;
+		}
+		return RatingLevel.values()[rating];
+	}
+
+	/**
+	 * @return the number of directories in the cache
+	 */
+	int getDirectoryCount() {
+		return this.directoryCount;
+	}
+
+	/**
+	 * @return the path of a directory relative to the music root
+	 */
+	String getDirectoryPath(int directory) {
+		return getString(this.buffer.getInt(directoryStart(directory)));
+	}
+
+	/**
+	 * @return the modification time of a directory when it was last listed, or 0 if it must be listed again
+	 */
+	long getDirectoryLastModified(int directory) {
+		return this.buffer.getLong(directoryStart(directory) + 4);
+	}
+
+	/**
+	 * @return the number of M3U playlists under the music root
+	 */
+	int getPlaylistCount() {
+		return this.playlistCount;
+	}
+
+	/**
+	 * @return the path of an M3U playlist relative to the music root
+	 */
+	String getPlaylistPath(int playlist) {
+		if(playlist < 0 || playlist >= this.playlistCount) {
+			throw new IndexOutOfBoundsException("playlist " + playlist);
+		}
+		return getString(this.buffer.getInt(this.playlistsStart + playlist * 4));
+	}
+
+	private int recordStart(int record) {
+		if(record < 0 || record >= this.trackCount) {
+			throw new IndexOutOfBoundsException("record " + record);
+		}
+		return this.recordsStart + record * RECORD_SIZE;
+	}
+
+	private int directoryStart(int directory) {
+		if(directory < 0 || directory >= this.directoryCount) {
+			throw new IndexOutOfBoundsException("directory " + directory);
+		}
+		return this.directoriesStart + directory * DIRECTORY_SIZE;
+	}
+
+	private String getString(int record, int field) {
+		return getString(this.buffer.getInt(recordStart(record) + field));
+	}
+
+	private String getString(int id) {
+		synchronized(this.strings) {
+			String s = this.strings[id];
+			if(s == null) {
+				int start = this.buffer.getInt(this.stringOffsetsStart + id * 4);
+				int end = this.buffer.getInt(this.stringOffsetsStart + (id + 1) * 4);
+				byte[] bytes = new byte[end - start];
+				ByteBuffer slice = this.buffer.duplicate();
+				slice.position(this.stringDataStart + start);
+				slice.get(bytes);
+				try {
+					s = new String(bytes, "UTF-8");
+				}
+				catch(UnsupportedEncodingException e) {
+					// Every JVM supports UTF-8.
+					throw new RuntimeException(e);
+				}
+				this.strings[id] = s;
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Writes a cache file.
+	 *
+	 * @param file		the file to write
+	 * @param cacheDate	the time to record as the time the cache was written
+	 * @param tracks		maps the canonical path of each track to the track
+	 * @param directories	maps the path of each directory under the music root to what is known about it
+	 * @throws IOException
+	 */
+	static void write(File file, long cacheDate, Map<String, ? extends PlayableLocalTrack> tracks, 
+			Map<String, MusicDirectory> directories) throws IOException {
+
+		// Build the string table and the track records
+		StringTable table = new StringTable();
+		int trackCount = tracks.size();
+		int[][] records = new int[trackCount][];
+		long[] durations = new long[trackCount];
+		long[] fileSizes = new long[trackCount];
+		long[] lastModifieds = new long[trackCount];
+		int[] ratings = new int[trackCount];
+
+		int record = 0;
+		for(Map.Entry<String, ? extends PlayableLocalTrack> entry : tracks.entrySet()) {
+			PlayableLocalTrack track = entry.getValue();
+			records[record] = new int[] {
+				table.add(track.getAlbumArtistName()),
+				table.add(track.getAlbumName()),
+				track.getReleaseYear(),
+				track.getDiscNumber(),
+				track.getTrackNumber(),
+				table.add(track.getTrackName()),
+				table.add(track.getArtistName()),
+				table.add(track.getURI()),
+				table.add(entry.getKey())
+			};
+			durations[record] = track.getDuration();
+			fileSizes[record] = track.getFileSize();
+			lastModifieds[record] = track.getFileLastModified();
+			ratings[record] = track.getRating().ordinal();
+			++record;
+		}
+
+		// Build the directory and playlist entries
+		int directoryCount = directories.size();
+		int[] directoryIds = new int[directoryCount];
+		long[] directoryTimes = new long[directoryCount];
+		List<Integer> playlistIds = new ArrayList<Integer>();
+		int directory = 0;
+		for(Map.Entry<String, MusicDirectory> entry : directories.entrySet()) {
+			directoryIds[directory] = table.add(entry.getKey());
+			directoryTimes[directory] = entry.getValue().lastModified;
+			for(String playlist : entry.getValue().playlists) {
+				playlistIds.add(table.add(entry.getKey() + playlist));
+			}
+			++directory;
+		}
+
+		int stringDataStart = HEADER_SIZE + (table.size() + 1) * 4;
+		int recordsStart = stringDataStart + table.getByteCount();
+		int directoriesStart = recordsStart + trackCount * RECORD_SIZE;
+		int playlistsStart = directoriesStart + directoryCount * DIRECTORY_SIZE;
+
+		FileOutputStream fout = new FileOutputStream(file);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout, 65536));
+		try {
+			// Header
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(cacheDate);
+			out.writeInt(trackCount);
+			out.writeInt(table.size());
+			out.writeInt(stringDataStart);
+			out.writeInt(recordsStart);
+			out.writeInt(directoryCount);
+			out.writeInt(directoriesStart);
+			out.writeInt(playlistIds.size());
+			out.writeInt(playlistsStart);
+
+			// String table
+			int offset = 0;
+			out.writeInt(offset);
+			for(int i = 0; i < table.size(); ++i) {
+				offset += table.getBytes(i).length;
+				out.writeInt(offset);
+			}
+			for(int i = 0; i < table.size(); ++i) {
+				out.write(table.getBytes(i));
+			}
+
+			// Track records
+			for(int i = 0; i < trackCount; ++i) {
+				int[] fields = records[i];
+				for(int f = 0; f < 7; ++f) {
+					out.writeInt(fields[f]);
+				}
+				out.writeLong(durations[i]);
+				out.writeInt(fields[7]);
+				out.writeInt(fields[8]);
+				out.writeLong(fileSizes[i]);
+				out.writeLong(lastModifieds[i]);
+				out.writeInt(ratings[i]);
+			}
+
+			// Directories
+			for(int i = 0; i < directoryCount; ++i) {
+				out.writeInt(directoryIds[i]);
+				out.writeLong(directoryTimes[i]);
+			}
+
+			// Playlists
+			for(int id : playlistIds) {
+				out.writeInt(id);
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Assigns an index to each distinct string written to the cache.
+	 */
+	private static class StringTable {
+		private final Map<String, Integer>	ids = new HashMap<String, Integer>();
+		private final List<byte[]>			bytes = new ArrayList<byte[]>();
+		private int							byteCount = 0;
+
+		int add(String s) throws UnsupportedEncodingException {
+			if(s == null) {
+				s = "";
+			}
+			Integer id = this.ids.get(s);
+			if(id == null) {
+				byte[] encoded = s.getBytes("UTF-8");
+				id = this.bytes.size();
+				this.ids.put(s, id);
+				this.bytes.add(encoded);
+				this.byteCount += encoded.length;
+			}
+			return id;
+		}
+
+		byte[] getBytes(int id) {
+			return this.bytes.get(id);
+		}
+
+		int size() {
+			return this.bytes.size();
+		}
+
+		int getByteCount() {
+			return this.byteCount;
+		}
+	}
+}
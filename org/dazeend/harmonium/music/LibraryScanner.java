@@ -0,0 +1,406 @@
+package org.dazeend.harmonium.music;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.blinkenlights.jid3.ID3Exception;
+
+/**
+ * Searches the music root for music files using a pipeline of threads.
+ *
+ * One thread walks the directory tree and queues the files that need to be read. A pool of parser
+ * threads reads tags and durations from those files. The thread that calls <code>scan()</code> merges
+ * the parsed tracks into the music collection one at a time, so the handler never needs to worry about
+ * concurrent updates. Both queues are bounded: when parsing falls behind, the walker waits, and when
+ * merging falls behind, the parsers wait.
+ *
+ * Before listing a directory, the walker asks the handler whether the directory has changed. Directories the
+ * handler already knows about are not listed again, and neither are their music files checked.
+ */
+class LibraryScanner {
+
+	/**
+	 * Receives the results of a scan.
+	 *
+	 * <code>unchangedDirectory()</code> and <code>needsScan()</code> are called from the directory walker thread.
+	 * All other methods are called from the thread that called <code>scan()</code>.
+	 */
+	interface ScanHandler {
+
+		/**
+		 * Decides whether a directory found during the walk needs to be listed.
+		 *
+		 * @param path			the path of the directory under the root, ending with a slash unless it is the root
+		 * @param lastModified	the current modification time of the directory
+		 * @return				what is known about the contents of the directory if it hasn't changed since it
+		 * 						was last listed, otherwise <code>null</code>
+		 */
+		public DirectoryContents unchangedDirectory(String path, long lastModified);
+
+		/**
+		 * Called when a directory has been listed.
+		 *
+		 * @param path			the path of the directory under the root, ending with a slash unless it is the root
+		 * @param lastModified	the modification time of the directory, read before it was listed
+		 * @param names			the names of everything in the directory
+		 */
+		public void directoryListed(String path, long lastModified, String[] names);
+
+		/**
+		 * Decides whether a music file found during the walk should be read.
+		 *
+		 * @param file			the music file
+		 * @param canonicalPath	the canonical path of the file
+		 * @return				<code>true</code> if the file should be parsed, otherwise <code>false</code>
+		 */
+		public boolean needsScan(File file, String canonicalPath);
+
+		/**
+		 * Called when a music file has been read successfully.
+		 */
+		public void trackScanned(String canonicalPath, MP3File track);
+
+		/**
+		 * Called when a music file could not be read.
+		 */
+		public void trackFailed(String canonicalPath, File file);
+
+		/**
+		 * Called when an M3U playlist is found under the root.
+		 */
+		public void playlistFound(File file);
+	}
+
+	/**
+	 * The parts of a directory that the walker needs in order to skip listing it.
+	 */
+	static class DirectoryContents {
+		final Collection<String>	subdirectories;
+		final Collection<String>	playlists;
+
+		/**
+		 * @param subdirectories	the names of the directories in the directory
+		 * @param playlists			the names of the M3U playlists in the directory
+		 */
+		DirectoryContents(Collection<String> subdirectories, Collection<String> playlists) {
+			this.subdirectories = subdirectories;
+			this.playlists = playlists;
+		}
+	}
+
+	// Print a progress message at most this often while merging
+	private static final long PROGRESS_INTERVAL_MS = 10000;
+
+	private final String		root;
+	private final int			parserCount;
+	private final int			queueSize;
+	private final boolean		debug;
+
+	// Counters used to report progress. Only touched from the merging thread.
+	private int					tracksMerged = 0;
+	private int					tracksFailed = 0;
+
+	// Updated by the walker thread as it queues files
+	private volatile int		filesFound = 0;
+	private volatile boolean	walkFinished = false;
+
+	/**
+	 * Creates a scanner for a directory tree.
+	 *
+	 * @param root			the directory to search
+	 * @param parserCount	the number of threads used to read tags
+	 * @param queueSize		the maximum number of files waiting to be parsed, and of parsed tracks waiting to be merged
+	 * @param debug			<code>true</code> to print a line for every file read
+	 */
+	LibraryScanner(String root, int parserCount, int queueSize, boolean debug) {
+		this.root = root;
+		this.parserCount = Math.max(1, parserCount);
+		this.queueSize = Math.max(1, queueSize);
+		this.debug = debug;
+	}
+
+	/**
+	 * Scans the directory tree under <code>path</code> and hands the results to <code>handler</code>.
+	 * Returns once every file found has been merged.
+	 *
+	 * @param path		the path under the root to scan. Use the empty string to scan the whole tree.
+	 * @param handler	receives the results of the scan
+	 */
+	void scan(final String path, final ScanHandler handler) {
+
+		final BlockingQueue<ScanItem> workQueue = new ArrayBlockingQueue<ScanItem>(this.queueSize);
+		final BlockingQueue<ScanItem> resultQueue = new ArrayBlockingQueue<ScanItem>(this.queueSize);
+
+		// Stage 1: walk the directory tree
+		Thread walker = new Thread("Harmonium scanner: walker") {
+			@Override
+			public void run() {
+				boolean cancelled = false;
+				try {
+					walk(path, handler, workQueue, resultQueue);
+				}
+				catch(InterruptedException e) {
+					// The scan was cancelled.
+					cancelled = true;
+				}
+				catch(RuntimeException e) {
+					e.printStackTrace();
+				}
+				finally {
+					// Tell each parser that there is no more work, even if the walk failed, so that the scan ends.
+					if(! cancelled) {
+						try {
+							for(int i = 0; i < parserCount; ++i) {
+								workQueue.put(ScanItem.END);
+							}
+						}
+						catch(InterruptedException e) {
+						}
+					}
+				}
+			}
+		};
+
+		// Stage 2: parse tags and durations
+		List<Thread> parsers = new ArrayList<Thread>(this.parserCount);
+		for(int i = 0; i < this.parserCount; ++i) {
+			parsers.add(new Thread("Harmonium scanner: parser " + (i + 1)) {
+				@Override
+				public void run() {
+					boolean cancelled = false;
+					try {
+						ScanItem item;
+						while( (item = workQueue.take()) != ScanItem.END ) {
+							resultQueue.put(parse(item));
+						}
+					}
+					catch(InterruptedException e) {
+						// The scan was cancelled.
+						cancelled = true;
+					}
+					finally {
+						// The merge stage waits for every parser to finish, so it must hear from this one even if
+						// the thread is dying.
+						if(! cancelled) {
+							try {
+								resultQueue.put(ScanItem.END);
+							}
+							catch(InterruptedException e) {
+							}
+						}
+					}
+				}
+			});
+		}
+
+		List<Thread> threads = new ArrayList<Thread>(parsers);
+		threads.add(walker);
+		for(Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		// Stage 3: merge results into the collection on this thread
+		long startTime = System.currentTimeMillis();
+		long lastProgressTime = startTime;
+		int parsersRunning = this.parserCount;
+		try {
+			while(parsersRunning > 0) {
+				ScanItem item = resultQueue.take();
+
+				if(item == ScanItem.END) {
+					--parsersRunning;
+				}
+				else if(item.names != null) {
+					handler.directoryListed(item.path, item.lastModified, item.names);
+				}
+				else if(item.isPlaylist) {
+					handler.playlistFound(item.file);
+				}
+				else if(item.track != null) {
+					handler.trackScanned(item.canonicalPath, item.track);
+					++this.tracksMerged;
+				}
+				else {
+					handler.trackFailed(item.canonicalPath, item.file);
+					++this.tracksFailed;
+				}
+
+				long now = System.currentTimeMillis();
+				if(now - lastProgressTime >= PROGRESS_INTERVAL_MS) {
+					lastProgressTime = now;
+					this.printProgress();
+				}
+			}
+		}
+		catch(InterruptedException e) {
+			// Stop the pipeline and preserve the interrupt for our caller.
+			for(Thread thread : threads) {
+				thread.interrupt();
+			}
+			Thread.currentThread().interrupt();
+		}
+
+		if(this.tracksMerged > 0 || this.tracksFailed > 0) {
+			System.out.printf("Read %1$d music files in %2$d seconds (%3$d unreadable).\r\n",
+					this.tracksMerged + this.tracksFailed, (System.currentTimeMillis() - startTime) / 1000, this.tracksFailed);
+			System.out.flush();
+		}
+	}
+
+	/**
+	 * Prints a status message describing how far the scan has progressed.
+	 */
+	private void printProgress() {
+		if(this.walkFinished) {
+			System.out.printf("Read %1$d of %2$d music files...\r\n", this.tracksMerged + this.tracksFailed, this.filesFound);
+		}
+		else {
+			System.out.printf("Read %1$d of %2$d music files found so far. Still searching...\r\n", this.tracksMerged + this.tracksFailed, this.filesFound);
+		}
+		System.out.flush();
+	}
+
+	/**
+	 * Recursively searches a directory for music files. Runs on the walker thread.
+	 */
+	private void walk(String path, ScanHandler handler, BlockingQueue<ScanItem> workQueue, BlockingQueue<ScanItem> resultQueue)
+		throws InterruptedException {
+
+		List<String> pending = new ArrayList<String>();
+		pending.add(path);
+
+		while(! pending.isEmpty()) {
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			String currentPath = pending.remove(pending.size() - 1);
+			File file = new File(this.root, currentPath);
+
+			if (file.isDirectory()) {
+				if (currentPath.length() > 0 && !currentPath.endsWith("/")) {
+					currentPath += "/";
+				}
+				long lastModified = file.lastModified();
+				DirectoryContents known = handler.unchangedDirectory(currentPath, lastModified);
+				if(known != null) {
+					// Nothing has been added to or removed from the directory, so only its subdirectories need
+					// to be visited. Its playlists are passed on again so that they are re-read.
+					for(String name : known.subdirectories) {
+						pending.add(currentPath + name);
+					}
+					for(String name : known.playlists) {
+						resultQueue.put(new ScanItem(currentPath + name, new File(this.root, currentPath + name), null, true));
+					}
+					continue;
+				}
+
+				String list[] = file.list();
+				if(list != null) {
+					// Push in reverse so that the tree is walked in directory order
+					for (int i = list.length - 1; i >= 0; i--) {
+						pending.add(currentPath + list[i]);
+					}
+					resultQueue.put(new ScanItem(currentPath, lastModified, list));
+				}
+			}
+			else if( currentPath.toLowerCase().endsWith(".mp3") ) {
+				String canonicalPath;
+				try {
+					canonicalPath = file.getCanonicalPath();
+				}
+				catch(IOException e) {
+					continue;
+				}
+
+				if(handler.needsScan(file, canonicalPath)) {
+					workQueue.put(new ScanItem(currentPath, file, canonicalPath, false));
+					++this.filesFound;
+				}
+			}
+			else if( currentPath.toLowerCase().endsWith(".m3u") ) {
+				// M3U playlists may refer to tracks that haven't been found yet, so they go straight to the
+				// merge stage, which holds them until every track is in.
+				resultQueue.put(new ScanItem(currentPath, file, null, true));
+			}
+		}
+
+		this.walkFinished = true;
+	}
+
+	/**
+	 * Reads tags and duration from a music file. Runs on a parser thread.
+	 */
+	private ScanItem parse(ScanItem item) {
+		if(this.debug) {
+			System.out.println("DEBUG: reading file " + item.path);
+			System.out.flush();
+		}
+
+		try {
+			item.track = new MP3File(item.path, item.file);
+		}
+		catch(ID3Exception e) {
+			// There was an error in reading the tags in the file.
+		}
+		catch(RuntimeException e) {
+			// A badly damaged file shouldn't take down the parser thread.
+			if(this.debug) {
+				e.printStackTrace();
+			}
+		}
+		catch(StackOverflowError e) {
+			// jid3 can recurse without end on some damaged tags. The file is counted as unreadable.
+			System.out.println("Could not read " + item.path + ": " + e);
+			System.out.flush();
+		}
+		catch(OutOfMemoryError e) {
+			// A damaged frame size can make jid3 try to allocate a huge buffer. The buffer was never filled, so
+			// the memory is free again once we're here.
+			System.out.println("Could not read " + item.path + ": " + e);
+			System.out.flush();
+		}
+		return item;
+	}
+
+	/**
+	 * One unit of work moving through the pipeline.
+	 */
+	private static class ScanItem {
+
+		// Marks the end of a queue
+		static final ScanItem END = new ScanItem(null, null, null, false);
+
+		final String	path;
+		final File		file;
+		final String	canonicalPath;
+		final boolean	isPlaylist;
+		final long		lastModified;
+		final String[]	names;		// The contents of a directory that has been listed. null for files.
+		MP3File			track;
+
+		ScanItem(String path, File file, String canonicalPath, boolean isPlaylist) {
+			this.path = path;
+			this.file = file;
+			this.canonicalPath = canonicalPath;
+			this.isPlaylist = isPlaylist;
+			this.lastModified = 0;
+			this.names = null;
+		}
+
+		ScanItem(String path, long lastModified, String[] names) {
+			this.path = path;
+			this.file = null;
+			this.canonicalPath = null;
+			this.isPlaylist = false;
+			this.lastModified = lastModified;
+			this.names = names;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package org.dazeend.harmonium.music;
+
+/**
+ * Keeps the music collection up to date while Harmonium is running, so that new music shows up without a full refresh.
+ *
+ * The watcher polls the music root and the playlist root. Each poll only checks the modification times of the
+ * directories the collection already knows about, so it is cheap even for large collections. When something has
+ * changed, the watcher waits until it stops changing before updating the collection, so that files which are still
+ * being copied aren't read half-written. The cache file is written at most once a minute.
+ *
+ * The first update is made as soon as the watcher starts. A collection loaded from the cache has no playlists
+ * until then.
+ */
+class LibraryWatcher implements Runnable {
+
+	// How long a change must stay the same before it is applied
+	private static final long	SETTLE_DELAY_MS = 5000;
+
+	// Write the cache at most this often
+	private static final long	CACHE_FLUSH_INTERVAL_MS = 60000;
+
+	private final MusicCollection	collection;
+	private final long				interval;
+	private final boolean			debug;
+
+	/**
+	 * Creates a watcher for a music collection.
+	 *
+	 * @param collection	the music collection to keep up to date
+	 * @param interval		the time between polls, in milliseconds
+	 * @param debug			<code>true</code> to print a line whenever a change is found
+	 */
+	LibraryWatcher(MusicCollection collection, long interval, boolean debug) {
+		this.collection = collection;
+		this.interval = interval;
+		this.debug = debug;
+	}
+
+	/**
+	 * Starts watching on a background thread.
+	 */
+	void start() {
+		Thread thread = new Thread(this, "Harmonium library watcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	public void run() {
+		long playlists = 0;
+		long lastFlush = System.currentTimeMillis();
+		boolean dirty = false;
+		boolean needsRefresh = false;
+		boolean first = true;
+
+		while(true) {
+			try {
+				if(! first) {
+					Thread.sleep(this.interval);
+				}
+
+				if(needsRefresh) {
+					// The last poll failed part way through, so we can't be sure what has been applied. Fall back on a refresh.
+					needsRefresh = false;
+					playlists = this.collection.probePlaylists();
+					this.collection.refresh(null);
+					dirty = false;
+					lastFlush = System.currentTimeMillis();
+					continue;
+				}
+
+				long musicSignature = this.collection.probeMusic();
+				long playlistSignature = this.collection.probePlaylists();
+				if(first || musicSignature != 0 || playlistSignature != playlists) {
+					// Something changed. Wait until it stops changing.
+					while(! first) {
+						Thread.sleep(SETTLE_DELAY_MS);
+						long settledMusic = this.collection.probeMusic();
+						long settledPlaylists = this.collection.probePlaylists();
+						if(settledMusic == musicSignature && settledPlaylists == playlistSignature) {
+							break;
+						}
+						musicSignature = settledMusic;
+						playlistSignature = settledPlaylists;
+					}
+
+					if(this.debug && ! first) {
+						System.out.println("DEBUG: Changes found under music or playlist root. Updating music collection.");
+						System.out.flush();
+					}
+
+					if(this.collection.applyChanges()) {
+						playlists = playlistSignature;
+						dirty = true;
+					}
+				}
+				first = false;
+
+				long now = System.currentTimeMillis();
+				if(dirty && now - lastFlush >= CACHE_FLUSH_INTERVAL_MS) {
+					this.collection.writeCache();
+					dirty = false;
+					lastFlush = now;
+				}
+			}
+			catch(InterruptedException e) {
+				return;
+			}
+			catch(RuntimeException e) {
+				e.printStackTrace();
+				first = false;
+				needsRefresh = true;
+			}
+		}
+	}
+}
@@ -6,12 +6,10 @@ import java.awt.MediaTracker;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,8 +25,6 @@ import org.dazeend.harmonium.FactoryPreferences;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.LastFm;
 
-import com.tivo.hme.sdk.util.Mp3Helper;
-
 
 
 /**
@@ -36,6 +32,13 @@ import com.tivo.hme.sdk.util.Mp3Helper;
  */
 public class MP3File extends HMusic implements PlayableLocalTrack {
 
+	// The ID3v2.3 text frames read when scanning a track
+	private static final String[] SCANNED_FRAME_IDS = { "TALB", "TIT2", "TRCK", "TPOS", "TYER", "TPE1", "TPE2" };
+	
+	// Identifies Harmonium's popularimeter (POPM) frame, which holds the rating from 1 to 5
+	// TODO DEFERRED: get email address from Preferences object
+	static final String RATING_EMAIL = "harmonium@DazeEnd.org";
+
 	private String 			albumArtistName = "";	
 	private String			albumName = "";			
 	private String			artistName = "";
@@ -43,14 +46,16 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 	private File			trackFile;
 	private String			trackPath = "";
 	private String			trackNameTitleSortForm = "";
+	private String			trackNameSortKey = "";	// trackNameTitleSortForm, case-folded once so sorting doesn't have to
 	private int				trackNumber;
 	private int				releaseYear;
 	private int				discNumber;			
-	private RatingLevel		rating = RatingLevel.UNRATED;
+	private volatile RatingLevel	rating = RatingLevel.UNRATED;
 	private long			duration = -1;
+	private volatile long	fileSize = 0;			// size of the file when its tags were read
+	private volatile long	fileLastModified = 0;	// modification time of the file when its tags were read. 0 if unknown.
+	private Boolean			embeddedArt = null;		// whether the file has art TiVo can show. null if unknown.
 	
-	private Boolean			albumImageFetched = false;
-	private Boolean			hasAlbumArt = false;
 
 
 	/**
@@ -64,36 +69,48 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 		this.trackFile = file;
 		this.trackPath = path;
 		
-		// Create an org.blinkenlights.jid3.MP3File to read tag data from
-		org.blinkenlights.jid3.MP3File mp3File = new org.blinkenlights.jid3.MP3File(file);
+		// Read the tags and duration, opening the file once.
+		TrackProbe probe = TrackProbe.read(file, SCANNED_FRAME_IDS, true);
+		this.fileSize = probe.getFileSize();
+		this.fileLastModified = probe.getFileLastModified();
+		this.embeddedArt = Boolean.valueOf(probe.hasEmbeddedArt());
+		this.duration = probe.getDuration();
 		
-		// Get any ID3v2.3 tag that exists in the mp3 file and load its data
-		ID3V2_3_0Tag v23Tag = (ID3V2_3_0Tag) mp3File.getID3V2Tag();
-		if(v23Tag != null) {
+		// Get the text frames we use from any ID3v2.3 tag that exists in the mp3 file. Only the frames we ask for are
+		// read; everything else in the tag, like embedded pictures, is skipped over.
+		Map<String, String> v23Frames = probe.getTextFrames();
+		if(v23Frames != null) {
 
 			// An ID3v2.3 tag exists, so pull text fields from tags
-			if( (v23Tag.getTALBTextInformationFrame() != null) && (v23Tag.getTALBTextInformationFrame().getAlbum() != null ) ){
-				this.albumName = removeDiscLabel(v23Tag.getTALBTextInformationFrame().getAlbum().trim());
+			if(v23Frames.containsKey("TALB")) {
+				this.albumName = removeDiscLabel(v23Frames.get("TALB").trim());
 			}
 			
-			if( (v23Tag.getTIT2TextInformationFrame() != null) && (v23Tag.getTIT2TextInformationFrame().getTitle() != null ) ) {
-				this.trackName = v23Tag.getTIT2TextInformationFrame().getTitle().trim();
+			if(v23Frames.containsKey("TIT2")) {
+				this.trackName = v23Frames.get("TIT2").trim();
 			}
 			
-			if( v23Tag.getTRCKTextInformationFrame() != null ) {
-				this.trackNumber = v23Tag.getTRCKTextInformationFrame().getTrackNumber();
+			int[] trackPart = parsePartNumber(v23Frames.get("TRCK"));
+			if(trackPart != null) {
+				this.trackNumber = trackPart[0];
 			}
 			
-			if( (v23Tag.getTPOSTextInformationFrame() != null) ) {
+			int[] discPart = parsePartNumber(v23Frames.get("TPOS"));
+			if(discPart != null) {
 				
 				// Do not set the tag if there is only 1 totalPart
-				if(v23Tag.getTPOSTextInformationFrame().getTotalParts() != 1) {
-					this.discNumber = v23Tag.getTPOSTextInformationFrame().getPartNumber();
+				if(discPart[1] != 1) {
+					this.discNumber = discPart[0];
 				}
 			}
 			
-			if(v23Tag.getTYERTextInformationFrame() != null) {
-				this.releaseYear = v23Tag.getTYERTextInformationFrame().getYear();
+			if(v23Frames.containsKey("TYER")) {
+				try {
+					this.releaseYear = Integer.parseInt(v23Frames.get("TYER"));
+				}
+				catch(NumberFormatException e) {
+					// If we get a bad number from the tag, just skip it.
+				}
 			}
 			
 			// Create title formatted string for track. 
@@ -106,11 +123,12 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 				else {
 					this.trackNameTitleSortForm = this.trackName;
 				}
+				this.trackNameSortKey = caseFoldKey(this.trackNameTitleSortForm);
 			}
 			
-			// Artists are returned as an array of artists. Concatenate them into one string, if the frame exists.
-			if(v23Tag.getTPE1TextInformationFrame() != null) {
-				String[] tempArtistNameArray = v23Tag.getTPE1TextInformationFrame().getLeadPerformers();
+			// Artists are stored separated by slashes. Trim each of them and put them back together, if the frame exists.
+			if(v23Frames.containsKey("TPE1")) {
+				String[] tempArtistNameArray = v23Frames.get("TPE1").split("/");
 				if(tempArtistNameArray.length > 0) {
 					StringBuilder tempArtistNameBuilder = new StringBuilder(tempArtistNameArray[0].trim());
 					for(int i = 1; i < tempArtistNameArray.length; ++i) {
@@ -122,64 +140,44 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 			
 			// AlbumArtist is a non-standard ID3 tag, and TPE2 isn't really intended for it. So if AlbumArtist is
 			// blank, copy the track artist into the album artist.
-			if( (v23Tag.getTPE2TextInformationFrame() != null) && ( ! v23Tag.getTPE2TextInformationFrame().getBandOrchestraAccompaniment().trim().equals("") ) ) {
-				this.albumArtistName = v23Tag.getTPE2TextInformationFrame().getBandOrchestraAccompaniment().trim();
+			if( v23Frames.containsKey("TPE2") && ( ! v23Frames.get("TPE2").trim().equals("") ) ) {
+				this.albumArtistName = v23Frames.get("TPE2").trim();
 			}
 			if(this.albumArtistName.equals("")) {
 				this.albumArtistName = this.artistName;
 			}
 			
-/*
-			// Get any popularimeter (POPM) frames in the tag
-			POPMID3V2Frame[] POPMFrames = v23Tag.getPOPMFrames();
+			// Get the rating from Harmonium's own popularimeter (POPM) frame, if the tag has one.
+			switch(probe.getPopularity()) {
 			
-			// Iterate through the POPM frams to see if any of them belong to us.
-			for(POPMID3V2Frame frame : POPMFrames) {
+			case 1:
+				this.rating = RatingLevel.LEVEL_1;
+				break;
 				
-				// Get email address of user
-				// TODO DEFERRED: implement for ratings: get email address from Preferences object
-				String myEmail = "harmonium@DazeEnd.org";
+			case 2:
+				this.rating = RatingLevel.LEVEL_2;
+				break;
 				
-				// Check if the frame belongs to us.
-				if( myEmail.equals( frame.getEmailToUser() ) ) {
-						
-					// This is our tag, so get the rating and save it
-					switch(frame.getPopularity()) {
-					
-					case 1:
-						this.rating = RatingLevel.LEVEL_1;
-						break;
-						
-					case 2:
-						this.rating = RatingLevel.LEVEL_2;
-						break;
-						
-					case 3:
-						this.rating = RatingLevel.LEVEL_3;
-						break;
-						
-					case 4:
-						this.rating = RatingLevel.LEVEL_4;
-						break;
-						
-					case 5:
-						this.rating = RatingLevel.LEVEL_5;
-						break;
-						
-					default:
-						this.rating = RatingLevel.UNRATED;
-					}
-					
-					// We've already found our rating, so stop looking by dropping out of the for-loop
-					break;
-				}
+			case 3:
+				this.rating = RatingLevel.LEVEL_3;
+				break;
+				
+			case 4:
+				this.rating = RatingLevel.LEVEL_4;
+				break;
+				
+			case 5:
+				this.rating = RatingLevel.LEVEL_5;
+				break;
+				
+			default:
+				this.rating = RatingLevel.UNRATED;
 			}
-			*/
 		}
 	
 		// We've grabbed all the ID3v2.3 data. Now fill in any blanks with data from ID3v1.x tags.
 		// Note that ID3v1.x tags are much more limited than v2.3, so we won't be able to get all the data.
-		ID3V1Tag v1Tag = mp3File.getID3V1Tag();
+		ID3V1Tag v1Tag = probe.getV1Tag();
 		
 		if( (this.artistName.equals("")) && (v1Tag != null) && (v1Tag.getArtist() != null ) ) {
 			this.artistName = v1Tag.getArtist().trim();
@@ -215,22 +213,31 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 				// If there's a problem with the cast, just skip this field.
 			}
 		}
+	}
+	
+	/**
+	 * Parses the text of a TRCK or TPOS frame, which holds a number optionally followed by a slash and a total.
+	 * 
+	 * @param text	the text of the frame, or <code>null</code> if the tag doesn't have the frame
+	 * @return		the number and the total (-1 if no total is given), or <code>null</code> if there is no valid frame
+	 */
+	private static int[] parsePartNumber(String text) {
+		if(text == null) {
+			return null;
+		}
 		
-		// Find the length of this track in milliseconds
 		try {
-			InputStream in = new FileInputStream(file);
-	        try {
-	            Mp3Helper mp3Helper = new Mp3Helper(in, file.length());
-	            this.duration = mp3Helper.getMp3Duration();
-	        } finally {
-	        	try {
-	        		in.close();
-	        	}
-	        	catch(IOException e) {
-	        	}
-	        }
+			if(text.indexOf('/') == -1) {
+				return new int[] { Integer.parseInt(text), -1 };
+			}
+			else {
+				String[] parts = text.split("/", 2);
+				return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+			}
 		}
-		catch(FileNotFoundException e) {
+		catch(NumberFormatException e) {
+			// A corrupt frame is ignored, the same as when reading the whole tag.
+			return null;
 		}
 	}
 	
@@ -291,6 +298,7 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 			else {
 				this.trackNameTitleSortForm = this.trackName;
 			}
+			this.trackNameSortKey = caseFoldKey(this.trackNameTitleSortForm);
 		}
 		
 	}
@@ -302,27 +310,96 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 		return this.duration;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.dazeend.harmonium.music.PlayableLocalTrack#getFileSize()
+	 */
+	public long getFileSize() {
+		return this.fileSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.dazeend.harmonium.music.PlayableLocalTrack#getFileLastModified()
+	 */
+	public long getFileLastModified() {
+		return this.fileLastModified;
+	}
+
+	/**
+	 * Records the size and modification time of the file as it was when the track information was read.
+	 * Used for tracks loaded from the cache.
+	 * 
+	 * @param size			the size of the file in bytes
+	 * @param lastModified	the modification time of the file, or 0 if unknown
+	 */
+	void setFileFingerprint(long size, long lastModified) {
+		this.fileSize = size;
+		this.fileLastModified = lastModified;
+	}
+
 	/**
 	 * Checks existence of album art for this object.
 	 */
 	//@Override
-	public boolean hasAlbumArt(FactoryPreferences prefs) {
+	public boolean hasAlbumArt(FactoryPreferences prefs) {
 
-		if ( albumImageFetched )
-			return hasAlbumArt;
-		
-		return (this.getAlbumArt(prefs) != null);
+		// The album art index knows where the art is without loading it.
+		return getAlbumArtIndex().resolve(this, prefs).kind != AlbumArtIndex.Kind.NONE;
+	}
+	
+	private static AlbumArtIndex getAlbumArtIndex()
+	{
+		return MusicCollection.getMusicCollection(null).getAlbumArtIndex();
+	}
+	
+	/**
+	 * Checks whether an MP3 file has embedded album art that TiVo can display, without decoding it.
+	 * 
+	 * @param file	the MP3 file
+	 * @return		<code>true</code> if the file has an attached picture in a format TiVo understands
+	 */
+	static boolean hasEmbeddedArt(File file)
+	{
+		try {
+			return TrackProbe.read(file, new String[0], false).hasEmbeddedArt();
+		}
+		catch(ID3Exception e) {
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the track has embedded album art that TiVo can display, if that was found out when its tags
+	 * were read.
+	 * 
+	 * @return	<code>true</code> or <code>false</code>, or <code>null</code> for a track loaded from the cache
+	 */
+	Boolean getEmbeddedArt() {
+		return this.embeddedArt;
+	}
+	
+	/**
+	 * Records that the track's embedded album art can't be read, so that other art is used instead. The probe that
+	 * finds art doesn't decode the rest of the tag, so a tag that is damaged elsewhere can still fail to load.
+	 */
+	void clearEmbeddedArt() {
+		this.embeddedArt = Boolean.FALSE;
 	}
 	
-	private Image getAlbumArtFromID3Tag(FactoryPreferences prefs)
+	/**
+	 * Reads the album art embedded in an MP3 file.
+	 * 
+	 * @param file	the MP3 file
+	 * @return		the album art, or <code>null</code> if there isn't any
+	 */
+	static Image readEmbeddedArt(File file, FactoryPreferences prefs)
 	{
 		if (prefs.inDebugMode())
-			System.out.println("Retrieving embedded cover art from " + this.trackFile.getAbsolutePath());
+			System.out.println("Retrieving embedded cover art from " + file.getAbsolutePath());
 
 		Image img = null;
 
 		// Create an org.blinkenlights.jid3.MP3File to read tag data from
-		org.blinkenlights.jid3.MP3File mp3File = new org.blinkenlights.jid3.MP3File(this.trackFile);
+		org.blinkenlights.jid3.MP3File mp3File = new org.blinkenlights.jid3.MP3File(file);
 
 		// Get any ID3v2.3 tag that exists in the mp3 file and load its data
 		ID3V2_3_0Tag v23Tag;
@@ -382,14 +459,15 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 		return img;
 	}
 	
-	private Image getAlbumArtFromFile(FactoryPreferences prefs) throws IOException
+	/**
+	 * Finds the image file holding the album art in a folder: folder.jpg or cover.jpg if there is one, 
+	 * otherwise the first JPEG.
+	 * 
+	 * @param parentFolder	the folder to look in
+	 * @return				the image file, or <code>null</code> if there isn't one
+	 */
+	static File findFolderArt(File parentFolder)
 	{
-
-		if (prefs.inDebugMode())
-			System.out.println("Retrieving file-based cover art for " + this.trackFile.getAbsolutePath());
-		
-		Image img = null;
-		File parentFolder = this.trackFile.getParentFile();
 		String possibleImageFileName = null;
 		String imageFileName = null;
 
@@ -405,8 +483,7 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 				}
 				else if (possibleImageFileName == null)
 				{
-					String extension = files[i].substring(files[i].length() - 4);
-					if (extension.equalsIgnoreCase(".jpg"))
+					if (files[i].toLowerCase().endsWith(".jpg"))
 						possibleImageFileName = files[i];
 				}
 			}
@@ -416,12 +493,9 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 			imageFileName = possibleImageFileName;
 		
 		if (imageFileName != null)
-		{
-			String imageFilePath = parentFolder.getCanonicalPath() + File.separatorChar + imageFileName;
-			img = new ImageIcon(imageFilePath).getImage();
-		}
+			return new File(parentFolder, imageFileName);
 		
-		return img;
+		return null;
 	}
 
 	/*
@@ -431,8 +505,8 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 				new URL(url).openStream()));}
 	*/
 
-	//This function connects to last.fm, retrieves a URL to album art and downloads the album art
-	private Image getAlbumArtFromHTTP(FactoryPreferences prefs) throws Exception
+	//This function connects to last.fm, retrieves a URL to album art and downloads the album art into the cache
+	boolean downloadAlbumArt(FactoryPreferences prefs) throws Exception
 	{
 		Image img = LastFm.fetchAlbumArt(artistName, albumName);
 
@@ -458,7 +532,7 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 			catch(ID3Exception e) {
 				//Dont update the ID3 tag and move on, the image is still good for the cache.
 				System.out.println("Album Art Found But Exception when getting ID3V2 tag for " + this.trackFile.getAbsolutePath());
-				return img;
+				return (img != null);
 			}
 
 		
@@ -484,72 +558,41 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 			*/
 		}
 		
-		return img;
+		return (img != null);
 	}
 	
 	/* (non-Javadoc)
 	 * @see org.dazeend.harmonium.Playable#getAlbumArt()
 	 */
 	//@Override
-	public synchronized Image getAlbumArt(FactoryPreferences prefs) {
-		
-		Image img = null;
-		
-		try 
-		{
-			// If set to prefer file-based art, and not ignoring file-based art, look for that first.
-			if (prefs.preferJpgFileArt() &&!prefs.ignoreJpgFileArt())
-				img = getAlbumArtFromFile(prefs);
-			
-			// If we don't yet have an image and we're not ignoring embedded art, look there.
-			if (img == null && !prefs.ignoreEmbeddedArt())
-				img = getAlbumArtFromID3Tag(prefs);
-			
-			// If we still don't have an image, and we didn't already look at file-based art, 
-			// and we're not ignoring file-based art, look for it now.
-			if (img == null && !prefs.preferJpgFileArt() && !prefs.ignoreJpgFileArt())
-				img = getAlbumArtFromFile(prefs);
-
-			//See if we have cached downloaded art
-			if (img == null)
-				img = retrieveAlbumArtFromCache(prefs);
-
-			//If we still dont have it, give the online service a shot.
-			if (img == null && prefs.includeHTTP())
-				img = getAlbumArtFromHTTP(prefs);
-			
-			hasAlbumArt = (img != null);
-		} 
-		catch (Throwable t) 
-		{
-			hasAlbumArt = false;
-			t.printStackTrace();
-		} 
-		finally 
-		{
-			albumImageFetched = true;
-		}
+	public Image getAlbumArt(FactoryPreferences prefs) {
 		
-		return img;
-	}
-
-	public void saveAlbumArtToCache(Image coverArt, FactoryPreferences prefs) {
-		//see if album exists, if it does return its artsource
-		//Album.artSource.getAlbumArt()
-		String albumArtCacheFolder = MusicCollection.getMusicCollection(null).getAlbumArtCacheFolderPath();
-		String fileNameTemp = artistName.trim()+"-"+albumName.trim();
-		fileNameTemp = fileNameTemp.replaceAll("[\\/:\"*?<>|]+","");
-		String fileName = albumArtCacheFolder+File.separator+fileNameTemp;
-
-
-		File targetFileName = new File(fileName + ".jpg");
+		// The album art index says where to look, in the order set by the preferences.
+		return getAlbumArtIndex().loadImage(this, prefs);
+	}
+
+	/**
+	 * Gets the file that downloaded album art for this track's album is cached in. The file may not exist.
+	 */
+	File getCachedArtFile() {
+		String albumArtCacheFolder = MusicCollection.getMusicCollection(null).getAlbumArtCacheFolderPath();
+		//Strip illegal charachters from the artist and album name
+		String fileNameTemp = artistName.trim()+"-"+albumName.trim();
+		fileNameTemp = fileNameTemp.replaceAll("[\\/:\"*?<>|]+","");
+		return new File(albumArtCacheFolder+File.separator+fileNameTemp + ".jpg");
+	}
+
+	public void saveAlbumArtToCache(Image coverArt, FactoryPreferences prefs) {
+		File targetFileName = getCachedArtFile();
+		String fileName = targetFileName.getPath();
+		fileName = fileName.substring(0, fileName.length() - 4);
 		//did we already fetch this albums art?
 		if (targetFileName.exists())
 			return;
 
 
 		//Perhaps the cache doesnt exist yet? Create it then!
-		File targetDir = new File(albumArtCacheFolder);
+		File targetDir = targetFileName.getParentFile();
 		if (!targetDir.exists())
 			targetDir.mkdirs();
 
@@ -558,39 +601,8 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 
 		ImageAttributes ImageMeasurer = new ImageAttributes(coverArt);
 		ImageMeasurer.saveToFile(fileName);
-
-		
-		
-		
 	}
 
-	public Image retrieveAlbumArtFromCache(FactoryPreferences prefs) {
-		
-		if (prefs.inDebugMode())
-			System.out.println("Retrieving cache-based cover art for " + this.trackFile.getAbsolutePath());
-
-		String albumArtCacheFolder = MusicCollection.getMusicCollection(null).getAlbumArtCacheFolderPath();
-		//Strip illegal charachters from the artist and album name
-		String fileNameTemp = artistName.trim()+"-"+albumName.trim();
-		fileNameTemp = fileNameTemp.replaceAll("[\\/:\"*?<>|]+","");
-		String fileName = albumArtCacheFolder+File.separator+fileNameTemp;
-
-		try {
-			File targetFileName = new File(fileName + ".jpg");
-
-			//did we already fetch this albums art?
-			if (targetFileName.exists()){
-				Image returnImage = ImageIO.read(targetFileName);
-				return returnImage;
-			}
-		}
-		catch (IOException e) {
-			e.printStackTrace();
-		}
-		return null;
-
-	}
-
 	/* (non-Javadoc)
 	 * @see org.dazeend.harmonium.Playable#getAlbumArtistName()
 	 */
@@ -630,6 +642,13 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 	public RatingLevel getRating() {
 		return this.rating;
 	}
+	
+	/**
+	 * Sets the rating without writing it to the file. Used for tracks loaded from the cache.
+	 */
+	void setRating(RatingLevel rating) {
+		this.rating = rating;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.dazeend.harmonium.Playable#getReleaseYear()
@@ -718,6 +737,13 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 		return this.trackNameTitleSortForm;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.dazeend.harmonium.music.PlayableTrack#getTrackNameSortKey()
+	 */
+	public String getTrackNameSortKey() {
+		return this.trackNameSortKey;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.dazeend.harmonium.Playable#getTrackNumber()
 	 */
@@ -731,7 +757,10 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 	 */
 	//@Override
 	public synchronized void increaseRating() {
-		// TODO DEFERRED: implement for ratings
+		if(this.rating != RatingLevel.LEVEL_5) {
+			this.rating = RatingLevel.values()[this.rating.ordinal() + 1];
+			getRatingWriter().write(this, this.rating);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -739,7 +768,15 @@ public class MP3File extends HMusic implements PlayableLocalTrack {
 	 */
 	//@Override
 	public synchronized void decreaseRating() {
-		// TODO DEFERRED: implement for ratings
+		if(this.rating != RatingLevel.UNRATED) {
+			this.rating = RatingLevel.values()[this.rating.ordinal() - 1];
+			getRatingWriter().write(this, this.rating);
+		}
+	}
+	
+	private static RatingWriter getRatingWriter()
+	{
+		return MusicCollection.getMusicCollection(null).getRatingWriter();
 	}
 
 	/* (non-Javadoc)
@@ -1,28 +1,33 @@
 package org.dazeend.harmonium.music;
 
 import au.com.bytecode.opencsv.CSVReader;
-import au.com.bytecode.opencsv.CSVWriter;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.PrintStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.dazeend.harmonium.FactoryPreferences;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.Harmonium.HarmoniumFactory;
 
-import org.blinkenlights.jid3.ID3Exception;
+import com.tivo.hme.sdk.util.Mp3SeekTable;
 
 
 /**
@@ -33,23 +38,55 @@ public class MusicCollection implements PlayableCollection {
 	// Static variables
 	private static MusicCollection INSTANCE;		// This is the only instance of MusicCollection that should exist.
 	
-	private static final String HARMONIUM_CACHE_VERSION = "# Harmonium Cache File v1.0 #";
+	private static final String HARMONIUM_LEGACY_CACHE_VERSION = "# Harmonium Cache File v1.0 #";
+	private static final String HARMONIUM_LEGACY_CACHE_FILE_NAME = ".HarmoniumCache";
 	private static final String HARMONIUM_CACHE_FOLDER_NAME = ".harmonium";
-	private static final String HARMONIUM_CACHE_FILE_NAME = ".HarmoniumCache";
+	private static final String HARMONIUM_CACHE_FILE_NAME = ".HarmoniumCache.bin";
 	private static final String HARMONIUM_ALBUM_ART_FOLDER_NAME = "albumArt";
+	private static final String HARMONIUM_ALBUM_ART_INDEX_FILE_NAME = ".HarmoniumArtIndex.bin";
+	private static final String HARMONIUM_SEEK_TABLE_INDEX_FILE_NAME = ".HarmoniumSeekIndex.bin";
+	private static final String HARMONIUM_SCALED_ART_FOLDER_NAME = "scaled";
 	
 	// Instance variables
 	private List<AlbumArtist>	albumArtistList = new ArrayList<AlbumArtist>();
-	private List<PlayableLocalTrack>		albumlessTrackList = new ArrayList<PlayableLocalTrack>();
+	private List<PlayableLocalTrack>		albumlessTrackList = new TrackList();
 	private List<TrackArtist>	trackArtistList = new ArrayList<TrackArtist>();
+	private Map<String, AlbumArtist>	albumArtistIndex = new HashMap<String, AlbumArtist>();	// Maps case-folded names to members of albumArtistList
+	private Map<String, TrackArtist>	trackArtistIndex = new HashMap<String, TrackArtist>();	// Maps case-folded names to members of trackArtistList
 	private String				musicRoot = "";
 	private String				playlistRoot = "";
-	private Map<String, PlayableLocalTrack>	trackMap = new HashMap<String, PlayableLocalTrack>(512);	// used to map canonical file paths to Playable objects. Used for playlist lookup
+	private Map<String, PlayableLocalTrack>	trackMap = new ConcurrentHashMap<String, PlayableLocalTrack>(512);	// used to map canonical file paths to Playable objects. Used for playlist lookup. Read by the scanner's walker thread.
+	private ConcurrentMap<String, PlayableLocalTrack>	uriMap = new ConcurrentHashMap<String, PlayableLocalTrack>(512);	// maps track URIs to Playable objects. Used to find the track for a stream request.
+	private Map<String, MusicDirectory>	directories = new HashMap<String, MusicDirectory>();	// Maps paths relative to musicRoot to what we know about each directory. Lock on the map itself, never while calling back into the collection.
 	private List<PlaylistFile>	playlistFiles = new ArrayList<PlaylistFile>();
 	private HarmoniumFactory	hFactory;
 	private List<File>			m3uCache = new ArrayList<File>();
 	private boolean				refreshing = false;
-	private long				cacheDate = 0;
+	private LibraryWatcher		watcher = null;
+	private AlbumArtIndex		albumArtIndex;
+	private SeekTableIndex		seekTableIndex;
+	private ScaledArtCache		scaledArtCache;
+	private RatingWriter		ratingWriter;
+	private final SearchIndex	searchIndex = new SearchIndex();
+	private volatile long		cacheDate = 0;
+	private int					generation = 0;		// Counts changes to the members of the collection. Guarded by this.
+	
+	// Sorted lists for the browse screens, re-sorted only after the collection changes.
+	private final SortedView<AlbumArtist>	sortedAlbumArtists = new SortedView<AlbumArtist>(this, new CompareArtists()) {
+		protected List<AlbumArtist> members() {
+			return albumArtistList;
+		}
+	};
+	private final SortedView<TrackArtist>	sortedTrackArtists = new SortedView<TrackArtist>(this, new CompareArtists()) {
+		protected List<TrackArtist> members() {
+			return trackArtistList;
+		}
+	};
+	private final SortedView<PlayableLocalTrack>	tracksSortedByName = new SortedView<PlayableLocalTrack>(this, new CompareTracksByName()) {
+		protected Collection<PlayableLocalTrack> members() {
+			return uriMap.values();
+		}
+	};
 	
 	/**
 	 * Private constructor. Only one instance of MusicCollection should ever exist.
@@ -62,6 +99,25 @@ public class MusicCollection implements PlayableCollection {
 		// Get music source from preferences
 		this.musicRoot = hFactory.getPreferences().getMusicRoot();
 		this.playlistRoot = hFactory.getPreferences().getPlaylistRoot();
+		
+		// Album art is found in the background, and remembered between runs.
+		this.albumArtIndex = new AlbumArtIndex(this, new File(getCacheFolderPath(), HARMONIUM_ALBUM_ART_INDEX_FILE_NAME));
+		this.albumArtIndex.load(hFactory.getPreferences());
+		
+		// Seek tables are built the first time each track is played, and remembered between runs.
+		this.seekTableIndex = new SeekTableIndex(this, new File(getCacheFolderPath(), HARMONIUM_SEEK_TABLE_INDEX_FILE_NAME));
+		this.seekTableIndex.load();
+		
+		// Art scaled and encoded for one receiver is reused for all of them.
+		FactoryPreferences prefs = hFactory.getPreferences();
+		File scaledArtFolder = null;
+		if(prefs.saveScaledArt()) {
+			scaledArtFolder = new File(getAlbumArtCacheFolderPath(), HARMONIUM_SCALED_ART_FOLDER_NAME);
+		}
+		this.scaledArtCache = new ScaledArtCache(prefs.getScaledArtCacheSize() * 1024L, scaledArtFolder);
+		
+		// Ratings changed from the remote are written to the files in the background.
+		this.ratingWriter = new RatingWriter(this, hFactory.getScheduler().createGroup(), prefs.inDebugMode());
 	}
 
 	/**
@@ -73,6 +129,8 @@ public class MusicCollection implements PlayableCollection {
 		if(INSTANCE == null) {
 			INSTANCE = new MusicCollection(hFactory);
 			INSTANCE.build();			// This MUST be here and not in the constructor. Otherwise leads to nasty recursion.
+			INSTANCE.prefetchAlbumArt();
+			INSTANCE.startWatching();
 		}
 		return INSTANCE;
 	}
@@ -87,13 +145,15 @@ public class MusicCollection implements PlayableCollection {
 	private synchronized boolean addAlbumArtist(AlbumArtist newAlbumArtist) {
 		
 		// Check to ensure that the newAlbumArtist is not already a member of the music collection.
-		if(this.albumArtistList.contains(newAlbumArtist)) {
+		String artistKey = HMusic.caseFoldKey(newAlbumArtist.getArtistName());
+		if(this.albumArtistIndex.containsKey(artistKey)) {
 			return false;
 		}
 		
 		// If we got this far, then the newAlbumArtist is not yet a member of the music collection, so add it.
 		if(this.albumArtistList.add(newAlbumArtist)) {
 			// The album artist was successfully added. Return TRUE.
+			this.albumArtistIndex.put(artistKey, newAlbumArtist);
 			return true;
 		}
 		else {
@@ -105,13 +165,15 @@ public class MusicCollection implements PlayableCollection {
 	private synchronized boolean addTrackArtist(TrackArtist newTrackArtist) {
 		
 		// Check to ensure that the newTrackArtist is not already a member of the music collection.
-		if(this.trackArtistList.contains(newTrackArtist)) {
+		String artistKey = HMusic.caseFoldKey(newTrackArtist.getArtistName());
+		if(this.trackArtistIndex.containsKey(artistKey)) {
 			return false;
 		}
 		
 		// If we got this far, then the newTrackArtist is not yet a member of the music collection, so add it.
 		if(this.trackArtistList.add(newTrackArtist)) {
 			// The album artist was successfully added. Return TRUE.
+			this.trackArtistIndex.put(artistKey, newTrackArtist);
 			return true;
 		}
 		else {
@@ -127,25 +189,24 @@ public class MusicCollection implements PlayableCollection {
 	 * @param Track
 	 */
 	private synchronized void removeTrack(PlayableLocalTrack track) {
+		++this.generation;
+		
 		// See if track belongs to an album artist.
 		String trackAlbumArtist = track.getAlbumArtistName();
 		if(! trackAlbumArtist.equals("") ) {
 			
 			// track belongs to an album artist. See if the album artist is a member of this music collection.
-			Iterator<AlbumArtist> albumArtistIterator = this.albumArtistList.iterator();
-			while( albumArtistIterator.hasNext() ) {
-				AlbumArtist albumArtist = albumArtistIterator.next();
+			String artistKey = HMusic.caseFoldKey(trackAlbumArtist);
+			AlbumArtist albumArtist = this.albumArtistIndex.get(artistKey);
+			if(albumArtist != null) {
+				// The album artist is a member of this music collection, so delete track from the album artist.
+				albumArtist.removeTrack(track);
 				
-				if( albumArtist.getArtistName().compareToIgnoreCase(trackAlbumArtist) == 0 ) {
-					// The album artist is a member of this music collection, so delete track from the album artist.
-					albumArtist.removeTrack(track);
-					
-					// Check if the album artist is empty
-					if( albumArtist.getAlbumList().isEmpty() && albumArtist.getTrackList().isEmpty() ) {
-						// It's empty, so delete the album artist via its iterator
-						albumArtistIterator.remove();
-					}
-						
+				// Check if the album artist is empty
+				if( albumArtist.getAlbumList().isEmpty() && albumArtist.getTrackList().isEmpty() ) {
+					// It's empty, so delete the album artist
+					this.albumArtistIndex.remove(artistKey);
+					this.albumArtistList.remove(albumArtist);
 				}
 			}
 		}
@@ -159,20 +220,17 @@ public class MusicCollection implements PlayableCollection {
 		if(! trackArtistName.equals("") ) {
 			
 			// track belongs to a track artist. See if the track artist is a member of this music collection.
-			Iterator<TrackArtist> trackArtistIterator = this.trackArtistList.iterator();
-			while( trackArtistIterator.hasNext() ) {
-				TrackArtist trackArtist = trackArtistIterator.next();
+			String artistKey = HMusic.caseFoldKey(trackArtistName);
+			TrackArtist trackArtist = this.trackArtistIndex.get(artistKey);
+			if(trackArtist != null) {
+				// The track artist is a member of this music collection, so delete track from the album artist.
+				trackArtist.removeTrack(track);
 				
-				if( trackArtist.getArtistName().compareToIgnoreCase(trackArtistName) == 0 ) {
-					// The track artist is a member of this music collection, so delete track from the album artist.
-					trackArtist.removeTrack(track);
-					
-					// Check if the track artist is empty
-					if( trackArtist.getTrackList().isEmpty() ) {
-						// It's empty, so delete the album artist via its iterator
-						trackArtistIterator.remove();
-					}
-						
+				// Check if the track artist is empty
+				if( trackArtist.getTrackList().isEmpty() ) {
+					// It's empty, so delete the track artist
+					this.trackArtistIndex.remove(artistKey);
+					this.trackArtistList.remove(trackArtist);
 				}
 			}
 		}
@@ -186,6 +244,7 @@ public class MusicCollection implements PlayableCollection {
 	 * @return				<code>true</code> if the file was successfully added, otherwise <code>false</code>
 	 */
 	private synchronized boolean addTrack(FactoryPreferences prefs, PlayableLocalTrack newTrack) {
+		++this.generation;
 		
 		// See if newTrack belongs to a track artist.
 		Boolean addedToTrackArtist = false;
@@ -193,14 +252,11 @@ public class MusicCollection implements PlayableCollection {
 		if(! newTrackArtistName.equals("") ) {
 
 			// newTrack belongs to a track artist. See if the track artist is already a member of this music collection.
-			for( BaseArtist artist : this.trackArtistList) {
-
-				if( artist.getArtistName().compareToIgnoreCase(newTrackArtistName) == 0 ) {
-					// The track artist is already a member of this music collection, so add newTrack to the album artist.
-					artist.addTrack(prefs, newTrack);
-					addedToTrackArtist = true;
-					break;
-				}
+			BaseArtist artist = this.trackArtistIndex.get(HMusic.caseFoldKey(newTrackArtistName));
+			if(artist != null) {
+				// The track artist is already a member of this music collection, so add newTrack to the album artist.
+				artist.addTrack(prefs, newTrack);
+				addedToTrackArtist = true;
 			}
 			
 			if (!addedToTrackArtist) {
@@ -222,20 +278,17 @@ public class MusicCollection implements PlayableCollection {
 		if(! newTrackAlbumArtist.equals("") ) {
 
 			// newTrack belongs to an album artist. See if the album artist is already a member of this music collection.
-			for( BaseArtist albumArtist : this.albumArtistList) {
-
-				if( albumArtist.getArtistName().compareToIgnoreCase(newTrackAlbumArtist) == 0 ) {
-					// The album artist is already a member of this music collection, so add newTrack to the album artist.
-					if(albumArtist.addTrack(prefs, newTrack)) {
-						// The track was successfully added. Return TRUE.
-						return true;
-					}
-					else {
-						// There was an error in adding the track.
-						System.out.printf("Failed to add track %1$s to library under album artist: %2$s\r\n", newTrack, albumArtist);
-						return false;
-					}
-						
+			BaseArtist albumArtist = this.albumArtistIndex.get(HMusic.caseFoldKey(newTrackAlbumArtist));
+			if(albumArtist != null) {
+				// The album artist is already a member of this music collection, so add newTrack to the album artist.
+				if(albumArtist.addTrack(prefs, newTrack)) {
+					// The track was successfully added. Return TRUE.
+					return true;
+				}
+				else {
+					// There was an error in adding the track.
+					System.out.printf("Failed to add track %1$s to library under album artist: %2$s\r\n", newTrack, albumArtist);
+					return false;
 				}
 			}
 			
@@ -292,9 +345,7 @@ public class MusicCollection implements PlayableCollection {
 		List<PlayableLocalTrack> outputList = new ArrayList<PlayableLocalTrack>();
  		
  		// Get tracks from each member albumArtist and add them to the output list
-		List<AlbumArtist> sortedAlbumArtistList = this.albumArtistList;
-		Collections.sort( sortedAlbumArtistList, new CompareArtists() );
-		for(BaseArtist albumArtist : sortedAlbumArtistList) {
+		for(BaseArtist albumArtist : this.getSortedAlbumArtistList()) {
  			outputList.addAll(albumArtist.getMembers(app));
  		}
 		
@@ -313,7 +364,7 @@ public class MusicCollection implements PlayableCollection {
 	/**
 	 * Creates a new cache file with the tracks in this music collection
 	 */
-	private synchronized void writeCache() 
+	synchronized void writeCache() 
 	{
 		File cacheFolder = new File(getCacheFolderPath());
 		if (!cacheFolder.exists())
@@ -322,8 +373,8 @@ public class MusicCollection implements PlayableCollection {
 		File tempFile;
 		try 
 		{
-			// Create a temp file
-			tempFile = File.createTempFile("harmonium", ".txt");
+			// Create a temp file next to the cache, so that it can be renamed into place.
+			tempFile = File.createTempFile("harmonium", ".tmp", cacheFolder);
 			tempFile.deleteOnExit();
 		}
 		catch(IOException e) 
@@ -333,59 +384,23 @@ public class MusicCollection implements PlayableCollection {
 			throw new RuntimeException(e);
 		}
 		
-		// Get a list of all the tracks in the music collection
-		List<? extends Playable> musicCollection = this.getMembers(null);
-		
-		try{
-			// Open the temp file for writing. (We'll write the temp file, then move it at the end.)
-			FileWriter fout = new FileWriter(tempFile);
-			BufferedWriter cacheWriter = new BufferedWriter(fout);
-			
-			// Write the cache file header
-			cacheWriter.write(HARMONIUM_CACHE_VERSION);
-			cacheWriter.newLine();
-			
-			// Write the time stamp
+		try {
+			// Write the temp file, then move it at the end.
 			long currentTime = System.currentTimeMillis();
-			this.cacheDate = currentTime;
-			String timestamp = String.valueOf( currentTime );
-			cacheWriter.write(timestamp);
-			cacheWriter.newLine();
-			
-			// Create CSV writer
-			CSVWriter csvWriter = new CSVWriter(cacheWriter);
-			
-			// Write entries to cache in CSV format
-			// album_artist, album_name, year_num, disc_num, track_num, track_name, artist_name, duration, path
-			
-			for(Playable p : musicCollection) {
-				
-				PlayableLocalTrack musicItem = (PlayableLocalTrack)p;
-				
-				// Create the text line for this entry
-				String[] line = {	musicItem.getAlbumArtistName(),
-									musicItem.getAlbumName(),
-									String.valueOf(musicItem.getReleaseYear()),
-									String.valueOf(musicItem.getDiscNumber()),
-									String.valueOf(musicItem.getTrackNumber()),
-									musicItem.getTrackName(),
-									musicItem.getArtistName(),
-									String.valueOf(musicItem.getDuration()),
-									musicItem.getURI()
-				};
-				
-				// write the line in CSV format
-				csvWriter.writeNext(line);
+			synchronized(this.directories) {
+				LibraryCache.write(tempFile, currentTime, this.trackMap, this.directories);
 			}
-			
-			// close output streams
-			csvWriter.close();
-			cacheWriter.close();
-			fout.close();
+			this.cacheDate = currentTime;
 			
 			// move the temp file to its final location
-			File cacheFile = new File(cacheFolder.getPath() + File.separator + HARMONIUM_CACHE_FILE_NAME);
-			tempFile.renameTo(cacheFile);
+			File cacheFile = new File(getCacheFilePath());
+			if(! tempFile.renameTo(cacheFile)) {
+				// Some platforms won't rename over an existing file.
+				cacheFile.delete();
+				if(! tempFile.renameTo(cacheFile)) {
+					throw new IOException("Could not replace cache file " + cacheFile);
+				}
+			}
 		}
 		catch(IOException e) {
 			// There was an error in writing the temp file.
@@ -393,109 +408,191 @@ public class MusicCollection implements PlayableCollection {
 			e.printStackTrace();
 			throw new RuntimeException(e);
 		}
+		
+		this.albumArtIndex.save();
+		this.seekTableIndex.save();
 	}
 	
 	/**
-	 * Reads files on disk and creates a data structure representing music collection.
+	 * Loads the music collection from the binary cache file.
 	 * 
-	 * @return
+	 * @param cacheFile		the cache file
+	 * @return				<code>true</code> if the collection was loaded, otherwise <code>false</code>
 	 */
-	private synchronized void build() {
+	private boolean loadCache(File cacheFile) {
+		LibraryCache cache;
+		try {
+			cache = LibraryCache.open(cacheFile);
+		}
+		catch(IOException e) {
+			System.out.println("Could not read music collection cache: " + e.getMessage());
+			System.out.flush();
+			return false;
+		}
+		catch(RuntimeException e) {
+			// Opening checks the whole file, so nothing should get here, but a bad cache must never stop startup.
+			System.out.println("Could not read music collection cache: " + e);
+			System.out.flush();
+			return false;
+		}
 		
-		System.out.println("Looking for music collection cache...");
+		System.out.println("Cache found. Loading cache...");
 		System.out.flush();
+		this.cacheDate = cache.getCacheDate();
 		
-		File cacheFile = new File(getCacheFilePath());
-		if(cacheFile.exists() && cacheFile.canRead()) {
-			// A cache file exists, so use it to reconstitute the music collection
-			try {
-				FileReader fin = new FileReader(cacheFile);
-				BufferedReader cacheReader = new BufferedReader(fin);
-				
-				// Verify that this is really our file by checking the fingerprint of the first line
-				String fingerprint = cacheReader.readLine();
-				if(fingerprint.startsWith(HARMONIUM_CACHE_VERSION)) {
+		// Tracks that have disappeared since the cache was written are removed by the next refresh, so
+		// there's no need to touch the files here.
+		int trackCount = cache.getTrackCount();
+		for(int i = 0; i < trackCount; ++i) {
+			String path = cache.getPath(i);
+			MP3File mp3 = new MP3File(path, new File(this.musicRoot, path), cache.getAlbumArtistName(i), cache.getAlbumName(i), 
+					cache.getReleaseYear(i), cache.getDiscNumber(i), cache.getTrackNumber(i), cache.getTrackName(i), 
+					cache.getArtistName(i), cache.getDuration(i));
+			mp3.setFileFingerprint(cache.getFileSize(i), cache.getFileLastModified(i));
+			mp3.setRating(cache.getRating(i));
+			
+			// Add the MP3File to the trackMap and to this music collection
+			this.putTrack(cache.getCanonicalPath(i), mp3);
+			this.addTrack(this.hFactory.getPreferences(), mp3);
+		}
+		
+		// Remember which directories were unchanged when the cache was written, so that the next refresh can skip them.
+		synchronized(this.directories) {
+			int directoryCount = cache.getDirectoryCount();
+			for(int i = 0; i < directoryCount; ++i) {
+				this.getDirectory(cache.getDirectoryPath(i)).lastModified = cache.getDirectoryLastModified(i);
+			}
+			
+			int playlistCount = cache.getPlaylistCount();
+			for(int i = 0; i < playlistCount; ++i) {
+				String path = cache.getPlaylistPath(i);
+				this.getDirectory(MusicDirectory.parentPath(path)).playlists.add(MusicDirectory.name(path));
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Loads the music collection from a version 1.0 (CSV) cache file.
+	 * 
+	 * @param cacheFile		the cache file
+	 * @return				<code>true</code> if the collection was loaded, otherwise <code>false</code>
+	 */
+	private boolean loadLegacyCache(File cacheFile) {
+		try {
+			FileReader fin = new FileReader(cacheFile);
+			BufferedReader cacheReader = new BufferedReader(fin);
+			
+			// Verify that this is really our file by checking the fingerprint of the first line
+			String fingerprint = cacheReader.readLine();
+			if(fingerprint != null && fingerprint.startsWith(HARMONIUM_LEGACY_CACHE_VERSION)) {
 
-					System.out.println("Cache found. Loading cache...");
-					System.out.flush();
-					// This is our file. Grab the timestamp from line 2.
-					String timestamp = cacheReader.readLine();
-					try {
-						this.cacheDate = Long.parseLong(timestamp);
-					}
-					catch(NumberFormatException e) {
-						// There was a problem with the timestamp. Give it a default.
-						this.cacheDate = 0;
-					}
+				System.out.println("Old format cache found. Loading cache...");
+				System.out.flush();
+				// This is our file. Grab the timestamp from line 2.
+				String timestamp = cacheReader.readLine();
+				try {
+					this.cacheDate = Long.parseLong(timestamp);
+				}
+				catch(NumberFormatException e) {
+					// There was a problem with the timestamp. Give it a default.
+					this.cacheDate = 0;
+				}
+				
+				//Read it line by line as a CSV file
+				CSVReader csvIn = new CSVReader(cacheReader);
+				String[] line;
+				while( ( line = csvIn.readNext() ) != null ) {
 					
-					//Read it line by line as a CSV file
-					CSVReader csvIn = new CSVReader(cacheReader);
-					String[] line;
-					while( ( line = csvIn.readNext() ) != null ) {
+					if(line.length == 9) {
+						// This record has the right number of fields, so read it in
 						
-						if(line.length == 9) {
-							// This record has the right number of fields, so read it in
+						try {
+							// album_artist, album_name, year_num, disc_num, track_num, track_name, artist_name, duration, path
+							String albumArtist	= line[0];
+							String albumName	= line[1];
+							int yearNum			= Integer.parseInt(line[2]);
+							int discNum			= Integer.parseInt(line[3]);
+							int trackNum		= Integer.parseInt(line[4]);
+							String trackName	= line[5];
+							String artistName	= line[6];
+							long duration		= Long.parseLong(line[7]);
+							String path			= line[8];
 							
-							try {
-								// album_artist, album_name, year_num, disc_num, track_num, track_name, artist_name, duration, path
-								String albumArtist	= line[0];
-								String albumName	= line[1];
-								int yearNum			= Integer.parseInt(line[2]);
-								int discNum			= Integer.parseInt(line[3]);
-								int trackNum		= Integer.parseInt(line[4]);
-								String trackName	= line[5];
-								String artistName	= line[6];
-								long duration		= Long.parseLong(line[7]);
-								String path			= line[8];
-								
-								
-								File trackFile		= new File(this.musicRoot, path);
-								if(! trackFile.exists()) {
-									throw new FileNotFoundException();
-								}
-								
-								// Create the new MP3File
-								MP3File mp3 = new MP3File(path, trackFile, albumArtist, albumName, yearNum, discNum, trackNum, trackName, artistName, duration);
-								
-								// Add the MP3File to the trackMap
-								String mapKey = trackFile.getCanonicalPath();
-								this.trackMap.put(mapKey, mp3);
-								
-								//Disable album art updates during build. This means it will fetch album art from http on demand rather than at the start of harmonium
-								//this doesnt seem to work very well...need to come back to this
-								//boolean configuredValue = this.hFactory.getPreferences().includeHTTP();
-								//this.hFactory.getPreferences().setIncludeHTTP(false);
-								// Add the MP3File to this music collection
-								this.addTrack(this.hFactory.getPreferences(), mp3);
-								//this.hFactory.getPreferences().setIncludeHTTP(configuredValue);
-								
-							}
-							catch(NumberFormatException e) {
-							}
-							catch(FileNotFoundException e) {
+							
+							File trackFile		= new File(this.musicRoot, path);
+							if(! trackFile.exists()) {
+								throw new FileNotFoundException();
 							}
-						}
 							
+							// Create the new MP3File
+							MP3File mp3 = new MP3File(path, trackFile, albumArtist, albumName, yearNum, discNum, trackNum, trackName, artistName, duration);
+							
+							// Add the MP3File to the trackMap
+							String mapKey = trackFile.getCanonicalPath();
+							this.putTrack(mapKey, mp3);
+							
+							// Add the MP3File to this music collection
+							this.addTrack(this.hFactory.getPreferences(), mp3);
+						}
+						catch(NumberFormatException e) {
+						}
+						catch(FileNotFoundException e) {
+						}
 					}
-					csvIn.close();
-					cacheReader.close();
-					fin.close();
-					
-					if(this.hFactory.getPreferences().inDebugMode()) {
-		        		System.out.println("DEBUG: Loaded from cache:");
-		        		System.out.flush();
-		        		this.printMusic(System.out);
-		        	}
-					return;
+						
 				}
+				csvIn.close();
 				cacheReader.close();
 				fin.close();
+				return true;
+			}
+			cacheReader.close();
+			fin.close();
+		}
+		catch(Exception e) 
+		{
+			e.printStackTrace();
+		}
+		return false;
+	}
+	
+	/**
+	 * Reads files on disk and creates a data structure representing music collection.
+	 * 
+	 * @return
+	 */
+	private synchronized void build() {
+		
+		System.out.println("Looking for music collection cache...");
+		System.out.flush();
+		
+		File cacheFile = new File(getCacheFilePath());
+		if(cacheFile.exists() && cacheFile.canRead() && this.loadCache(cacheFile)) {
+			// A cache file exists, and we used it to reconstitute the music collection
+			if(this.hFactory.getPreferences().inDebugMode()) {
+				System.out.println("DEBUG: Loaded from cache:");
+				System.out.flush();
+				this.printMusic(System.out);
 			}
-			catch(Exception e) 
-			{
-				e.printStackTrace();
+			return;
+		}
+		
+		File legacyCacheFile = new File(getCacheFolderPath(), HARMONIUM_LEGACY_CACHE_FILE_NAME);
+		if(legacyCacheFile.exists() && legacyCacheFile.canRead() && this.loadLegacyCache(legacyCacheFile)) {
+			// An old cache file exists, and we used it to reconstitute the music collection. Convert it to the
+			// current format so that we don't have to parse it again.
+			System.out.println("Converting music collection cache to new format...");
+			System.out.flush();
+			this.writeCache();
+			legacyCacheFile.delete();
+			
+			if(this.hFactory.getPreferences().inDebugMode()) {
+				System.out.println("DEBUG: Loaded from cache:");
+				System.out.flush();
+				this.printMusic(System.out);
 			}
- 			
+			return;
 		}
 		
 		// If we made it this far, there was no cache or we couldn't read it. Load from scratch.
@@ -521,68 +618,212 @@ public class MusicCollection implements PlayableCollection {
 	public void refresh(Harmonium app) {
 		
 		// Only do stuff if we're not already refreshing in some other application
-		if(! this.refreshing) {
-			
-			// Set lock to prevent multiple concurrent refreshes
-			this.refreshing = true;
-			
+		if(this.beginRefresh()) {
 			try {
+				this.update();
 				
-			
-			// Remove tracks from music collection that no longer exist
-			String[] keyArray = this.trackMap.keySet().toArray(new String[0]);
-			for(int i=0; i < keyArray.length; i++) {
-
-				// See if file corresponding to key still exists
-				File trackFile = new File(keyArray[i]);
-				if(! trackFile.exists()) {
-					// File no longer exists, so delete the track from the music collection
-					PlayableLocalTrack track = this.trackMap.get(keyArray[i]);
-					if(track != null) {
-						// Remove track from music collection
-						this.removeTrack(track);
-						
-						// Remove track from track map
-						this.trackMap.remove(keyArray[i]);
-					}
-				}
+				// Write a cache file for this music collection
+				this.writeCache();
 			}
-			
-			}catch(Exception e) {
-				e.printStackTrace();
+			finally {
+				// Unset the lock
+				this.refreshing = false;
+			}
+		}
+	}
+	
+	/**
+	 * Applies changes found by the library watcher. Unlike <code>refresh()</code>, does not write the cache.
+	 * 
+	 * @return	<code>true</code> if the changes were applied, or <code>false</code> if a refresh was already running
+	 */
+	boolean applyChanges() {
+		if(this.beginRefresh()) {
+			try {
+				this.update();
+			}
+			finally {
+				this.refreshing = false;
 			}
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Sets the lock that prevents multiple concurrent refreshes.
+	 * 
+	 * @return	<code>true</code> if the lock was set, or <code>false</code> if a refresh is already running
+	 */
+	private synchronized boolean beginRefresh() {
+		if(this.refreshing) {
+			return false;
+		}
+		this.refreshing = true;
+		return true;
+	}
+	
+	/**
+	 * Brings the music collection up to date with the files on disk.
+	 */
+	private void update() {
+		
+		// NOTE: Tracks that no longer exist are removed by loadMusic(), when it lists the directories that changed.
+		
+		// Remove playlists from music collection that no longer exist
+		int i = 0;
+		while( i < this.playlistFiles.size() ) {
 			
-			// Remove playlists from music collection that no longer exist
-			int i = 0;
-			while( i < this.playlistFiles.size() ) {
+			if( ! this.playlistFiles.get(i).getFile().exists() ) {
+				// This playlist no longer exists. Remove it from the list.
+				this.playlistFiles.remove(i);
 				
-				if( ! this.playlistFiles.get(i).getFile().exists() ) {
-					// This playlist no longer exists. Remove it from the list.
-					this.playlistFiles.remove(i);
-					
-					// NOTE: The remove() method shifts later elements down, so DO NOT increment the index i.
-				}
-				else {
-					// the playlist still existed, so move on to the next one
-					++i;
+				// NOTE: The remove() method shifts later elements down, so DO NOT increment the index i.
+			}
+			else {
+				// the playlist still existed, so move on to the next one
+				++i;
+			}
+		}
+		
+		// Check for new, changed and deleted tracks in the directories that have changed.
+		this.loadMusic(this.musicRoot, "");
+		
+		// Process any M3U files that were found under the music root
+		this.processM3UCache();
+		
+		// Check for new playlists under the playlist root
+		this.loadPlaylists(this.playlistRoot, "");
+		
+		// Look for art for any new albums
+		this.prefetchAlbumArt();
+	}
+	
+	/**
+	 * Looks for changes under the music root without applying them. Only directories that have changed since they
+	 * were last listed are listed. Files edited in place don't change their directory, so they are only found if
+	 * the preferences ask for every file to be checked, in which case the known files of unchanged directories are
+	 * looked at too.
+	 * 
+	 * @return	0 if there is nothing to update. Otherwise a value describing the contents of the changed directories,
+	 * 			which stays the same between calls only while they don't change.
+	 */
+	long probeMusic() {
+		final AtomicLong signature = new AtomicLong();
+		final AtomicInteger changed = new AtomicInteger();
+		final FactoryPreferences prefs = this.hFactory.getPreferences();
+		
+		// Walk the music root the same way loadMusic() would, but don't read anything.
+		LibraryScanner scanner = new LibraryScanner(this.musicRoot, 1, prefs.getScanQueueSize(), false);
+		scanner.scan("", new LibraryScanner.ScanHandler() {
+			
+			public LibraryScanner.DirectoryContents unchangedDirectory(String dirPath, long lastModified) {
+				LibraryScanner.DirectoryContents known = knownDirectoryContents(dirPath, lastModified);
+				if(known != null && prefs.checkAllFiles()) {
+					long changes = changedKnownFiles(dirPath);
+					if(changes != 0) {
+						changed.incrementAndGet();
+						signature.addAndGet(changes);
+					}
 				}
+				return known;
 			}
 			
-			// Check for new tracks that need to be added to the music collection.
-			this.loadMusic(this.musicRoot, "");
+			public void directoryListed(String dirPath, long lastModified, String[] names) {
+				changed.incrementAndGet();
+				signature.addAndGet(fingerprint(dirPath, 0, lastModified));
+				for(String name : names) {
+					signature.addAndGet(fingerprint(dirPath + name, 0, 0));
+				}
+			}
 			
-			// Process any M3U files that were found under the music root
-			this.processM3UCache();
+			public boolean needsScan(File file, String mapKey) {
+				signature.addAndGet(fingerprint(mapKey, file.length(), file.lastModified()));
+				return false;
+			}
 			
-			// Check for new playlists under the playlist root
-			this.loadPlaylists(this.playlistRoot, "");
+			public void trackScanned(String mapKey, MP3File track) {
+			}
 			
-			// Write a cache file for this music collection
-			this.writeCache();
+			public void trackFailed(String mapKey, File file) {
+			}
 			
-			// Unset the lock
-			this.refreshing = false;
+			public void playlistFound(File file) {
+				// Playlists are checked by probePlaylists()
+			}
+		});
+		
+		// Never return 0 when something changed.
+		return (changed.get() == 0) ? 0 : (signature.get() | 1);
+	}
+	
+	/**
+	 * Looks for changes to the playlists under the music root and the playlist root, without applying them.
+	 * 
+	 * @return	a value that is the same for two calls only if no playlists were added, changed or deleted between them
+	 */
+	long probePlaylists() {
+		long signature = 0;
+		
+		// New M3U playlists under the music root change their directory, so only the known ones need checking.
+		List<File> m3uFiles = new ArrayList<File>();
+		synchronized(this.directories) {
+			for(Map.Entry<String, MusicDirectory> entry : this.directories.entrySet()) {
+				for(String name : entry.getValue().playlists) {
+					m3uFiles.add(new File(this.musicRoot, entry.getKey() + name));
+				}
+			}
+		}
+		for(File file : m3uFiles) {
+			signature += fingerprint(file.getPath(), file.length(), file.lastModified());
 		}
+		
+		// The playlist root is usually small, so just look at every playlist in it.
+		List<File> pending = new ArrayList<File>();
+		pending.add(new File(this.playlistRoot));
+		while(! pending.isEmpty()) {
+			File file = pending.remove(pending.size() - 1);
+			File[] list = file.listFiles();
+			if(list != null) {
+				pending.addAll(Arrays.asList(list));
+			}
+			else {
+				String name = file.getName().toLowerCase();
+				if(name.endsWith(".hpl") || name.endsWith(".m3u")) {
+					signature += fingerprint(file.getPath(), file.length(), file.lastModified());
+				}
+			}
+		}
+		
+		return signature;
+	}
+	
+	/**
+	 * Mixes the path, size and modification time of a file into a value that can be summed with others.
+	 */
+	private static long fingerprint(String path, long size, long lastModified) {
+		long h = path.hashCode();
+		h = h * 0x9E3779B97F4A7C15L + size;
+		h = h * 0x9E3779B97F4A7C15L + lastModified;
+		return h ^ (h >>> 29);
+	}
+	
+	/**
+	 * Starts keeping the music collection up to date in the background, if the preferences ask for it.
+	 */
+	private void startWatching() {
+		long interval = this.hFactory.getPreferences().getWatchInterval();
+		if(interval > 0) {
+			this.watcher = new LibraryWatcher(this, interval * 1000, this.hFactory.getPreferences().inDebugMode());
+			this.watcher.start();
+		}
+	}
+	
+	/**
+	 * @return	<code>true</code> if the music collection is kept up to date in the background, so that a refresh is unnecessary
+	 */
+	public boolean isWatching() {
+		return this.watcher != null;
 	}
 	
 	/**
@@ -634,9 +875,10 @@ public class MusicCollection implements PlayableCollection {
 	}
 	
 	/**
-	 * Recursively search for music and load it into the collection.
+	 * Search for music and load it into the collection. Tags are read in parallel by a <code>LibraryScanner</code>,
+	 * but tracks are added to the collection only from the calling thread.
 	 * 
-	 * @param musicDir	the root directory to search
+	 * @param root		the root directory to search
 	 * @param path		the path under the root directory to process
 	 */
 	private void loadMusic(String root, String path) {
@@ -644,80 +886,348 @@ public class MusicCollection implements PlayableCollection {
 		// Clear the M3U cache
 		this.m3uCache.clear();
 		
-        File file = new File(root, path);
-        if (file.isDirectory()) {
-            if (path.length() > 0 && !path.endsWith("/")) {
-                path += "/";
-            }
-            String list[] = file.list();             
-            for (int i = 0; i < list.length; i++) {
-                this.loadMusic(root, path + list[i]);
-            }
-        } 
-        else if( path.toLowerCase().endsWith(".mp3") ) {
-        	// This file is an MP3 music file
-        	
-        	String mapKey;
-        	try {
-        		mapKey = file.getCanonicalPath();
-        	}
-        	catch(IOException e) {
-        		mapKey = null;
-        	}
-        	
-        	// If the file has been last modified AFTER the time when our cache was written,
-        	// then remove the track from the music collection and map so that it can be 
-        	// re-read and re-added.
-        	if(mapKey != null && this.trackMap.containsKey(mapKey) && (file.lastModified() > this.cacheDate) ) {
-        		
-        		if(this.hFactory.getPreferences().inDebugMode()) {
-        			System.out.println("DEBUG: File out of date. Removing: " + path);
-	        		System.out.println("DEBUG: Cache written: " + this.cacheDate);
-        			System.out.println("DEBUG: file modified: " + file.lastModified());
-	        		System.out.flush();
-	        	}
-        		
-        		this.removeTrack(trackMap.get(mapKey));
-        		this.trackMap.remove(mapKey);
-        	}
-        	
-        	// Only add the file if the file has not already been added
-        	if((mapKey != null) && (! this.trackMap.containsKey(mapKey) ) ) {
-        		
-	        	if(this.hFactory.getPreferences().inDebugMode()) {
-	        		System.out.println("DEBUG: reading file " + path);
-	        		System.out.flush();
-	        	}
-	        	
-	        	org.dazeend.harmonium.music.MP3File newTrack = null;
-	        	boolean addTrack = true;
-	        	try {
-	        		// Create a new MP3File to represent file we just found
-	        		newTrack = new org.dazeend.harmonium.music.MP3File(path, file);
-	        		
-	                // Add the music track to the track map
-	                this.trackMap.put(mapKey, newTrack);
-	        	}
-	        	catch(ID3Exception e) {
-	        		// There was an error in reading the tags in the file. Don't add it.
-	        		addTrack = false;
-	        	}
-	        	
-	        	if(addTrack) {
-	        		// There were no problems in getting file info. 
-	        		// Add the music track to the music collection
-	        		this.addTrack(this.hFactory.getPreferences(), newTrack);
-	        	}
-        	}
-        }
-        else if( path.toLowerCase().endsWith(".m3u") ) {
-        	// This file is an M3U playlist, which are the only playlists permitted under musicRoot.
-        	// Since the m3u file may contain references to tracks that have not been found yet,
-        	// save the m3u file for later processing.
-        	
-        	this.m3uCache.add(file);
-        	
-        }
+		final FactoryPreferences prefs = this.hFactory.getPreferences();
+		LibraryScanner scanner = new LibraryScanner(root, prefs.getScanThreads(), prefs.getScanQueueSize(), prefs.inDebugMode());
+		
+		scanner.scan(path, new LibraryScanner.ScanHandler() {
+			
+			public LibraryScanner.DirectoryContents unchangedDirectory(String dirPath, long lastModified) {
+				if(prefs.checkAllFiles()) {
+					return null;
+				}
+				return knownDirectoryContents(dirPath, lastModified);
+			}
+			
+			public void directoryListed(String dirPath, long lastModified, String[] names) {
+				// Find the tracks and subdirectories that are gone. Tracks are removed from the collection only after
+				// the directories have been unlocked.
+				List<String> removedKeys = new ArrayList<String>();
+				synchronized(directories) {
+					MusicDirectory dir = getDirectory(dirPath);
+					Set<String> nameSet = new HashSet<String>(Arrays.asList(names));
+					
+					for(Map.Entry<String, String> entry : dir.tracks.entrySet()) {
+						if(! nameSet.contains(entry.getKey())) {
+							removedKeys.add(entry.getValue());
+						}
+						else {
+							// Art files may have been added to or removed from the directory.
+							PlayableLocalTrack track = trackMap.get(entry.getValue());
+							if(track != null) {
+								albumArtIndex.invalidate(track);
+							}
+						}
+					}
+					
+					Iterator<String> subdirectories = dir.subdirectories.iterator();
+					while(subdirectories.hasNext()) {
+						String name = subdirectories.next();
+						if(! nameSet.contains(name)) {
+							subdirectories.remove();
+							removeDirectoryTree(dirPath + name + "/", removedKeys);
+						}
+					}
+					
+					dir.playlists.clear();
+					for(String name : names) {
+						if(name.toLowerCase().endsWith(".m3u")) {
+							dir.playlists.add(name);
+						}
+					}
+					
+					dir.setListed(lastModified);
+				}
+				
+				for(String mapKey : removedKeys) {
+					removeMappedTrack(mapKey);
+				}
+			}
+			
+			public boolean needsScan(File file, String mapKey) {
+				// Only read the file if it has not already been added, or if it has changed since it was read.
+				PlayableLocalTrack track = trackMap.get(mapKey);
+				if(track == null) {
+					return true;
+				}
+				
+				long lastModified = file.lastModified();
+				if(track.getFileLastModified() == 0) {
+					// This track came from an old cache that didn't record the state of each file, so fall back
+					// on the time when our cache was written.
+					if(lastModified > cacheDate) {
+						if(prefs.inDebugMode()) {
+							System.out.println("DEBUG: File out of date. Re-reading: " + file.getPath());
+							System.out.println("DEBUG: Cache written: " + cacheDate);
+							System.out.println("DEBUG: file modified: " + lastModified);
+							System.out.flush();
+						}
+						return true;
+					}
+					
+					// The file is up to date, so remember its state for next time.
+					if(track instanceof MP3File) {
+						((MP3File)track).setFileFingerprint(file.length(), lastModified);
+					}
+					return false;
+				}
+				
+				long size = file.length();
+				if(lastModified != track.getFileLastModified() || size != track.getFileSize()) {
+					if(prefs.inDebugMode()) {
+						System.out.println("DEBUG: File changed. Re-reading: " + file.getPath());
+						System.out.println("DEBUG: size was " + track.getFileSize() + ", now " + size);
+						System.out.println("DEBUG: modified was " + track.getFileLastModified() + ", now " + lastModified);
+						System.out.flush();
+					}
+					return true;
+				}
+				return false;
+			}
+			
+			public void trackScanned(String mapKey, MP3File newTrack) {
+				// If this is a re-read of an out of date track, remove the old copy so that the new one can be added.
+				removeMappedTrack(mapKey);
+				
+				// Add the music track to the track map and the music collection
+				putTrack(mapKey, newTrack);
+				addTrack(prefs, newTrack);
+				
+				// The track's embedded art may have changed.
+				albumArtIndex.invalidate(newTrack);
+			}
+			
+			public void trackFailed(String mapKey, File file) {
+				// There was an error in reading the tags in the file. Don't keep any old copy of it.
+				removeMappedTrack(mapKey);
+			}
+			
+			public void playlistFound(File file) {
+				// This file is an M3U playlist, which are the only playlists permitted under musicRoot.
+				// Since the m3u file may contain references to tracks that have not been found yet,
+				// save the m3u file for later processing.
+				m3uCache.add(file);
+			}
+		});
+	}
+	
+	/**
+	 * Removes the track stored under a key of the track map from the map and the music collection, if there is one.
+	 * 
+	 * @param mapKey	the canonical path of the track
+	 */
+	private synchronized void removeMappedTrack(String mapKey) {
+		PlayableLocalTrack oldTrack = this.trackMap.remove(mapKey);
+		if(oldTrack != null) {
+			this.removeTrack(oldTrack);
+			this.uriMap.remove(oldTrack.getURI(), oldTrack);
+			this.searchIndex.remove(oldTrack);
+			
+			// A stream staged for the old copy could be for a file that has since been replaced.
+			this.trackFileChanged(oldTrack);
+			
+			synchronized(this.directories) {
+				String path = oldTrack.getURI();
+				MusicDirectory dir = this.directories.get(MusicDirectory.parentPath(path));
+				if(dir != null && mapKey.equals(dir.tracks.get(MusicDirectory.name(path)))) {
+					dir.tracks.remove(MusicDirectory.name(path));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Queues the art for every album that isn't in the album art index yet to be looked up in the background.
+	 */
+	private void prefetchAlbumArt() {
+		List<AlbumArtist> albumArtists;
+		synchronized(this) {
+			albumArtists = new ArrayList<AlbumArtist>(this.albumArtistList);
+		}
+		
+		for(AlbumArtist albumArtist : albumArtists) {
+			Album[] albums = albumArtist.getAlbumList().toArray(new Album[0]);
+			for(Album album : albums) {
+				for(PlayableLocalTrack track : album.getMembers(null)) {
+					if(track instanceof MP3File) {
+						this.albumArtIndex.prefetch((MP3File)track);
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the tracks to look in for the album art of a track: all of the tracks in its album, or just
+	 * the track itself if it doesn't belong to an album.
+	 */
+	List<MP3File> getArtCandidates(MP3File track) {
+		List<MP3File> candidates = new ArrayList<MP3File>();
+		
+		Album album = null;
+		if(! track.getAlbumArtistName().equals("") && ! track.getAlbumName().equals("")) {
+			AlbumArtist albumArtist;
+			synchronized(this) {
+				albumArtist = this.albumArtistIndex.get(HMusic.caseFoldKey(track.getAlbumArtistName()));
+			}
+			if(albumArtist != null) {
+				album = albumArtist.getAlbum(track.getAlbumName());
+			}
+		}
+		
+		if(album != null) {
+			for(PlayableLocalTrack member : album.getMembers(null)) {
+				if(member instanceof MP3File) {
+					candidates.add((MP3File)member);
+				}
+			}
+		}
+		if(candidates.isEmpty()) {
+			candidates.add(track);
+		}
+		return candidates;
+	}
+	
+	/**
+	 * @return	the index of where each album's art comes from
+	 */
+	AlbumArtIndex getAlbumArtIndex() {
+		return this.albumArtIndex;
+	}
+	
+	/**
+	 * @return	the writer that saves ratings to the tracks' files
+	 */
+	RatingWriter getRatingWriter() {
+		return this.ratingWriter;
+	}
+	
+	/**
+	 * @return	the album art that has been scaled and encoded for receivers
+	 */
+	public ScaledArtCache getScaledArtCache() {
+		return this.scaledArtCache;
+	}
+	
+	/**
+	 * @return	the preferences Harmonium was started with
+	 */
+	FactoryPreferences getPreferences() {
+		return this.hFactory.getPreferences();
+	}
+	
+	/**
+	 * Gets what we know about a directory, if it hasn't changed since it was last listed.
+	 * 
+	 * @param path			the path of the directory relative to the music root
+	 * @param lastModified	the current modification time of the directory
+	 * @return				the contents of the directory, or <code>null</code> if it must be listed
+	 */
+	private LibraryScanner.DirectoryContents knownDirectoryContents(String path, long lastModified) {
+		synchronized(this.directories) {
+			MusicDirectory dir = this.directories.get(path);
+			if(dir == null || ! dir.isUnchanged(lastModified)) {
+				return null;
+			}
+			return new LibraryScanner.DirectoryContents(new ArrayList<String>(dir.subdirectories), new ArrayList<String>(dir.playlists));
+		}
+	}
+	
+	/**
+	 * Checks whether the tracks already read from a directory have changed since they were read.
+	 * 
+	 * @param path	the path of the directory relative to the music root
+	 * @return		0 if none of them have changed. Otherwise a value describing the changed files, which stays the
+	 * 				same between calls only while they don't change.
+	 */
+	private long changedKnownFiles(String path) {
+		List<String> mapKeys;
+		synchronized(this.directories) {
+			MusicDirectory dir = this.directories.get(path);
+			if(dir == null) {
+				return 0;
+			}
+			mapKeys = new ArrayList<String>(dir.tracks.values());
+		}
+		
+		long signature = 0;
+		for(String mapKey : mapKeys) {
+			PlayableLocalTrack track = this.trackMap.get(mapKey);
+			if(track == null || track.getFileLastModified() == 0) {
+				// Tracks from an old cache are checked against the cache date by the next refresh.
+				continue;
+			}
+			File file = new File(mapKey);
+			long size = file.length();
+			long lastModified = file.lastModified();
+			if(size != track.getFileSize() || lastModified != track.getFileLastModified()) {
+				signature += fingerprint(mapKey, size, lastModified);
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * Forgets anything kept about a track's file that a change to the file would make stale.
+	 * 
+	 * @param track	the track whose file has changed or gone
+	 */
+	void trackFileChanged(PlayableLocalTrack track) {
+		this.hFactory.unstageStream(track.getURI());
+	}
+	
+	/**
+	 * Adds a track to the track map, and records it as a member of the directory that holds it.
+	 * 
+	 * @param mapKey	the canonical path of the track
+	 * @param track		the track
+	 */
+	private void putTrack(String mapKey, PlayableLocalTrack track) {
+		this.trackMap.put(mapKey, track);
+		this.uriMap.put(track.getURI(), track);
+		this.searchIndex.add(track);
+		
+		synchronized(this.directories) {
+			String path = track.getURI();
+			this.getDirectory(MusicDirectory.parentPath(path)).tracks.put(MusicDirectory.name(path), mapKey);
+		}
+	}
+	
+	/**
+	 * Gets what we know about a directory under the music root, creating an entry for it and for any of its
+	 * parents that we don't know about yet. Must be called while holding the lock on <code>directories</code>.
+	 * 
+	 * @param path	the path of the directory relative to the music root, ending with a slash unless it is the root
+	 * @return		the directory
+	 */
+	private MusicDirectory getDirectory(String path) {
+		MusicDirectory dir = this.directories.get(path);
+		if(dir == null) {
+			dir = new MusicDirectory();
+			this.directories.put(path, dir);
+			if(path.length() > 0) {
+				this.getDirectory(MusicDirectory.parentPath(path)).subdirectories.add(MusicDirectory.name(path));
+			}
+		}
+		return dir;
+	}
+	
+	/**
+	 * Forgets a directory that has been deleted, along with everything under it. Must be called while holding
+	 * the lock on <code>directories</code>.
+	 * 
+	 * @param path			the path of the deleted directory relative to the music root, ending with a slash
+	 * @param removedKeys	receives the track map keys of the tracks that were in the deleted directories
+	 */
+	private void removeDirectoryTree(String path, List<String> removedKeys) {
+		Iterator<Map.Entry<String, MusicDirectory>> entries = this.directories.entrySet().iterator();
+		while(entries.hasNext()) {
+			Map.Entry<String, MusicDirectory> entry = entries.next();
+			if(entry.getKey().startsWith(path)) {
+				removedKeys.addAll(entry.getValue().tracks.values());
+				entries.remove();
+			}
+		}
 	}
 	
 	/**
@@ -792,6 +1302,51 @@ public class MusicCollection implements PlayableCollection {
 	public List<TrackArtist> getTrackArtistList() {
 		return trackArtistList;
 	}
+	
+	/**
+	 * Returns the album artists in the collection, sorted by name. The list is shared, and mustn't be changed.
+	 * 
+	 * @return	an unmodifiable list of album artists
+	 */
+	public List<AlbumArtist> getSortedAlbumArtistList() {
+		return this.sortedAlbumArtists.get();
+	}
+	
+	/**
+	 * Returns the track artists in the collection, sorted by name. The list is shared, and mustn't be changed.
+	 * 
+	 * @return	an unmodifiable list of track artists
+	 */
+	public List<TrackArtist> getSortedTrackArtistList() {
+		return this.sortedTrackArtists.get();
+	}
+	
+	/**
+	 * Returns every track in the collection, sorted by name. The list is shared, and mustn't be changed.
+	 * 
+	 * @return	an unmodifiable list of tracks
+	 */
+	public List<PlayableLocalTrack> getTracksSortedByName() {
+		return this.tracksSortedByName.get();
+	}
+	
+	/**
+	 * Finds the tracks whose title, artist, album or album artist contain a word starting with each word of a query.
+	 * 
+	 * @param query	the words to look for
+	 * @param limit	the most tracks to return
+	 * @return		the matching tracks, sorted by name
+	 */
+	public List<PlayableLocalTrack> searchTracks(String query, int limit) {
+		return this.searchIndex.search(query, limit);
+	}
+	
+	/**
+	 * Gets the generation of the collection, which changes whenever a track is added or removed.
+	 */
+	synchronized int getGeneration() {
+		return this.generation;
+	}
 
 	/**
 	 * Returns a list of tracks that have no artist information.
@@ -858,6 +1413,36 @@ public class MusicCollection implements PlayableCollection {
 		}
 	}
 	
+	/**
+	 * Returns the track with the given URI, as returned by <code>getURI()</code>. If it doesn't exist, returns null.
+	 * 
+	 * @param uri	the path of the track relative to the music root
+	 * @return		the track, or <code>null</code> if there is no such track in the collection
+	 */
+	public PlayableLocalTrack lookupTrackByURI(String uri) {
+		return this.uriMap.get(uri);
+	}
+	
+	/**
+	 * Gets a table for seeking into a track without reading it from the start. If the track doesn't have a
+	 * table yet, one is built in the background for next time.
+	 * 
+	 * @param track	a track in the collection
+	 * @return		the seek table, or <code>null</code> if there isn't one yet
+	 */
+	public Mp3SeekTable getSeekTable(PlayableLocalTrack track) {
+		return this.seekTableIndex.get(track);
+	}
+	
+	/**
+	 * Starts building a seek table for a track, if it doesn't have one, so that it's ready if the track is skipped into.
+	 * 
+	 * @param track	a track in the collection
+	 */
+	public void prefetchSeekTable(PlayableLocalTrack track) {
+		this.seekTableIndex.prefetch(track);
+	}
+	
 	/**
 	 * @return the musicRoot
 	 */
@@ -0,0 +1,75 @@
+package org.dazeend.harmonium.music;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the music collection knows about one directory under the music root. Used to skip directories that
+ * haven't changed when refreshing the collection.
+ */
+class MusicDirectory {
+
+	// A directory modified this recently may still change within the same timestamp tick, so its time is not trusted.
+	private static final long MODIFICATION_GRACE_MS = 2000;
+
+	// Last modification time of the directory when it was last listed, or 0 if it must be listed again.
+	long lastModified = 0;
+
+	// Names of the directories in this directory
+	final Set<String> subdirectories = new HashSet<String>();
+
+	// Maps the names of music files in this directory to their keys in the collection's track map
+	final Map<String, String> tracks = new HashMap<String, String>();
+
+	// Names of the M3U playlists in this directory
+	final Set<String> playlists = new HashSet<String>();
+
+	/**
+	 * Records the modification time of the directory as of a listing.
+	 *
+	 * @param lastModified	the modification time read just before the directory was listed
+	 */
+	void setListed(long lastModified) {
+		if(System.currentTimeMillis() - lastModified < MODIFICATION_GRACE_MS) {
+			this.lastModified = 0;
+		}
+		else {
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Checks whether the directory can be skipped.
+	 *
+	 * @param lastModified	the current modification time of the directory
+	 * @return				<code>true</code> if the directory hasn't changed since it was last listed
+	 */
+	boolean isUnchanged(long lastModified) {
+		return this.lastModified != 0 && this.lastModified == lastModified;
+	}
+
+	/**
+	 * Gets the path of the directory that contains a file or directory.
+	 *
+	 * @param path		a path relative to the music root. Directory paths end with a slash.
+	 * @return			the path of the parent directory, ending with a slash, or the empty string for the music root
+	 */
+	static String parentPath(String path) {
+		int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		int slash = path.lastIndexOf('/', end - 1);
+		return (slash < 0) ? "" : path.substring(0, slash + 1);
+	}
+
+	/**
+	 * Gets the last element of a path.
+	 *
+	 * @param path		a path relative to the music root. Directory paths end with a slash.
+	 * @return			the name of the file or directory
+	 */
+	static String name(String path) {
+		int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		return path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+	}
+}
@@ -56,5 +56,19 @@ public interface PlayableLocalTrack extends PlayableTrack
 	 *  @return a File that represents this track on disk
 	 */
 	public File getTrackFile();
+	
+	/**
+	 * Gets the size of the file on disk as it was when the track information was read.
+	 * 
+	 * @return the size of the file in bytes
+	 */
+	public long getFileSize();
+	
+	/**
+	 * Gets the modification time of the file on disk as it was when the track information was read.
+	 * 
+	 * @return the modification time of the file, or 0 if it isn't known
+	 */
+	public long getFileLastModified();
 
 }
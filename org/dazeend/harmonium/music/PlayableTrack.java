@@ -22,6 +22,14 @@ public interface PlayableTrack extends Playable, AlbumArtListItem
 	 * @return	a string containing the name of this track in title sort format
 	 */
 	public String getTrackNameTitleSortForm();
+	
+	/**
+	 * Gets the key this track is sorted by when sorting by name. Comparing keys with <code>compareTo()</code> gives 
+	 * the same order as comparing title sort forms with <code>compareToIgnoreCase()</code>.
+	 * 
+	 * @return	the title sort form of the name of this track, case-folded
+	 */
+	public String getTrackNameSortKey();
 
 	/**
 	 * Gets the track number of this track.
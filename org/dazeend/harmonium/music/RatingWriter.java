@@ -0,0 +1,170 @@
+package org.dazeend.harmonium.music;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.blinkenlights.jid3.ID3Exception;
+import org.blinkenlights.jid3.v2.ID3V2_3_0Tag;
+import org.blinkenlights.jid3.v2.POPMID3V2Frame;
+import org.dazeend.harmonium.Scheduler;
+
+/**
+ * Writes track ratings to the POPM frames of MP3 files in the background.
+ *
+ * A rating changed from the remote takes effect in memory straight away, and the track is queued here. The queue is
+ * written out a few seconds after the last change, so pressing thumbs up several times in a row writes each file
+ * once, with the final rating, and the event thread never waits for the disk. After a file is written, the track
+ * records the file's new size and modification time, so the next refresh doesn't read its tags again. The library
+ * cache is saved after each batch, so a rating that can't be written to its file is still kept. The writes run on the
+ * factory's shared scheduler, one batch at a time.
+ */
+class RatingWriter {
+
+	// How long to wait after the last change before writing, in milliseconds
+	private static final long	WRITE_DELAY = 3000;
+
+	private final MusicCollection			collection;
+	private final Map<MP3File, RatingLevel>	pending = new LinkedHashMap<MP3File, RatingLevel>();	// Guarded by this.
+	private final Scheduler.Group			tasks;
+	private Scheduler.Task					scheduled = null;										// Guarded by this.
+	private final Object					writeLock = new Object();								// Held while a batch is written.
+	private final boolean					debug;
+
+	/**
+	 * @param collection	the collection whose cache is saved after ratings are written
+	 * @param tasks			the group of scheduler tasks to write ratings with
+	 * @param debug			whether to log each file written
+	 */
+	RatingWriter(MusicCollection collection, Scheduler.Group tasks, boolean debug) {
+		this.collection = collection;
+		this.tasks = tasks;
+		this.debug = debug;
+
+		// Don't lose ratings that are still waiting when Harmonium is stopped.
+		Runtime.getRuntime().addShutdownHook(new Thread("Harmonium ratings shutdown") {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * Queues a track's rating to be written to its file, replacing any rating queued for it before.
+	 */
+	synchronized void write(MP3File track, RatingLevel rating) {
+		this.pending.put(track, rating);
+
+		// Start the delay again, so that a run of changes is written together.
+		if(this.scheduled != null) {
+			this.scheduled.cancel();
+		}
+		this.scheduled = this.tasks.schedule(new Runnable() {
+			public void run() {
+				flush();
+			}
+		}, WRITE_DELAY);
+	}
+
+	/**
+	 * Writes every queued rating now.
+	 */
+	void flush() {
+		// The scheduler has several worker threads, and Harmonium can stop while a batch is being written, so make
+		// sure two batches never write the same file at once.
+		synchronized(this.writeLock) {
+			Map<MP3File, RatingLevel> batch;
+			synchronized(this) {
+				if(this.pending.isEmpty()) {
+					return;
+				}
+				batch = new LinkedHashMap<MP3File, RatingLevel>(this.pending);
+				this.pending.clear();
+				this.scheduled = null;
+			}
+
+			for(Map.Entry<MP3File, RatingLevel> entry : batch.entrySet()) {
+				try {
+					writeRating(entry.getKey(), entry.getValue());
+				}
+				catch(Exception e) {
+					System.out.println("Could not write rating to " + entry.getKey().getTrackFile() + ": " + e.getMessage());
+					System.out.flush();
+				}
+			}
+
+			try {
+				this.collection.writeCache();
+			}
+			catch(RuntimeException e) {
+				// The ratings are still in memory, and the cache will be written again by the next refresh.
+				System.out.println("Could not save the music collection cache after writing ratings: " + e.getMessage());
+				System.out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes a rating to Harmonium's POPM frame in a file, keeping the play count the frame already holds.
+	 */
+	private void writeRating(MP3File track, RatingLevel rating) throws ID3Exception, IOException {
+		File file = track.getTrackFile();
+
+		// If the file changed since it was read, the next refresh has to notice, so don't record our own change.
+		boolean unchanged = file.length() == track.getFileSize() && file.lastModified() == track.getFileLastModified();
+
+		// jid3 only understands ID3v2.3 tags. A file with any other version of tag is left alone rather than have
+		// its tag replaced.
+		org.blinkenlights.jid3.MP3File mp3File = new org.blinkenlights.jid3.MP3File(file);
+		ID3V2_3_0Tag v23Tag = (ID3V2_3_0Tag) mp3File.getID3V2Tag();
+		if(v23Tag == null) {
+			if(rating == RatingLevel.UNRATED || hasID3V2Header(file)) {
+				return;
+			}
+			v23Tag = new ID3V2_3_0Tag();
+		}
+
+		POPMID3V2Frame oldFrame = v23Tag.removePOPMFrame(MP3File.RATING_EMAIL);
+		if(rating != RatingLevel.UNRATED) {
+			// The rating is stored as 1 to 5, the order of RatingLevel.
+			if(oldFrame != null && oldFrame.getPlayCount() >= 0) {
+				v23Tag.addPOPMFrame(new POPMID3V2Frame(MP3File.RATING_EMAIL, rating.ordinal(), oldFrame.getPlayCount()));
+			}
+			else {
+				v23Tag.addPOPMFrame(new POPMID3V2Frame(MP3File.RATING_EMAIL, rating.ordinal()));
+			}
+		}
+		else if(oldFrame == null) {
+			// Nothing to remove
+			return;
+		}
+
+		mp3File.setID3Tag(v23Tag);
+		mp3File.sync();
+		this.collection.trackFileChanged(track);
+
+		if(unchanged) {
+			track.setFileFingerprint(file.length(), file.lastModified());
+		}
+		if(this.debug) {
+			System.out.println("DEBUG: Wrote rating " + rating + " to " + file);
+		}
+	}
+
+	/**
+	 * Checks whether a file starts with an ID3v2 tag header of any version.
+	 */
+	private static boolean hasID3V2Header(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return in.read() == 'I' && in.read() == 'D' && in.read() == '3';
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package org.dazeend.harmonium.music;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import org.dazeend.harmonium.FactoryPreferences;
+
+/**
+ * Album art that has already been scaled and encoded as JPEG, ready to be sent to a receiver.
+ *
+ * Scaling and encoding art is the slow part of showing it, and every receiver showing the same album at the same size
+ * needs the same bytes. This cache is shared by all of them. It holds the most recently used images, up to a total
+ * number of bytes, and can also keep a copy of each image in the album art cache folder so that the work survives a
+ * restart. Entries are keyed by the art source's hash key and the size the art was scaled to.
+ */
+public class ScaledArtCache {
+
+	private static final String	SEPARATOR = "\u0000";
+
+	private final long										maxBytes;
+	private final File										folder;
+	private final LinkedHashMap<String, byte[]>				entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private final ConcurrentMap<String, FutureTask<byte[]>>	pending = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+	private long											size = 0;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxBytes	the most encoded art to hold in memory
+	 * @param folder	the folder to save encoded art in, or <code>null</code> if it shouldn't be saved
+	 */
+	ScaledArtCache(long maxBytes, File folder) {
+		this.maxBytes = maxBytes;
+		this.folder = folder;
+	}
+
+	/**
+	 * Gets the art for an art source, scaled to fit the specified size and encoded as JPEG. If another receiver is
+	 * already encoding the same art, waits for it rather than doing the work again.
+	 *
+	 * @param artSource	the source of the art
+	 * @param prefs		the preferences that control where art is found
+	 * @param width		the width the art must fit in
+	 * @param height	the height the art must fit in
+	 * @return			the encoded art, or <code>null</code> if it couldn't be loaded
+	 */
+	public byte[] get(final ArtSource artSource, final FactoryPreferences prefs, final int width, final int height) {
+		final String key = artSource.getArtHashKey() + SEPARATOR + width + "x" + height;
+
+		byte[] art = this.lookup(key);
+		if(art != null) {
+			return art;
+		}
+
+		FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				File file = getFile(artSource.getArtHashKey(), width, height);
+				byte[] bytes = (file != null) ? readFile(file) : null;
+				if(bytes == null) {
+					bytes = encode(artSource.getScaledAlbumArt(prefs, width, height));
+					if(bytes != null && file != null) {
+						writeFile(file, bytes);
+					}
+				}
+				if(bytes != null) {
+					store(key, bytes);
+				}
+				return bytes;
+			}
+		});
+
+		FutureTask<byte[]> existing = this.pending.putIfAbsent(key, task);
+		if(existing == null) {
+			try {
+				task.run();
+			}
+			finally {
+				this.pending.remove(key, task);
+			}
+		}
+		else {
+			task = existing;
+		}
+
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch(ExecutionException e) {
+			System.out.println("Could not encode album art: " + e.getCause());
+			System.out.flush();
+			return null;
+		}
+	}
+
+	/**
+	 * Forgets the art for a hash key, at every size, because the art it stands for may have changed.
+	 */
+	void invalidate(String artHashKey) {
+		String prefix = artHashKey + SEPARATOR;
+		synchronized(this) {
+			for(Iterator<Map.Entry<String, byte[]>> it = this.entries.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<String, byte[]> entry = it.next();
+				if(entry.getKey().startsWith(prefix)) {
+					this.size -= entry.getValue().length;
+					it.remove();
+				}
+			}
+		}
+
+		if(this.folder != null) {
+			File keyFolder = new File(this.folder, digest(artHashKey));
+			File[] files = keyFolder.listFiles();
+			if(files != null) {
+				for(File file : files) {
+					file.delete();
+				}
+				keyFolder.delete();
+			}
+		}
+	}
+
+	private synchronized byte[] lookup(String key) {
+		return this.entries.get(key);
+	}
+
+	/**
+	 * Adds art to the cache, dropping the least recently used art until the cache fits in its size again.
+	 */
+	private synchronized void store(String key, byte[] bytes) {
+		byte[] old = this.entries.put(key, bytes);
+		if(old != null) {
+			this.size -= old.length;
+		}
+		this.size += bytes.length;
+
+		Iterator<byte[]> it = this.entries.values().iterator();
+		while(this.size > this.maxBytes && it.hasNext()) {
+			this.size -= it.next().length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Draws an image onto an opaque background and encodes it as JPEG. Album art has no transparency, so this avoids
+	 * the much larger PNG the HME SDK sends for images that might have some.
+	 *
+	 * @return	the encoded image, or <code>null</code> if there is no image or it can't be loaded
+	 */
+	private static byte[] encode(Image img) throws IOException {
+		if(img == null) {
+			return null;
+		}
+
+		// ImageIcon waits for the image to finish loading
+		ImageIcon icon = new ImageIcon(img);
+		int width = icon.getIconWidth();
+		int height = icon.getIconHeight();
+		if(width < 1 || height < 1) {
+			return null;
+		}
+
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics g = bi.getGraphics();
+		try {
+			g.drawImage(icon.getImage(), 0, 0, null);
+		}
+		finally {
+			g.dispose();
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		if(! ImageIO.write(bi, "jpg", out)) {
+			return null;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Gets the file that art of a size is saved in.
+	 *
+	 * @return	the file, or <code>null</code> if art isn't saved
+	 */
+	private File getFile(String artHashKey, int width, int height) {
+		if(this.folder == null) {
+			return null;
+		}
+		return new File(new File(this.folder, digest(artHashKey)), width + "x" + height + ".jpg");
+	}
+
+	private static byte[] readFile(File file) {
+		if(! file.exists()) {
+			return null;
+		}
+
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] bytes = new byte[(int)file.length()];
+				int count = 0;
+				while(count < bytes.length) {
+					int n = in.read(bytes, count, bytes.length - count);
+					if(n < 0) {
+						return null;
+					}
+					count += n;
+				}
+				return bytes;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			return null;
+		}
+	}
+
+	private static void writeFile(File file, byte[] bytes) {
+		file.getParentFile().mkdirs();
+		File tempFile = new File(file.getPath() + ".tmp");
+		try {
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				out.write(bytes);
+			}
+			finally {
+				out.close();
+			}
+			if(! tempFile.renameTo(file)) {
+				tempFile.delete();
+			}
+		}
+		catch(IOException e) {
+			// Not being able to save art only means encoding it again next time.
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Turns a hash key, which may contain any characters, into a name that can be used for a folder.
+	 */
+	private static String digest(String artHashKey) {
+		try {
+			byte[] hash = MessageDigest.getInstance("MD5").digest(artHashKey.getBytes("UTF-8"));
+			StringBuilder name = new StringBuilder();
+			for(byte b : hash) {
+				name.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return name.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			return Integer.toHexString(artHashKey.hashCode());
+		}
+		catch(IOException e) {
+			return Integer.toHexString(artHashKey.hashCode());
+		}
+	}
+}
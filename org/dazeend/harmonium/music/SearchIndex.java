@@ -0,0 +1,173 @@
+package org.dazeend.harmonium.music;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Finds tracks by the words in their names, for searching from the TV.
+ *
+ * Every word of a track's title, artist, album and album artist is indexed, case folded. A query matches a track
+ * when each word of the query is the start of one of the track's words, so "beat ab" finds the tracks on Abbey Road.
+ * Words are kept sorted, which makes the words starting with a query word a range of the index. Tracks are added and
+ * removed one at a time as the collection changes, so the index never has to be rebuilt.
+ */
+class SearchIndex {
+
+	// The most index words counted when deciding which query word to search by
+	private static final int	MAX_COUNTED_WORDS = 1000;
+
+	private final TreeMap<String, Set<PlayableLocalTrack>>	postings = new TreeMap<String, Set<PlayableLocalTrack>>();
+	private final Map<PlayableLocalTrack, String[]>			trackWords = new HashMap<PlayableLocalTrack, String[]>();
+
+	/**
+	 * Adds a track to the index.
+	 */
+	synchronized void add(PlayableLocalTrack track) {
+		String[] words = words(track.getTrackName() + " " + track.getArtistName() + " " + track.getAlbumName() + " " + track.getAlbumArtistName());
+		this.trackWords.put(track, words);
+		for(String word : words) {
+			Set<PlayableLocalTrack> tracks = this.postings.get(word);
+			if(tracks == null) {
+				tracks = new LinkedHashSet<PlayableLocalTrack>();
+				this.postings.put(word, tracks);
+			}
+			tracks.add(track);
+		}
+	}
+
+	/**
+	 * Removes a track from the index.
+	 */
+	synchronized void remove(PlayableLocalTrack track) {
+		String[] words = this.trackWords.remove(track);
+		if(words == null) {
+			return;
+		}
+		for(String word : words) {
+			Set<PlayableLocalTrack> tracks = this.postings.get(word);
+			if(tracks != null) {
+				tracks.remove(track);
+				if(tracks.isEmpty()) {
+					this.postings.remove(word);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the tracks that match a query.
+	 *
+	 * @param query	the words to look for
+	 * @param limit	the most tracks to return
+	 * @return		the matching tracks, sorted by name. If there are more than <code>limit</code>, the first ones by
+	 * 				name are returned.
+	 */
+	List<PlayableLocalTrack> search(String query, int limit) {
+		String[] queryWords = words(query);
+		if(queryWords.length == 0 || limit < 1) {
+			return Collections.emptyList();
+		}
+
+		List<PlayableLocalTrack> matches = new ArrayList<PlayableLocalTrack>();
+		synchronized(this) {
+			// Walk the tracks for the query word that matches the fewest, and check the other words against each one.
+			// A short query word can start thousands of words, so counting stops early. That only makes the choice
+			// less exact when every query word matches a lot of tracks.
+			SortedMap<String, Set<PlayableLocalTrack>> smallest = null;
+			int smallestCount = Integer.MAX_VALUE;
+			for(String queryWord : queryWords) {
+				SortedMap<String, Set<PlayableLocalTrack>> range = this.postings.subMap(queryWord, queryWord + Character.MAX_VALUE);
+				int count = 0;
+				int wordCount = 0;
+				if(queryWords.length > 1) {
+					for(Set<PlayableLocalTrack> tracks : range.values()) {
+						count += tracks.size();
+						if(count >= smallestCount || ++wordCount >= MAX_COUNTED_WORDS) {
+							break;
+						}
+					}
+				}
+				if(smallest == null || count < smallestCount) {
+					smallest = range;
+					smallestCount = count;
+				}
+			}
+
+			Set<PlayableLocalTrack> seen = new HashSet<PlayableLocalTrack>();
+			for(Set<PlayableLocalTrack> tracks : smallest.values()) {
+				for(PlayableLocalTrack track : tracks) {
+					if(seen.add(track) && matchesAll(this.trackWords.get(track), queryWords)) {
+						matches.add(track);
+					}
+				}
+			}
+		}
+
+		// Keep the first tracks by name. A heap of the best so far, with the last of them on top, avoids sorting
+		// every match when a short query matches most of the collection.
+		Comparator<PlayableTrack> byName = new CompareTracksByName();
+		if(matches.size() > limit) {
+			PriorityQueue<PlayableLocalTrack> best = new PriorityQueue<PlayableLocalTrack>(limit + 1, Collections.reverseOrder(byName));
+			for(PlayableLocalTrack track : matches) {
+				best.add(track);
+				if(best.size() > limit) {
+					best.poll();
+				}
+			}
+			matches = new ArrayList<PlayableLocalTrack>(best);
+		}
+
+		Collections.sort(matches, byName);
+		return matches;
+	}
+
+	/**
+	 * Checks whether every query word starts one of a track's words.
+	 */
+	private static boolean matchesAll(String[] words, String[] queryWords) {
+		for(String queryWord : queryWords) {
+			boolean found = false;
+			for(String word : words) {
+				if(word.startsWith(queryWord)) {
+					found = true;
+					break;
+				}
+			}
+			if(! found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Splits text into the distinct, case folded words that are indexed. Anything that isn't a letter or a digit
+	 * separates words.
+	 */
+	static String[] words(String text) {
+		Set<String> words = new LinkedHashSet<String>();
+		int start = -1;
+		for(int i = 0; i <= text.length(); ++i) {
+			if(i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+				if(start < 0) {
+					start = i;
+				}
+			}
+			else if(start >= 0) {
+				words.add(HMusic.caseFoldKey(text.substring(start, i)));
+				start = -1;
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+}
@@ -0,0 +1,241 @@
+package org.dazeend.harmonium.music;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.tivo.hme.sdk.util.Mp3Helper;
+import com.tivo.hme.sdk.util.Mp3SeekTable;
+
+/**
+ * Remembers a seek table for each track that has been played, so that skipping into a track doesn't mean reading
+ * every frame up to the new position.
+ *
+ * A track's table is built on a background thread the first time the track is streamed. Building it reads at most
+ * the start of the file, unless the file is VBR without a table of contents. Tables are saved in the cache folder
+ * with the size and modification time of the file they were built from, and are rebuilt if the file changes. The
+ * index is saved whenever the tables queued to be built are done.
+ */
+class SeekTableIndex {
+
+	/**
+	 * A seek table, and the state of the file it was built from.
+	 */
+	private static final class Entry {
+		final long			fileSize;
+		final long			lastModified;
+		final Mp3SeekTable	table;
+
+		Entry(long fileSize, long lastModified, Mp3SeekTable table) {
+			this.fileSize = fileSize;
+			this.lastModified = lastModified;
+			this.table = table;
+		}
+	}
+
+	// "HRMS"
+	private static final int	MAGIC = 0x48524D53;
+	private static final int	VERSION = 2;		// Version 1 stored the number of offsets in each table in 16 bits.
+
+	private final MusicCollection					collection;
+	private final File								indexFile;
+	private final ConcurrentMap<String, Entry>		entries = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentMap<String, Boolean>	pending = new ConcurrentHashMap<String, Boolean>();
+	private final ExecutorService					executor;
+	private volatile boolean						dirty = false;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param collection	the collection whose tracks are indexed
+	 * @param indexFile		the file the index is saved to
+	 */
+	SeekTableIndex(MusicCollection collection, File indexFile) {
+		this.collection = collection;
+		this.indexFile = indexFile;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Harmonium seek tables");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Reads the index saved by a previous run, if there is one.
+	 */
+	void load() {
+		if(! this.indexFile.exists()) {
+			return;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile)));
+			try {
+				if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+					// Written by another version. Start over.
+					return;
+				}
+				int count = in.readInt();
+				for(int i = 0; i < count; ++i) {
+					String uri = in.readUTF();
+					long fileSize = in.readLong();
+					long lastModified = in.readLong();
+					this.entries.put(uri, new Entry(fileSize, lastModified, Mp3SeekTable.read(in)));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			System.out.println("Could not read seek table index: " + e.getMessage());
+			System.out.flush();
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Saves the index if it has changed since it was last saved. Tables for tracks that are no longer in the
+	 * collection are dropped.
+	 */
+	synchronized void save() {
+		if(! this.dirty) {
+			return;
+		}
+		this.dirty = false;
+
+		Map<String, Entry> snapshot = new HashMap<String, Entry>();
+		for(Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+			if(this.collection.lookupTrackByURI(entry.getKey()) != null) {
+				snapshot.put(entry.getKey(), entry.getValue());
+			}
+			else {
+				this.entries.remove(entry.getKey());
+			}
+		}
+
+		File tempFile = new File(this.indexFile.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(snapshot.size());
+				for(Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue().fileSize);
+					out.writeLong(entry.getValue().lastModified);
+					entry.getValue().table.write(out);
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			if(! tempFile.renameTo(this.indexFile)) {
+				// Some platforms won't rename over an existing file.
+				this.indexFile.delete();
+				tempFile.renameTo(this.indexFile);
+			}
+		}
+		catch(IOException e) {
+			tempFile.delete();
+			System.out.println("Could not write seek table index: " + e.getMessage());
+			System.out.flush();
+		}
+	}
+
+	/**
+	 * Gets the seek table for a track. If there isn't an up to date one, one is built in the background.
+	 *
+	 * @param track	the track
+	 * @return		the seek table, or <code>null</code> if it hasn't been built yet
+	 */
+	Mp3SeekTable get(PlayableLocalTrack track) {
+		Entry entry = this.entries.get(track.getURI());
+		if(entry != null && entry.fileSize == track.getFileSize() && entry.lastModified == track.getFileLastModified()) {
+			return entry.table;
+		}
+
+		this.prefetch(track);
+		return null;
+	}
+
+	/**
+	 * Queues a seek table to be built for a track, unless it already has an up to date one.
+	 */
+	void prefetch(final PlayableLocalTrack track) {
+		final String uri = track.getURI();
+		Entry entry = this.entries.get(uri);
+		if(entry != null && entry.fileSize == track.getFileSize() && entry.lastModified == track.getFileLastModified()) {
+			return;
+		}
+		if(this.pending.putIfAbsent(uri, Boolean.TRUE) != null) {
+			return;
+		}
+
+		this.executor.execute(new Runnable() {
+			public void run() {
+				try {
+					Mp3SeekTable table = build(track.getTrackFile());
+					if(table != null) {
+						entries.put(uri, new Entry(track.getFileSize(), track.getFileLastModified(), table));
+						dirty = true;
+					}
+				}
+				finally {
+					pending.remove(uri);
+					if(pending.isEmpty()) {
+						// Everything queued has been built, so save it. Otherwise the tables would only be saved
+						// with the library cache, which isn't written while the library doesn't change.
+						executor.execute(new Runnable() {
+							public void run() {
+								save();
+							}
+						});
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Builds the seek table for a file.
+	 *
+	 * @return	the table, or <code>null</code> if the file couldn't be read
+	 */
+	private static Mp3SeekTable build(File file) {
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				return new Mp3Helper(in, file.length()).getSeekTable();
+			}
+			finally {
+				try {
+					in.close();
+				}
+				catch(IOException e) {
+				}
+			}
+		}
+		catch(IOException e) {
+			return null;
+		}
+	}
+}
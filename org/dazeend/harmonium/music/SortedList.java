@@ -0,0 +1,42 @@
+package org.dazeend.harmonium.music;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A sorted list handed out by a {@link SortedView}, which can't be changed. It also keeps the {@link LetterIndex} of
+ * its items, so the index is only built once for each generation of the collection.
+ */
+public final class SortedList<T> extends AbstractList<T> implements RandomAccess {
+
+	private final List<T>	items;
+	private LetterIndex		letters = null;		// Built the first time it's asked for. Guarded by this.
+
+	/**
+	 * @param items	the sorted items, which must not change
+	 */
+	SortedList(List<T> items) {
+		this.items = items;
+	}
+
+	@Override
+	public T get(int index) {
+		return this.items.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.items.size();
+	}
+
+	/**
+	 * Gets where each letter starts in the list.
+	 */
+	public synchronized LetterIndex getLetterIndex() {
+		if(this.letters == null) {
+			this.letters = new LetterIndex(this.items);
+		}
+		return this.letters;
+	}
+}
@@ -0,0 +1,67 @@
+package org.dazeend.harmonium.music;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A sorted copy of part of the music collection, kept until the collection changes.
+ *
+ * Browse screens show the same long lists over and over, and sorting a large collection takes a while. A view is
+ * sorted the first time it's asked for after the collection's generation changes. Until the next change, the same
+ * unmodifiable list is handed out, along with where each letter starts in it.
+ */
+abstract class SortedView<T> {
+
+	private final MusicCollection			collection;
+	private final Comparator<? super T>		comparator;
+	private SortedList<T>					sorted = null;
+	private int								generation = -1;	// the collection generation sorted was built from
+
+	/**
+	 * @param collection	the collection the view is of
+	 * @param comparator	the order of the view
+	 */
+	SortedView(MusicCollection collection, Comparator<? super T> comparator) {
+		this.collection = collection;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Gets the members of the collection that are in the view. Called with the collection locked.
+	 */
+	protected abstract Collection<? extends T> members();
+
+	/**
+	 * Gets the view, sorting it first if the collection has changed since it was last sorted.
+	 *
+	 * @return	an unmodifiable, sorted list
+	 */
+	SortedList<T> get() {
+		List<T> copy;
+		int copyGeneration;
+		synchronized(this.collection) {
+			copyGeneration = this.collection.getGeneration();
+			synchronized(this) {
+				if(copyGeneration == this.generation) {
+					return this.sorted;
+				}
+			}
+			copy = new ArrayList<T>(this.members());
+		}
+
+		// Sort without holding the collection, so the library scanner isn't held up.
+		Collections.sort(copy, this.comparator);
+		SortedList<T> view = new SortedList<T>(copy);
+
+		synchronized(this) {
+			if(copyGeneration > this.generation) {
+				this.generation = copyGeneration;
+				this.sorted = view;
+			}
+		}
+		return view;
+	}
+}
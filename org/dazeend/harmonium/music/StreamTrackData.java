@@ -1,8 +1,6 @@
 package org.dazeend.harmonium.music;
 
 import java.awt.Image;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,6 +9,7 @@ import net.roarsoftware.lastfm.Track;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.ImageHelper;
 import org.dazeend.harmonium.LastFm;
+import org.dazeend.harmonium.Scheduler;
 
 public class StreamTrackData
 {
@@ -23,8 +22,8 @@ public class StreamTrackData
 	private static final Pattern TAG_PARSE_TITLE_WITH_PARENS_PATTERN = Pattern.compile("(.+?)\\b\\s*-\\s*(.*)(?:\\s+\\(.*\\))");
 
 	private static final int NEXT_TAG_DELAY = 500;
-	private final Timer _timer = new Timer("WaitForNextTagEvent", true);
 	private Runner _runner = null;
+	private Scheduler.Task _runnerTask = null;
 	private boolean _waitingForTag = false;
 
 	public StreamTrackData(Harmonium app)
@@ -47,7 +46,7 @@ public class StreamTrackData
 					// do nothing
 				}
 			}
-			_runner.cancel();
+			_runnerTask.cancel();
 		}
 		
 		_runner = new Runner();
@@ -59,7 +58,7 @@ public class StreamTrackData
 		}
 
 		_waitingForTag = !_waitingForTag;
-		_timer.schedule(_runner, NEXT_TAG_DELAY);
+		_runnerTask = _app.getTasks().schedule(_runner, NEXT_TAG_DELAY);
 	}
 	
 	public synchronized void setTagParsedStreamTitle(String streamTitle) 
@@ -75,7 +74,7 @@ public class StreamTrackData
 		_tagParsedStreamUrl = streamUrl;
 	}
 
-	private class Runner extends TimerTask
+	private class Runner implements Runnable
 	{
 		private boolean _running = false;
 
@@ -87,7 +86,6 @@ public class StreamTrackData
 
 		public boolean isRunning() { return _running; }
 		
-		@Override
 		public void run()
 		{
 			_running = true;
@@ -21,13 +21,8 @@ public class TrackArtist extends BaseArtist
 			return false;
 		}
 		
-		// Check to ensure that the newTrack is not already a member of this track artist.
-		if(this._trackList.contains(newTrack)) {
-			return false;
-		}
-
-		// Add track to artist.
-		if(this._trackList.add(newTrack)) {
+		// Add track to artist, unless it is already a member of this track artist.
+		if(this.addDirectTrack(newTrack)) {
 			// The track was successfully added. Return TRUE.
 			return true;
 		}
@@ -58,6 +53,6 @@ public class TrackArtist extends BaseArtist
 	@Override
 	public void removeTrack(PlayableLocalTrack track)
 	{
-		_trackList.remove(track);
+		this.removeDirectTrack(track);
 	}
 }
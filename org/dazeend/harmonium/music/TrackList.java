@@ -0,0 +1,95 @@
+package org.dazeend.harmonium.music;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of tracks that holds each track at most once, and adds, removes and finds a track in constant time.
+ *
+ * A removed track's place is filled by the last track in the list, so the order of the list is only the order tracks
+ * were added until the first removal. Nothing depends on that order: every screen sorts a copy of the list before
+ * showing it. Not synchronized; wrap it with <code>Collections.synchronizedList</code> like the lists it replaces.
+ */
+final class TrackList extends AbstractList<PlayableLocalTrack> implements RandomAccess {
+
+	private final List<PlayableLocalTrack>			tracks = new ArrayList<PlayableLocalTrack>();
+	private final Map<PlayableLocalTrack, Integer>	positions = new HashMap<PlayableLocalTrack, Integer>();	// Maps each track to its index in tracks.
+
+	@Override
+	public PlayableLocalTrack get(int index) {
+		return this.tracks.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.tracks.size();
+	}
+
+	/**
+	 * Adds a track to the end of the list, unless it is already in the list.
+	 *
+	 * @return	<code>true</code> if the track was added, or <code>false</code> if it was already in the list
+	 */
+	@Override
+	public boolean add(PlayableLocalTrack track) {
+		if(this.positions.containsKey(track)) {
+			return false;
+		}
+		this.positions.put(track, this.tracks.size());
+		this.tracks.add(track);
+		++this.modCount;
+		return true;
+	}
+
+	@Override
+	public PlayableLocalTrack remove(int index) {
+		PlayableLocalTrack track = this.tracks.get(index);
+		this.positions.remove(track);
+
+		// Move the last track into the hole, so nothing after it has to shift.
+		PlayableLocalTrack last = this.tracks.remove(this.tracks.size() - 1);
+		if(index < this.tracks.size()) {
+			this.tracks.set(index, last);
+			this.positions.put(last, index);
+		}
+		++this.modCount;
+		return track;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		Integer index = this.positions.get(o);
+		if(index == null) {
+			return false;
+		}
+		this.remove(index.intValue());
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return this.positions.containsKey(o);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		Integer index = this.positions.get(o);
+		return (index == null) ? -1 : index.intValue();
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return this.indexOf(o);
+	}
+
+	@Override
+	public void clear() {
+		this.tracks.clear();
+		this.positions.clear();
+		++this.modCount;
+	}
+}
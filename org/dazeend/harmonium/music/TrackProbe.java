@@ -0,0 +1,244 @@
+package org.dazeend.harmonium.music;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import org.blinkenlights.jid3.ID3Exception;
+import org.blinkenlights.jid3.ID3V2TextFrameReader;
+import org.blinkenlights.jid3.v1.ID3V1Tag;
+import org.dazeend.harmonium.music.Playable.TivoImageFormat;
+
+import com.tivo.hme.sdk.util.Mp3Helper;
+
+/**
+ * What Harmonium needs to know about an MP3 file, read by opening the file once.
+ *
+ * The ID3v2 tag at the start of the file, the audio frames after it and the ID3v1 tag in the last 128 bytes are all
+ * read with positional reads on one channel. Nothing is read just to get past it, which matters most for music on
+ * network shares, where each open and each seek is a round trip. The library scanner, the duration sent with a
+ * stream and the album art index all use the same probe.
+ */
+public final class TrackProbe {
+
+	private static final int	V1_TAG_SIZE = 128;
+
+	private final long					fileSize;
+	private final long					fileLastModified;
+	private final Map<String, String>	textFrames;
+	private final ID3V1Tag				v1Tag;
+	private final boolean				embeddedArt;
+	private final int					popularity;
+	private final long					duration;
+
+	private TrackProbe(long fileSize, long fileLastModified, Map<String, String> textFrames, ID3V1Tag v1Tag,
+			boolean embeddedArt, int popularity, long duration) {
+		this.fileSize = fileSize;
+		this.fileLastModified = fileLastModified;
+		this.textFrames = textFrames;
+		this.v1Tag = v1Tag;
+		this.embeddedArt = embeddedArt;
+		this.popularity = popularity;
+		this.duration = duration;
+	}
+
+	/**
+	 * Reads an MP3 file.
+	 *
+	 * @param file			the file
+	 * @param frameIds		the ID3v2.3 text frames to read, such as "TIT2"
+	 * @param readDuration	whether to find the duration of the file, which can mean reading all of it
+	 * @throws ID3Exception	if the file can't be read or its tags are invalid
+	 */
+	public static TrackProbe read(File file, String[] frameIds, boolean readDuration) throws ID3Exception {
+
+		// Record the state of the file before reading it, so that a change made while reading is noticed later.
+		long fileSize = file.length();
+		long fileLastModified = file.lastModified();
+
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				FileChannel channel = in.getChannel();
+				long size = channel.size();
+
+				// The ID3v2 tag, skipping any frames that weren't asked for
+				ID3V2TextFrameReader reader = new ID3V2TextFrameReader(file);
+				Map<String, String> textFrames = reader.read(new ChannelInputStream(channel, 0), frameIds);
+				boolean embeddedArt = false;
+				for(String mimeType : reader.getPictureMimeTypes()) {
+					for(TivoImageFormat format : TivoImageFormat.values()) {
+						if(format.getMimeType().equals(mimeType)) {
+							embeddedArt = true;
+						}
+					}
+				}
+				int popularity = reader.getPopularity(MP3File.RATING_EMAIL);
+
+				// The ID3v1 tag
+				ID3V1Tag v1Tag = null;
+				if(size >= V1_TAG_SIZE) {
+					ByteBuffer tail = ByteBuffer.allocate(V1_TAG_SIZE);
+					while(tail.hasRemaining() && channel.read(tail, size - V1_TAG_SIZE + tail.position()) > 0) {
+					}
+					byte[] tailBytes = tail.array();
+					if(! tail.hasRemaining() && tailBytes[0] == 'T' && tailBytes[1] == 'A' && tailBytes[2] == 'G') {
+						v1Tag = ID3V1Tag.read(new ByteArrayInputStream(tailBytes, 3, V1_TAG_SIZE - 3));
+					}
+				}
+
+				// The duration, from a Xing or VBRI header, or by counting frames
+				long duration = -1;
+				if(readDuration) {
+					duration = new Mp3Helper(new ChannelInputStream(channel, 0), size).getMp3Duration();
+				}
+
+				return new TrackProbe(fileSize, fileLastModified, textFrames, v1Tag, embeddedArt, popularity, duration);
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			throw new ID3Exception("Error reading tags from file.", e);
+		}
+	}
+
+	/**
+	 * @return the size of the file when it was read
+	 */
+	public long getFileSize() {
+		return this.fileSize;
+	}
+
+	/**
+	 * @return the modification time of the file when it was read
+	 */
+	public long getFileLastModified() {
+		return this.fileLastModified;
+	}
+
+	/**
+	 * @return the text of the ID3v2.3 frames that were asked for and found, or <code>null</code> if the file has no
+	 * 			ID3v2.3 tag
+	 */
+	public Map<String, String> getTextFrames() {
+		return this.textFrames;
+	}
+
+	/**
+	 * @return the ID3v1 tag, or <code>null</code> if the file doesn't have one
+	 */
+	public ID3V1Tag getV1Tag() {
+		return this.v1Tag;
+	}
+
+	/**
+	 * @return <code>true</code> if the file has an attached picture in a format TiVo understands
+	 */
+	public boolean hasEmbeddedArt() {
+		return this.embeddedArt;
+	}
+
+	/**
+	 * @return the rating Harmonium gave the file in a POPM frame, or -1 if it hasn't rated it
+	 */
+	public int getPopularity() {
+		return this.popularity;
+	}
+
+	/**
+	 * @return the duration of the file in milliseconds, or -1 if it is unknown or wasn't read
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Reads a channel from a position using positional reads, so several streams can share a channel and skipping
+	 * ahead costs nothing. Closing the stream leaves the channel open.
+	 */
+	private static class ChannelInputStream extends InputStream {
+
+		private static final int	BUFFER_SIZE = 8192;
+
+		private final FileChannel	channel;
+		private final ByteBuffer	buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long				position;		// the position in the channel of the end of the buffer
+
+		ChannelInputStream(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+			this.buffer.flip();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(! this.fill()) {
+				return -1;
+			}
+			return this.buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			if(! this.buffer.hasRemaining() && len >= BUFFER_SIZE) {
+				// Large reads go straight into the caller's array.
+				int n = this.channel.read(ByteBuffer.wrap(b, off, len), this.position);
+				if(n > 0) {
+					this.position += n;
+				}
+				return n;
+			}
+			if(! this.fill()) {
+				return -1;
+			}
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if(n <= 0) {
+				return 0;
+			}
+			long skipped = Math.min(n, this.buffer.remaining());
+			this.buffer.position(this.buffer.position() + (int)skipped);
+			if(skipped < n) {
+				long end = this.channel.size();
+				long more = Math.max(0, Math.min(n - skipped, end - this.position));
+				this.position += more;
+				skipped += more;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(Integer.MAX_VALUE, this.buffer.remaining() + Math.max(0, this.channel.size() - this.position));
+		}
+
+		private boolean fill() throws IOException {
+			if(this.buffer.hasRemaining()) {
+				return true;
+			}
+			this.buffer.clear();
+			int n = this.channel.read(this.buffer, this.position);
+			this.buffer.flip();
+			if(n <= 0) {
+				return false;
+			}
+			this.position += n;
+			return true;
+		}
+	}
+}
@@ -6,7 +6,6 @@ import java.util.List;
 
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.music.AlbumArtist;
-import org.dazeend.harmonium.music.CompareArtists;
 import org.dazeend.harmonium.music.MusicCollection;
 import org.dazeend.harmonium.music.PlayableLocalTrack;
 import org.dazeend.harmonium.music.PlayableCollection;
@@ -21,18 +20,17 @@ public class BrowseMusicByAlbumArtistScreen extends HPlaylistAddCapableListScree
 		this.app = app;
 		
 		// If this music collection is broken into album artists, add them to the screen
-		List<AlbumArtist> albumArtists = new ArrayList<AlbumArtist>();
-		albumArtists.addAll( thisMusicCollection.getAlbumArtistList() );
-		Collections.sort(albumArtists, new CompareArtists() );
-		this.list.add( albumArtists.toArray() );
+		List<PlayableCollection> items = new ArrayList<PlayableCollection>();
+		items.addAll( thisMusicCollection.getSortedAlbumArtistList() );
 		
 		// If this album has any tracks that are not identified as members of an album,
 		// add them to the screen.
 		List<PlayableLocalTrack> tracks = new ArrayList<PlayableLocalTrack>();
 		tracks.addAll( thisMusicCollection.getAlbumlessTrackList() );
 		Collections.sort(tracks, this.app.getPreferences().getMusicCollectionTrackComparator());
+		items.addAll(tracks);
 
-		this.list.add(tracks.toArray());
+		this.list.setModel(items);
 	}
 	
 	public boolean handleAction(BView view, Object action) {
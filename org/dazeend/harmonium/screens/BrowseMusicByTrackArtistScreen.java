@@ -1,11 +1,9 @@
 package org.dazeend.harmonium.screens;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.dazeend.harmonium.Harmonium;
-import org.dazeend.harmonium.music.CompareArtists;
 import org.dazeend.harmonium.music.MusicCollection;
 import org.dazeend.harmonium.music.PlayableLocalTrack;
 import org.dazeend.harmonium.music.PlayableCollection;
@@ -21,10 +19,7 @@ public class BrowseMusicByTrackArtistScreen extends HPlaylistAddCapableListScree
 		this.app = app;
 		
 		// Add track artists to list
-		List<TrackArtist> trackArtists = new ArrayList<TrackArtist>();
-		trackArtists.addAll( thisMusicCollection.getTrackArtistList() );
-		Collections.sort(trackArtists, new CompareArtists() );
-		this.list.add( trackArtists.toArray() );
+		this.list.setModel( thisMusicCollection.getSortedTrackArtistList() );
 		
 		// Ian TODO: add tracks with no track artist
 	}
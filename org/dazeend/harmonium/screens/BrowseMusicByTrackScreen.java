@@ -1,16 +1,13 @@
 package org.dazeend.harmonium.screens;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.music.AlbumArtist;
-import org.dazeend.harmonium.music.CompareTracksByName;
 import org.dazeend.harmonium.music.MusicCollection;
 import org.dazeend.harmonium.music.PlayableLocalTrack;
 import org.dazeend.harmonium.music.PlayableCollection;
-import org.dazeend.harmonium.music.PlayableTrack;
 
 import com.tivo.hme.bananas.BView;
 
@@ -21,15 +18,8 @@ public class BrowseMusicByTrackScreen extends HPlaylistAddCapableListScreen
 		
 		this.app = app;
 		
-		// Add all tracks from music collection to screen
-		List<PlayableLocalTrack> tracks = new ArrayList<PlayableLocalTrack>();
-		tracks.addAll( thisMusicCollection.getMembers(app) );
-		
-		List<PlayableTrack> sortedTracks = new ArrayList<PlayableTrack>(tracks.size());
-		sortedTracks.addAll(tracks);
-		Collections.sort(sortedTracks, new CompareTracksByName());
-
-		this.list.add(sortedTracks.toArray());
+		// Add all tracks from music collection to screen. The collection keeps them sorted until it changes.
+		this.list.setModel(thisMusicCollection.getTracksSortedByName());
 	}
 	
 	public boolean handleAction(BView view, Object action) {
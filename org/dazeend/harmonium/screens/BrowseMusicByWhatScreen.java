@@ -12,6 +12,7 @@ public class BrowseMusicByWhatScreen extends HListScreen
 	private static final String BY_ALBUM_ARTIST = "By Album Artist";
 	private static final String BY_TRACK = "By Track";
 	private static final String BY_TRACK_ARTIST = "By Track Artist";
+	private static final String SEARCH = "Search";
 	
 	/**
 	 * Constructor.
@@ -27,6 +28,7 @@ public class BrowseMusicByWhatScreen extends HListScreen
 		list.add(BY_ALBUM_ARTIST);
 		list.add(BY_TRACK);
 		list.add(BY_TRACK_ARTIST);
+		list.add(SEARCH);
 	}
 	
 	@Override
@@ -46,6 +48,10 @@ public class BrowseMusicByWhatScreen extends HListScreen
         		this.app.push(new BrowseMusicByTrackArtistScreen(this.app, this.musicCollection), TRANSITION_LEFT);
         		return true;
         	}
+        	if( menuOption.equals(SEARCH) ) {
+        		this.app.push(new SearchMusicScreen(this.app, this.musicCollection), TRANSITION_LEFT);
+        		return true;
+        	}
         }  
         
         return super.handleAction(view, action);
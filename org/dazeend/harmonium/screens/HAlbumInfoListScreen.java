@@ -1,7 +1,10 @@
 package org.dazeend.harmonium.screens;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.dazeend.harmonium.ArtPrefetcher;
 import org.dazeend.harmonium.HSkin;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.music.AlbumArtListItem;
@@ -236,12 +239,12 @@ public class HAlbumInfoListScreen extends HPlaylistAddCapableListScreen {
 		}
 		
 		// Load images via a separate thread
-		new Thread() {
+		this.app.getTasks().execute(new Runnable() {
 			public void run() {
 				loadImage(musicItem);
 				flush(); // Necessary to ensure the image shows up, because we're in another thread.
 			}
-		}.start();
+		});
 	}
 	
 	/**
@@ -264,6 +267,11 @@ public class HAlbumInfoListScreen extends HPlaylistAddCapableListScreen {
 	 */
 	protected class HAlbumArtList extends HSkipList {
 		
+		// How many rows on each side of the focused row to get art ready for, and how long the focus has to stay 
+		// put before starting.
+		private static final int	PREFETCH_ROWS = 3;
+		private static final long	PREFETCH_DELAY = 300;
+		
 		BView	albumArtView;			// the view that contains the album art
 		BView 	albumArtBGView;		// the background view used for crossfading
 		BText 	albumNameText;
@@ -274,6 +282,7 @@ public class HAlbumInfoListScreen extends HPlaylistAddCapableListScreen {
 		BText 	yearBGText;
 		
 		private AlbumReadable oldMusicItem;
+		private ArtPrefetcher artPrefetcher = new ArtPrefetcher(app, PREFETCH_DELAY);
 		
 		HAlbumArtList(	BView parent, 
 						int x, 
@@ -323,15 +332,17 @@ public class HAlbumInfoListScreen extends HPlaylistAddCapableListScreen {
 			    	
 		            oldMusicItem = newMusicItem;
 		            
-					new Thread()
+					app.getTasks().execute(new Runnable()
 					{
 						public void run()
 						{
 							if (updateInfo(newMusicItem, getFocus()));
 		        				flush();
 						}
-					}.start();
+					});
 	        	}
+		        
+		        prefetchNeighbors();
 	        }
 	     }
 	     catch(Exception e) {
@@ -410,6 +421,24 @@ public class HAlbumInfoListScreen extends HPlaylistAddCapableListScreen {
         	return true;
 	    }
 	    
+		/**
+		 * Gets art ready for the rows around the focused row, nearest first. Moving the focus again replaces
+		 * the request, so scrolling quickly through a list doesn't load art for every row passed over.
+		 */
+		private void prefetchNeighbors() {
+			int focus = this.getModelFocus();
+			int size = this.getModelSize();
+			List<ArtSource> artSources = new ArrayList<ArtSource>();
+			for (int distance = 1; distance <= PREFETCH_ROWS; distance++) {
+				int[] rows = { focus + distance, focus - distance };
+				for (int row : rows) {
+					if (row >= 0 && row < size && this.getModelItem(row) instanceof ArtSource)
+						artSources.add((ArtSource)this.getModelItem(row));
+				}
+			}
+			this.artPrefetcher.prefetch(artSources, Math.min(this.albumArtView.getWidth(), 640), Math.min(this.albumArtView.getHeight(), 480));
+		}
+	    
 		private ImageResource getAlbumImage(ArtSource artSource) throws IOException {
 			
 			int artWidth = Math.min(this.albumArtView.getWidth(), 640);
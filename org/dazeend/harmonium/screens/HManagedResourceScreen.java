@@ -112,11 +112,11 @@ public abstract class HManagedResourceScreen extends BScreen {
 	public void cleanup(){
 		if (_freeOnExit)
 		{
-			new Thread() {
+			app.getTasks().execute(new Runnable() {
 				public void run() {
 					cleanupManagedResources();
 				}
-			}.start();
+			});
 		}
 	}
 }
@@ -1,11 +1,16 @@
 package org.dazeend.harmonium.screens;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.dazeend.harmonium.HSkin;
 import org.dazeend.harmonium.Harmonium;
-import org.dazeend.harmonium.music.PlayableCollection;
+import org.dazeend.harmonium.music.LetterIndex;
+import org.dazeend.harmonium.music.SortedList;
 
 import com.tivo.hme.bananas.BEvent;
 import com.tivo.hme.bananas.BList;
+import com.tivo.hme.bananas.BScreen;
 import com.tivo.hme.bananas.BText;
 import com.tivo.hme.bananas.BView;
 import com.tivo.hme.sdk.View;
@@ -95,6 +100,12 @@ public class HScreen extends HManagedResourceScreen {
 	 */
 	protected class HList extends BList {
 		
+		// Lists longer than this only hold a window of this many items at a time.
+		private static final int WINDOW_SIZE = 100;
+		
+		private List<?> model = null;	// all of the items, when the list is windowed
+		private int windowStart = 0;	// the model index of the first item in the window
+		
 		public HList(BView parent, int x, int y, int width, int height, int rowHeight)
         {
             super(parent, x, y, width, height, rowHeight);
@@ -147,8 +158,124 @@ public class HScreen extends HManagedResourceScreen {
         		postEvent(new BEvent.Action(this, "select"));
         		return true;
         	}
-        	return super.handleKeyPress(code, rawcode);
+        	boolean handled = super.handleKeyPress(code, rawcode);
+        	this.followFocus();
+        	return handled;
         }
+		
+		/**
+		 * Shows all the items in a list. Long lists are not copied into the BList all at once. Instead, the BList
+		 * holds a window of the items around the focus, which moves as the focus does, so opening a screen costs the
+		 * same however big the list is. While the list is shown, <code>get()</code> and <code>getFocus()</code> work
+		 * within the window, and the <code>getModel</code> methods work on the whole list.
+		 * 
+		 * @param items	the items to show, which must not change while they're shown
+		 */
+		public void setModel(List<?> items) {
+			this.clear();
+			this.windowStart = 0;
+			if (items.size() <= WINDOW_SIZE) {
+				this.model = null;
+				this.add(items.toArray());
+			}
+			else {
+				this.model = items;
+				this.add(items.subList(0, WINDOW_SIZE).toArray());
+			}
+		}
+		
+		/**
+		 * Gets the number of items in the whole list.
+		 */
+		public int getModelSize() {
+			if (this.model == null)
+				return this.size();
+			return this.model.size();
+		}
+		
+		/**
+		 * Gets the position of the focused item in the whole list, or -1 if nothing is focused.
+		 */
+		public int getModelFocus() {
+			int focus = this.getFocus();
+			if (focus == -1)
+				return -1;
+			return this.windowStart + focus;
+		}
+		
+		/**
+		 * Gets an item by its position in the whole list.
+		 */
+		public Object getModelItem(int index) {
+			if (this.model == null)
+				return this.get(index);
+			return this.model.get(index);
+		}
+		
+		/**
+		 * Moves the focus to a position in the whole list, moving the window first if the position is outside it.
+		 */
+		public void setModelFocus(int index, boolean animate) {
+			if (this.model == null) {
+				this.setFocus(index, animate);
+				return;
+			}
+			
+			index = Math.max(0, Math.min(index, this.model.size() - 1));
+			if (index < this.windowStart || index >= this.windowStart + this.size()) {
+				this.moveWindow(index - (WINDOW_SIZE / 2), index, index);
+			}
+			this.setFocus(index - this.windowStart, animate);
+		}
+		
+		/**
+		 * Moves the window if the focus has come close to one of its edges, keeping the focus and the visible rows
+		 * where they are on screen.
+		 */
+		protected void followFocus() {
+			if (this.model == null)
+				return;
+			int focus = this.getFocus();
+			if (focus == -1)
+				return;
+			
+			int margin = 2 * this.getNVisibleRows();
+			boolean nearStart = focus < margin && this.windowStart > 0;
+			boolean nearEnd = focus >= this.size() - margin && this.windowStart + this.size() < this.model.size();
+			if (nearStart || nearEnd) {
+				int modelFocus = this.windowStart + focus;
+				this.moveWindow(modelFocus - (WINDOW_SIZE / 2), modelFocus, this.windowStart + this.getTop());
+			}
+		}
+		
+		/**
+		 * Loads the window starting at a position in the whole list.
+		 * 
+		 * @param start			the model index the window should start at
+		 * @param modelFocus	the model index to focus once the window is loaded
+		 * @param modelTop		the model index of the item to show at the top of the list
+		 */
+		private void moveWindow(int start, int modelFocus, int modelTop) {
+			start = Math.max(0, Math.min(start, this.model.size() - WINDOW_SIZE));
+			if (start == this.windowStart)
+				return;
+			
+			BScreen screen = this.getScreen();
+			screen.setPainting(false);
+			try {
+				this.clear();
+				this.windowStart = start;
+				this.add(this.model.subList(start, start + WINDOW_SIZE).toArray());
+				int focus = modelFocus - start;
+				int top = Math.max(0, Math.min(modelTop - start, focus));
+				this.setTop(top, focus);
+				this.refresh();
+				this.setFocus(focus, false);
+			}
+			finally {
+				screen.setPainting(true);
+			}
+		}
 	}
 	
 	
@@ -160,10 +287,23 @@ public class HScreen extends HManagedResourceScreen {
 	 */
 	protected class HSkipList extends HList {
 		
+		private List<?> items = null;			// the items given to setModel(), if that's how the list was filled
+		private LetterIndex letters = null;		// where each letter starts in items, once it's needed
+		
 		public HSkipList(BView parent, int x, int y, int width, int height, int rowHeight)
         {
             super(parent, x, y, width, height, rowHeight);
         }
+		
+		/* (non-Javadoc)
+		 * @see org.dazeend.harmonium.screens.HScreen.HList#setModel(java.util.List)
+		 */
+		@Override
+		public void setModel(List<?> items) {
+			super.setModel(items);
+			this.items = items;
+			this.letters = null;
+		}
 
 		/* (non-Javadoc)
 		 * @see org.dazeend.harmonium.screens.HScreen.HList#handleKeyPress(int, long)
@@ -173,114 +313,52 @@ public class HScreen extends HManagedResourceScreen {
 			
 			((Harmonium)this.getApp()).checkKeyPressToResetInactivityTimer(code);
 			
-			PlayableCollection focusObject;
-			String currentLetter;
 			int i;
+			int size = this.getModelSize();
 			switch(code) {
 			case KEY_ADVANCE:
-				i = getFocus();
+				i = getModelFocus();
 				if (i == -1) {
 					return true;
 				}
-				focusObject = (PlayableCollection)this.get(i);
-
-				// Get the leading letter of the focused object
-				currentLetter = focusObject.toStringTitleSortForm().toLowerCase().substring(0, 1);
-	
-				// Search forward until you reach an object that starts with a later letter
-				i = this.getFocus() + 1;
-				while( ( i < this.size() ) && ( ((PlayableCollection)this.get(i)).toStringTitleSortForm().toLowerCase().substring(0, 1).compareTo(currentLetter) <= 0 ) ) {
-					++i;
-				}
 				
 				// Jump to the next letter (or end of list)
 				this.getApp().play("pagedown.snd");
-				this.setFocus(i, true);
+				this.setModelFocus(this.getLetterIndex().nextLetter(i), true);
 				return true;
 			case KEY_REPLAY:
 				
-				i = getFocus();
+				i = getModelFocus();
 				if (i == -1) {
 					return true;
 				}
-				focusObject = (PlayableCollection)this.get(i);
-
-				
-				// Get the leading letter of the focused object
-				currentLetter = focusObject.toStringTitleSortForm().toLowerCase().substring(0, 1);
-				
-				// Search backward until you reach an object that starts with an earlier letter
-				i = this.getFocus() - 1;
-				while( ( i >= 0 ) && ( ((PlayableCollection)this.get(i)).toStringTitleSortForm().toLowerCase().substring(0, 1).compareTo(currentLetter) >= 0 ) ) {
-					--i;
-				}
 				
-				// Jump to the next letter (or end of list)
+				// Jump to the previous letter (or start of list)
 				this.getApp().play("pageup.snd");
-				this.setFocus(i, true);
+				this.setModelFocus(this.getLetterIndex().previousLetter(i), true);
 				return true;
 
 			case KEY_NUM1:
-				// Jump to 10% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10, true);
-				return true;
-
 			case KEY_NUM2:
-				// Jump to 20% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 5, true);
-				return true;
-
 			case KEY_NUM3:
-				// Jump to 30% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 3, true);
-				return true;
-
 			case KEY_NUM4:
-				// Jump to 40% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 4, true);
-				return true;
-
 			case KEY_NUM5:
-				// Jump to 50% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 2, true);
-				return true;
-
 			case KEY_NUM6:
-				// Jump to 60% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 6, true);
-				return true;
-
 			case KEY_NUM7:
-				// Jump to 70% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 7, true);
-				return true;
-
 			case KEY_NUM8:
-				// Jump to 80% through the list
-				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 8, true);
-				return true;
-
 			case KEY_NUM9:
-				// Jump to 90% through the list
+				// Jump to 10% - 90% through the list
 				this.getApp().play("select.snd");
-				this.setFocus(this.size() / 10 * 9, true);
+				this.setModelFocus((int)((long)size * (code - KEY_NUM0) / 10), true);
 				return true;
 
 			case KEY_NUM0:
 				// Go to the end of the list, unless we're already there, in which case we jump to the top.
 				this.getApp().play("select.snd");
-				if (this.getFocus() == this.size() - 1)
-					this.setFocus(0, true);
+				if (this.getModelFocus() == size - 1)
+					this.setModelFocus(0, true);
 				else
-					this.setFocus(this.size() - 1, true);
+					this.setModelFocus(size - 1, true);
 				return true;
 			}
 			
@@ -288,7 +366,26 @@ public class HScreen extends HManagedResourceScreen {
 			return super.handleKeyPress(code, rawcode);
 		}
 		
-		
+		/**
+		 * Gets where each letter starts in the list. Sorted lists from the music collection keep their own index, so
+		 * it is only built once each time the collection changes. Lists filled with <code>add()</code> are short, so
+		 * their index is built each time.
+		 */
+		private LetterIndex getLetterIndex() {
+			if (this.items == null || this.items.size() != this.getModelSize()) {
+				List<Object> rows = new ArrayList<Object>(this.size());
+				for (int i = 0; i < this.size(); ++i)
+					rows.add(this.get(i));
+				return new LetterIndex(rows);
+			}
+			if (this.letters == null) {
+				if (this.items instanceof SortedList)
+					this.letters = ((SortedList<?>)this.items).getLetterIndex();
+				else
+					this.letters = new LetterIndex(this.items);
+			}
+			return this.letters;
+		}
 	}
 	
 	/* (non-Javadoc)
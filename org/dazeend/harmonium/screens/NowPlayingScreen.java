@@ -2,13 +2,16 @@ package org.dazeend.harmonium.screens;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Collections;
 
+import org.dazeend.harmonium.ArtPrefetcher;
 import org.dazeend.harmonium.DiscJockeyListener;
 import org.dazeend.harmonium.HSkin;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.PlayRate;
 import org.dazeend.harmonium.music.ArtSource;
 import org.dazeend.harmonium.music.Playable;
+import org.dazeend.harmonium.music.PlayableLocalTrack;
 import org.dazeend.harmonium.music.PlayableTrack;
 
 import com.tivo.hme.bananas.BScreen;
@@ -33,6 +36,9 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 	private ProgressBar progressBar;
 	private BText artistNameLabelText;
 	private BText nextLabelText;
+	private long progressInterval;			// least time between progress bar updates, in ms
+	private long lastProgressUpdate = 0;
+	private ArtPrefetcher artPrefetcher;
 
 	/**
 	 * @param app
@@ -42,6 +48,10 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 		super(app);
 		doNotFreeResourcesOnExit(); // We'll free of our own resources, using the tools HManagedResourceScreen gives us. 
 		
+		int progressUpdateRate = app.getFactoryPreferences().getProgressUpdateRate();
+		this.progressInterval = (progressUpdateRate > 0) ? 1000 / progressUpdateRate : 0;
+		this.artPrefetcher = new ArtPrefetcher(app, 0);
+		
 		// Define all dimensions in terms of percentage of the screen height and width. This make it
 		// resolution-safe.
 		
@@ -284,6 +294,9 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 	{
 		if (nextPlayable != null)
 		{
+			// Get the next track's art ready, so that it shows up as soon as the track starts.
+			this.artPrefetcher.prefetch(Collections.singletonList(nextPlayable), albumArtView.getWidth(), albumArtView.getHeight());
+			
 			this.nextLabelText.setValue("Next:");
 			if (nextPlayable instanceof PlayableTrack)
 			{
@@ -315,7 +328,7 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 
 	public void artChanged(final ArtSource artSource)
 	{
-		new Thread() 
+		this.app.getTasks().execute(new Runnable() 
 		{
 			public void run() 
 			{
@@ -323,7 +336,7 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 				setManagedResource(albumArtView, albumArtImage, RSRC_HALIGN_CENTER + RSRC_VALIGN_CENTER + RSRC_IMAGE_BESTFIT);
 	    		flush(); // Necessary to ensure UI updates, because we're in another thread.
 			}
-		}.start();
+		});
 	}
 	
 	public void trackNameChanged(final String title)
@@ -382,9 +395,14 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 			// TODO: move this?
 			this.progressBar.setDuration(msDuration);
 
-			// Set elapsed, which updates the elapsed label and the progress bar position.
-			if (msDuration > 0)
+			// Set elapsed, which updates the elapsed label and the progress bar position. Position updates come
+			// quickly while seeking, so limit how often they're drawn.
+			long now = System.currentTimeMillis();
+			if (msDuration > 0 && now - this.lastProgressUpdate >= this.progressInterval)
+			{
+				this.lastProgressUpdate = now;
 				this.progressBar.setElapsed(msElapsed, fractionComplete);
+			}
 		}
 	}
 
@@ -563,6 +581,27 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 				this.app.play("select.snd");
 				this.app.getDiscJockey().toggleShuffleMode();
 				return true;
+				
+			case KEY_THUMBSUP:
+			case KEY_THUMBSDOWN:
+				// The rating changes straight away. It's written to the file in the background.
+				Playable nowPlaying = this.app.getDiscJockey().getNowPlaying();
+				if (nowPlaying instanceof PlayableLocalTrack)
+				{
+					if (key == KEY_THUMBSUP)
+					{
+						((PlayableLocalTrack)nowPlaying).increaseRating();
+						this.app.play("thumbsup.snd");
+					}
+					else
+					{
+						((PlayableLocalTrack)nowPlaying).decreaseRating();
+						this.app.play("thumbsdown.snd");
+					}
+				}
+				else
+					this.app.play("bonk.snd");
+				return true;
 		}
 		
 		return super.handleKeyPress(key, rawcode);
@@ -582,6 +621,7 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 		private Resource.FontResource font;
 		private HmeEvent.FontInfo fontInfo;
 		private long durationMS;
+		private long elapsedSeconds = -1;		// the elapsed time that's showing
 		
 		/**
 		 * A bar that tracks the elapsed time of a stream. The height of the bar is dependent on the font sizej chosen
@@ -696,6 +736,7 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
             else
             {
                 this.elapsedText.setValue("");
+                this.elapsedSeconds = -1;
                 this.durationText.setValue("");
                 setPosition(0);
             }
@@ -705,7 +746,13 @@ public class NowPlayingScreen extends HManagedResourceScreen implements DiscJock
 		
 		public double setElapsed(long elapsedMS, double fractionComplete)
 		{
-			this.elapsedText.setValue(millisecondsToTimeString(elapsedMS));
+			// Only send the label when the second showing changes. setPosition() only sends the tracking bar when
+			// its width changes, because View.setBounds() ignores unchanged bounds.
+			if (elapsedMS / 1000 != this.elapsedSeconds)
+			{
+				this.elapsedSeconds = elapsedMS / 1000;
+				this.elapsedText.setValue(millisecondsToTimeString(elapsedMS));
+			}
 			setPosition(fractionComplete);
 			return fractionComplete;
 		}
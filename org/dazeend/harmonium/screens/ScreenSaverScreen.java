@@ -1,13 +1,12 @@
 package org.dazeend.harmonium.screens;
 
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.dazeend.harmonium.ApplicationPreferences;
 import org.dazeend.harmonium.DiscJockeyListener;
 import org.dazeend.harmonium.Harmonium;
 import org.dazeend.harmonium.PlayRate;
+import org.dazeend.harmonium.Scheduler;
 import org.dazeend.harmonium.music.ArtSource;
 import org.dazeend.harmonium.music.Playable;
 import com.tivo.hme.bananas.BView;
@@ -24,7 +23,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 	boolean showAlbumArt;
 	
 	private BView albumArtView;
-	private Timer moveTimer;
+	private Scheduler.Task moveTask;
 
 	public ScreenSaverScreen(Harmonium app) {
 		super(app);
@@ -74,8 +73,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 		showAlbumArt = !(this.app.getPreferences().getScreenSaverType().equals(ApplicationPreferences.SCREENSAVER_TYPE_BLANK)); 
 		albumArtView.setVisible(showAlbumArt);
 
-		moveTimer = new Timer();
-		moveTimer.schedule(new MoveArtCheckTimerTask(this), 7000, 7000);
+		moveTask = this.app.getTasks().scheduleWithFixedDelay(new MoveArtCheckTimerTask(this), 7000, 7000);
 		
 		return status;
 	}
@@ -112,7 +110,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 	public boolean handleExit() {
 		// restore background image
 		this.app.getRoot().setResource(this.oldBackground);
-		moveTimer.cancel();
+		moveTask.cancel();
 		return super.handleExit();
 	}
 
@@ -134,7 +132,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 		return this.app.getCurrentScreen().handleKeyPress(key, rawcode);
 	}
 
-	private class MoveArtCheckTimerTask extends TimerTask {
+	private class MoveArtCheckTimerTask implements Runnable {
 
 		private ScreenSaverScreen handler;
 		
@@ -142,7 +140,6 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 			this.handler = handler;
 		}
 		
-		@Override
 		public void run() {
 			handler.moveAlbumArt();
 		}
@@ -151,7 +148,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 	public void artChanged(final ArtSource artSource)
 	{
    		// Update views with new info
-		new Thread() 
+		this.app.getTasks().execute(new Runnable() 
 		{
 			public void run() 
 			{
@@ -167,7 +164,7 @@ public class ScreenSaverScreen extends HManagedResourceScreen implements DiscJoc
 				}
 	    		flush(); // Necessary to ensure UI updates, because we're in another thread.
 			}
-		}.start();
+		});
 	}
 
 	public void nextTrackChanged(Playable nextPlayable)
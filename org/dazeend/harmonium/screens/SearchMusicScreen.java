@@ -0,0 +1,159 @@
+package org.dazeend.harmonium.screens;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dazeend.harmonium.Harmonium;
+import org.dazeend.harmonium.music.MusicCollection;
+import org.dazeend.harmonium.music.PlayableCollection;
+import org.dazeend.harmonium.music.PlayableLocalTrack;
+
+import com.almilli.tivo.bananas.hd.HDKeyboard;
+import com.tivo.hme.bananas.BKeyboard;
+import com.tivo.hme.bananas.BView;
+import com.tivo.hme.sdk.HmeEvent;
+
+/**
+ * Finds tracks by name. Matching tracks are listed beside the keyboard, and the list is updated as each letter is
+ * typed.
+ */
+public class SearchMusicScreen extends HScreen {
+
+	private static final int MAX_RESULTS = 500;
+
+	private MusicCollection musicCollection;
+	private BKeyboard keyboard;
+	private HList list;
+	private String lastQuery = "";
+
+	public SearchMusicScreen(Harmonium app, MusicCollection thisMusicCollection) {
+		super(app, "Search Music");
+
+		this.app = app;
+		this.musicCollection = thisMusicCollection;
+
+		int y = this.screenHeight / 4;
+
+		// Set up keyboard on the left of the screen
+		Point keyboardSize;
+		if(this.app.getHeight() >= 720) {
+			keyboardSize = HDKeyboard.getKeyboardSize(HDKeyboard.PLAIN_KEYBOARD, false);
+			this.keyboard = new HHDKeyboard(this.app,
+											this.getNormal(),							// Parent view
+											this.safeTitleH,							// x
+											y,											// y
+											keyboardSize.x,								// width
+											keyboardSize.y,								// height
+											HDKeyboard.PLAIN_KEYBOARD,					// keyboard type
+											false										// show tips
+			);
+		}
+		else {
+			keyboardSize = BKeyboard.getKeyboardSize(BKeyboard.PLAIN_KEYBOARD, false);
+			this.keyboard = new HSDKeyboard(this.app,
+											this.getNormal(),							// Parent view
+											this.safeTitleH,							// x
+											y,											// y
+											keyboardSize.x,								// width
+											keyboardSize.y,								// height
+											BKeyboard.PLAIN_KEYBOARD,					// keyboard type
+											false										// show tips
+			);
+		}
+		this.keyboard.setFocusable(true);
+		this.setFocusDefault(this.keyboard);
+
+		// Results fill the rest of the width
+		int listX = this.safeTitleH + keyboardSize.x + this.safeTitleH / 2;
+		this.list = new HList(	this.getNormal(),								// Put list on "normal" level
+								listX,											// x coord. of list origin
+								y,												// y coord. of list origin
+								this.screenWidth - this.safeTitleH - listX,		// width of list
+								this.rowHeight * 8,								// height of list
+								this.rowHeight									// row height for 8 rows
+		) {
+			@Override
+			protected String getRowText(int index) {
+				PlayableLocalTrack track = (PlayableLocalTrack)this.get(index);
+				if(track.getArtistName().equals("")) {
+					return track.getTrackName();
+				}
+				return track.getTrackName() + " - " + track.getArtistName();
+			}
+		};
+		this.list.setBarAndArrows(BAR_HANG, BAR_DEFAULT, "keyboard", "right");
+	}
+
+	/**
+	 * Looks up the tracks that match what has been typed so far.
+	 */
+	private void updateResults(String query) {
+		if(query == null) {
+			query = "";
+		}
+		if(query.equals(this.lastQuery)) {
+			return;
+		}
+		this.lastQuery = query;
+
+		this.list.setModel(this.musicCollection.searchTracks(query, MAX_RESULTS));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.tivo.hme.bananas.BView#handleEvent(com.tivo.hme.sdk.HmeEvent)
+	 */
+	@Override
+	public boolean handleEvent(HmeEvent event) {
+		if(event instanceof BKeyboard.KeyboardEvent) {
+			this.updateResults(((BKeyboard.KeyboardEvent)event).getValue());
+		}
+		return super.handleEvent(event);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.tivo.hme.bananas.BView#handleKeyPress(int, long)
+	 */
+	@Override
+	public boolean handleKeyPress(int code, long rawcode) {
+		this.app.checkKeyPressToResetInactivityTimer(code);
+
+		if(this.getFocus() == this.keyboard) {
+			if(code == KEY_RIGHT && this.list.size() > 0) {
+				// Moved off the right edge of the keyboard
+				this.setFocus(this.list);
+				return true;
+			}
+			if(code == KEY_LEFT) {
+				this.app.pop();
+				return true;
+			}
+		}
+		else if(this.getFocus() == this.list && code == KEY_PLAY && this.list.getFocus() >= 0) {
+			List<PlayableCollection> playlist = new ArrayList<PlayableCollection>();
+			playlist.add( (PlayableCollection)this.list.get( this.list.getFocus() ) );
+			boolean shuffleMode = this.app.getPreferences().getTrackDefaultShuffleMode();
+			boolean repeatMode = this.app.getPreferences().getTrackDefaultRepeatMode();
+			this.app.getDiscJockey().play(playlist, shuffleMode, repeatMode);
+			return true;
+		}
+		return super.handleKeyPress(code, rawcode);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.dazeend.harmonium.screens.HScreen#handleAction(com.tivo.hme.bananas.BView, java.lang.Object)
+	 */
+	@Override
+	public boolean handleAction(BView view, Object action) {
+		if(action.equals("keyboard")) {
+			this.setFocus(this.keyboard);
+			return true;
+		}
+		if( (action.equals("select") || action.equals("right")) && this.list.getFocus() >= 0 ) {
+			PlayableLocalTrack musicItem = (PlayableLocalTrack)this.list.get( this.list.getFocus() );
+			this.app.push(new TrackScreen(this.app, musicItem), TRANSITION_LEFT);
+			return true;
+		}
+		return super.handleAction(view, action);
+	}
+}